@@ -0,0 +1,695 @@
+package com.raven.client.voicechat.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.raven.client.voicechat.network.ControlProtocol;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal stand-in for the voice server, for load testing on one machine.
+ *
+ * Speaks the control protocol (hello, auth, resume, join/create/leave room,
+ * subscribe, heartbeat) on TCP, newline-delimited JSON or, when created with
+ * binary enabled and the client offers it, binary frames after the hello.
+ * Relays audio datagrams to every
+ * other client in the single room it hosts that subscribed to the sender.
+ * A client whose control connection drops keeps its session, room and audio
+ * for {@link #RESUME_WINDOW_SECONDS} so it can resume.
+ * Simulated speakers are plain room members that the load driver sends
+ * audio for. Relayed packets can be dropped, delayed, jittered and
+ * reordered to imitate a bad link.
+ */
+public class LoopbackVoiceServer {
+
+    private static final byte PACKET_AUDIO = 0x01;
+    private static final byte PACKET_AUDIO_SEQUENCED = 0x04;
+    private static final byte PACKET_AUDIO_COMPACT = 0x05;
+    private static final byte PACKET_KEEPALIVE = 0x06;
+
+    private static final int SESSION_ID_LENGTH = 36;
+
+    private static final String ROOM_ID = "loopback";
+    private static final String ROOM_NAME = "Loopback";
+
+    // How long a session survives without a control connection
+    private static final int RESUME_WINDOW_SECONDS = 30;
+
+    private final Gson gson = new Gson();
+    private final boolean binaryProtocol;
+
+    private ServerSocket controlSocket;
+    private DatagramSocket audioSocket;
+    private volatile boolean running = false;
+
+    private final ExecutorService connectionThreads = Executors.newCachedThreadPool(daemon("Loopback-Control"));
+    private final ScheduledExecutorService relayScheduler = Executors.newSingleThreadScheduledExecutor(daemon("Loopback-Relay"));
+
+    // Room members by speaker index; simulated speakers have no session
+    private final Map<Integer, Member> members = new ConcurrentHashMap<>();
+    private final Map<String, Member> membersBySession = new ConcurrentHashMap<>();
+    private final Map<String, Member> membersByResumeToken = new ConcurrentHashMap<>();
+    private int nextSpeakerIndex = 0;
+
+    // Link impairment applied to relayed audio
+    private volatile double lossRate = 0;
+    private volatile double reorderRate = 0;
+    private volatile long baseDelayNanos = 0;
+    private volatile long jitterNanos = 0;
+    private final Random random = new Random();
+
+    private final AtomicLong packetsRelayed = new AtomicLong();
+    private final AtomicLong packetsLost = new AtomicLong();
+    private final AtomicLong sessionsResumed = new AtomicLong();
+    private final AtomicLong binaryConnections = new AtomicLong();
+
+    public LoopbackVoiceServer() {
+        this(false);
+    }
+
+    /**
+     * @param binaryProtocol Accept the binary control protocol when a client offers it
+     */
+    public LoopbackVoiceServer(boolean binaryProtocol) {
+        this.binaryProtocol = binaryProtocol;
+    }
+
+    /**
+     * Bind both sockets on loopback, on any free ports
+     */
+    public void start() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        controlSocket = new ServerSocket(0, 50, loopback);
+        audioSocket = new DatagramSocket(new InetSocketAddress(loopback, 0));
+        running = true;
+
+        Thread acceptThread = new Thread(this::acceptLoop, "Loopback-Accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        Thread audioThread = new Thread(this::audioLoop, "Loopback-Audio");
+        audioThread.setDaemon(true);
+        audioThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        closeQuietly(controlSocket);
+        if (audioSocket != null) {
+            audioSocket.close();
+        }
+        connectionThreads.shutdownNow();
+        relayScheduler.shutdownNow();
+    }
+
+    /**
+     * Impair relayed audio
+     *
+     * @param lossPercent Chance a packet is dropped
+     * @param delayMillis Fixed one-way delay
+     * @param jitterMillis Maximum extra random delay
+     * @param reorderPercent Chance a packet is held back behind the next one
+     */
+    public void setImpairment(double lossPercent, double delayMillis, double jitterMillis, double reorderPercent) {
+        this.lossRate = lossPercent / 100.0;
+        this.baseDelayNanos = (long) (delayMillis * 1_000_000);
+        this.jitterNanos = (long) (jitterMillis * 1_000_000);
+        this.reorderRate = reorderPercent / 100.0;
+    }
+
+    /**
+     * Add a room member whose audio the load driver sends
+     *
+     * @return The member's speaker index
+     */
+    public synchronized int addSimulatedSpeaker(String name) {
+        Member member = new Member(nextSpeakerIndex++, "sim-" + name, name, null);
+        members.put(member.speakerIndex, member);
+        return member.speakerIndex;
+    }
+
+    public int getControlPort() {
+        return controlSocket.getLocalPort();
+    }
+
+    public int getAudioPort() {
+        return audioSocket.getLocalPort();
+    }
+
+    public long getPacketsRelayed() {
+        return packetsRelayed.get();
+    }
+
+    public long getPacketsLost() {
+        return packetsLost.get();
+    }
+
+    public long getSessionsResumed() {
+        return sessionsResumed.get();
+    }
+
+    /**
+     * Control connections, resumes included, that switched to binary framing
+     */
+    public long getBinaryConnections() {
+        return binaryConnections.get();
+    }
+
+    /**
+     * Cut every client's control connection, as a network blip would;
+     * sessions and audio stay up for the resume window
+     *
+     * @return Connections closed
+     */
+    public int dropControlConnections() {
+        int dropped = 0;
+        for (Member member : members.values()) {
+            Socket socket = member.controlSocket;
+            if (socket != null) {
+                closeQuietly(socket);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    // ============================================================
+    // Control channel
+    // ============================================================
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = controlSocket.accept();
+                socket.setTcpNoDelay(true);
+                connectionThreads.execute(() -> serveControl(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("[Loopback] Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serveControl(Socket socket) {
+        Member member = null;
+        boolean goodbye = false;
+        JsonParser parser = new JsonParser();
+        // Every connection starts in JSON; a hello can switch it to binary frames
+        boolean binary = false;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+
+            while (running) {
+                JsonObject message = binary ? readFrame(in, parser) : readLine(in, parser);
+                if (message == null) {
+                    break;
+                }
+
+                boolean switchToBinary = false;
+                String type = message.get("type").getAsString();
+                JsonObject data = message.has("data") ? message.getAsJsonObject("data") : new JsonObject();
+                JsonObject reply = new JsonObject();
+
+                switch (type) {
+                    case "hello":
+                        switchToBinary = binaryProtocol && offers(data, ControlProtocol.PROTOCOL_BINARY);
+                        reply.addProperty("type", "hello");
+                        reply.addProperty("protocol", switchToBinary ? ControlProtocol.PROTOCOL_BINARY : ControlProtocol.PROTOCOL_JSON);
+                        break;
+
+                    case "auth":
+                        String name = data.has("minecraft_name") ? data.get("minecraft_name").getAsString() : "Listener";
+                        member = addClient(name);
+                        member.controlSocket = socket;
+                        reply.addProperty("type", "auth_response");
+                        reply.addProperty("success", true);
+                        reply.addProperty("sessionId", member.sessionId);
+                        reply.addProperty("resumeToken", member.resumeToken);
+                        reply.addProperty("discordName", name);
+                        break;
+
+                    case "resume":
+                        Member resumed = data.has("token") ? membersByResumeToken.get(data.get("token").getAsString()) : null;
+                        reply.addProperty("type", "resume_response");
+                        if (resumed == null) {
+                            reply.addProperty("success", false);
+                            break;
+                        }
+                        member = resumed;
+                        member.controlSocket = socket;
+                        sessionsResumed.incrementAndGet();
+                        reply.addProperty("success", true);
+                        reply.addProperty("sessionId", member.sessionId);
+                        reply.addProperty("resumeToken", member.resumeToken);
+                        if (member.inRoom) {
+                            reply.addProperty("roomId", ROOM_ID);
+                        }
+                        long lastEventSeq = data.has("last_event_seq") ? data.get("last_event_seq").getAsLong() : 0;
+                        reply.add("events", member.eventsAfter(lastEventSeq));
+                        break;
+
+                    case "create_room":
+                    case "join_room":
+                        if (member == null) {
+                            reply.addProperty("type", "error");
+                            reply.addProperty("message", "Not authenticated");
+                            break;
+                        }
+                        member.inRoom = true;
+                        reply.addProperty("type", "join_room_response");
+                        reply.addProperty("success", true);
+                        reply.addProperty("eventSeq", member.nextEventSeq());
+                        reply.addProperty("speakerIndex", member.speakerIndex);
+                        JsonObject room = new JsonObject();
+                        room.addProperty("id", ROOM_ID);
+                        room.addProperty("name", ROOM_NAME);
+                        reply.add("room", room);
+                        JsonArray users = new JsonArray();
+                        for (Member other : members.values()) {
+                            if (other != member && (other.sessionId == null || other.inRoom)) {
+                                users.add(other.toJson());
+                            }
+                        }
+                        reply.add("users", users);
+                        member.logEvent(reply);
+                        break;
+
+                    case "leave_room":
+                        reply.addProperty("type", "left_room");
+                        if (member != null) {
+                            member.inRoom = false;
+                            reply.addProperty("eventSeq", member.nextEventSeq());
+                            member.logEvent(reply);
+                        }
+                        break;
+
+                    case "list_rooms":
+                        reply.addProperty("type", "room_list");
+                        JsonArray rooms = new JsonArray();
+                        JsonObject listed = new JsonObject();
+                        listed.addProperty("id", ROOM_ID);
+                        listed.addProperty("name", ROOM_NAME);
+                        listed.addProperty("userCount", members.size());
+                        rooms.add(listed);
+                        reply.add("rooms", rooms);
+                        break;
+
+                    case "heartbeat":
+                        if (member != null && data.has("ack")) {
+                            member.trimEvents(data.get("ack").getAsLong());
+                        }
+                        reply.addProperty("type", "heartbeat_ack");
+                        break;
+
+                    case "subscribe":
+                        if (member != null && data.has("speakers")) {
+                            Set<Integer> subscribed = new HashSet<>();
+                            for (com.google.gson.JsonElement speaker : data.getAsJsonArray("speakers")) {
+                                subscribed.add(speaker.getAsInt());
+                            }
+                            member.subscribed = subscribed;
+                        }
+                        continue;
+
+                    case "disconnect":
+                        goodbye = true;
+                        return;
+
+                    default:
+                        // Mute/deafen state and the like need no answer here
+                        continue;
+                }
+
+                if (binary) {
+                    writeFrame(out, reply);
+                } else {
+                    out.write((gson.toJson(reply) + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+
+                // The hello answer itself still goes out as JSON
+                if (switchToBinary) {
+                    binary = true;
+                    binaryConnections.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            if (running) {
+                System.err.println("[Loopback] Control connection error: " + e.getMessage());
+            }
+        } finally {
+            closeQuietly(socket);
+            if (member != null) {
+                if (goodbye) {
+                    removeClient(member);
+                } else {
+                    // Keep the session for a resume; drop it if the client does not come back
+                    Member dropped = member;
+                    dropped.controlSocket = null;
+                    relayScheduler.schedule(() -> {
+                        if (dropped.controlSocket == null) {
+                            removeClient(dropped);
+                        }
+                    }, RESUME_WINDOW_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+
+    private static boolean offers(JsonObject hello, String protocol) {
+        if (!hello.has("protocols")) {
+            return false;
+        }
+        for (com.google.gson.JsonElement offered : hello.getAsJsonArray("protocols")) {
+            if (protocol.equals(offered.getAsString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read one newline-terminated JSON message, byte by byte so nothing past
+     * it is buffered in case the connection switches to binary
+     *
+     * @return The message, or null at end of stream
+     */
+    private static JsonObject readLine(DataInputStream in, JsonParser parser) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            if (b != '\n') {
+                line.write(b);
+            } else if (line.size() > 0) {
+                return parser.parse(new String(line.toByteArray(), StandardCharsets.UTF_8)).getAsJsonObject();
+            }
+        }
+    }
+
+    /**
+     * Read one binary frame and turn it into the JSON envelope the handler expects
+     *
+     * @return The message, or null at end of stream
+     */
+    private static JsonObject readFrame(DataInputStream in, JsonParser parser) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            if (shift > 28) {
+                throw new IOException("Malformed frame length");
+            }
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length < 1 || length > ControlProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Bad control frame length " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        ByteBuffer frame = ByteBuffer.wrap(body);
+        byte opcode = frame.get();
+
+        if (opcode == ControlProtocol.OP_JSON) {
+            return parser.parse(new String(body, 1, length - 1, StandardCharsets.UTF_8)).getAsJsonObject();
+        }
+
+        JsonObject message = new JsonObject();
+        JsonObject data = new JsonObject();
+        switch (opcode) {
+            case ControlProtocol.OP_HEARTBEAT:
+                message.addProperty("type", "heartbeat");
+                if (frame.remaining() >= 4) {
+                    data.addProperty("ack", frame.getInt() & 0xFFFFFFFFL);
+                }
+                break;
+            case ControlProtocol.OP_MUTE_STATE:
+                message.addProperty("type", "mute_state");
+                data.addProperty("muted", ControlProtocol.readBoolean(frame));
+                break;
+            case ControlProtocol.OP_DEAFEN_STATE:
+                message.addProperty("type", "deafen_state");
+                data.addProperty("deafened", ControlProtocol.readBoolean(frame));
+                break;
+            case ControlProtocol.OP_JOIN_ROOM:
+                message.addProperty("type", "join_room");
+                data.addProperty("room_id", ControlProtocol.readString(frame));
+                break;
+            case ControlProtocol.OP_LEAVE_ROOM:
+                message.addProperty("type", "leave_room");
+                break;
+            case ControlProtocol.OP_LIST_ROOMS:
+                message.addProperty("type", "list_rooms");
+                break;
+            case ControlProtocol.OP_DISCONNECT:
+                message.addProperty("type", "disconnect");
+                break;
+            case ControlProtocol.OP_SUBSCRIBE:
+                message.addProperty("type", "subscribe");
+                JsonArray speakers = new JsonArray();
+                int count = frame.getShort() & 0xFFFF;
+                for (int i = 0; i < count; i++) {
+                    speakers.add(new com.google.gson.JsonPrimitive(frame.getShort() & 0xFFFF));
+                }
+                data.add("speakers", speakers);
+                break;
+            default:
+                throw new IOException("Unknown control opcode " + opcode);
+        }
+        message.add("data", data);
+        return message;
+    }
+
+    /**
+     * Send a reply as a binary frame, compact where the client has a layout for it
+     */
+    private void writeFrame(OutputStream out, JsonObject reply) throws IOException {
+        String type = reply.get("type").getAsString();
+        byte[] payload;
+        byte opcode;
+        if (type.equals("heartbeat_ack")) {
+            opcode = ControlProtocol.OP_HEARTBEAT_ACK;
+            payload = new byte[0];
+        } else if (type.equals("left_room") && reply.has("eventSeq")) {
+            opcode = ControlProtocol.OP_LEFT_ROOM;
+            payload = ByteBuffer.allocate(4).putInt((int) reply.get("eventSeq").getAsLong()).array();
+        } else {
+            opcode = ControlProtocol.OP_JSON;
+            payload = gson.toJson(reply).getBytes(StandardCharsets.UTF_8);
+        }
+
+        int length = 1 + payload.length;
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.write(opcode);
+        out.write(payload);
+    }
+
+    private synchronized Member addClient(String name) {
+        String sessionId = UUID.randomUUID().toString();
+        Member member = new Member(nextSpeakerIndex++, sessionId, name, sessionId);
+        members.put(member.speakerIndex, member);
+        membersBySession.put(sessionId, member);
+        membersByResumeToken.put(member.resumeToken, member);
+        return member;
+    }
+
+    private void removeClient(Member member) {
+        members.remove(member.speakerIndex);
+        membersBySession.remove(member.sessionId);
+        membersByResumeToken.remove(member.resumeToken);
+    }
+
+    // ============================================================
+    // Audio channel
+    // ============================================================
+
+    private void audioLoop() {
+        byte[] buffer = new byte[2048];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+        while (running) {
+            try {
+                packet.setLength(buffer.length);
+                audioSocket.receive(packet);
+                int length = packet.getLength();
+                if (length < 1) {
+                    continue;
+                }
+
+                byte type = buffer[0];
+                if (type == PACKET_KEEPALIVE && length >= 1 + SESSION_ID_LENGTH) {
+                    Member member = membersBySession.get(new String(buffer, 1, SESSION_ID_LENGTH, StandardCharsets.UTF_8).trim());
+                    if (member != null) {
+                        member.audioAddress = packet.getSocketAddress();
+                    }
+                } else if (type == PACKET_AUDIO_COMPACT && length > 3) {
+                    int speakerIndex = ((buffer[1] & 0xFF) << 8) | (buffer[2] & 0xFF);
+                    relay(speakerIndex, Arrays.copyOf(buffer, length));
+                } else if ((type == PACKET_AUDIO_SEQUENCED || type == PACKET_AUDIO) && length > 1 + SESSION_ID_LENGTH) {
+                    Member member = membersBySession.get(new String(buffer, 1, SESSION_ID_LENGTH, StandardCharsets.UTF_8).trim());
+                    if (member != null) {
+                        // Clients send their session id; receivers get the sender's user id
+                        byte[] relayed = Arrays.copyOf(buffer, length);
+                        byte[] senderId = Arrays.copyOf(member.userId.getBytes(StandardCharsets.UTF_8), SESSION_ID_LENGTH);
+                        for (int i = 0; i < SESSION_ID_LENGTH; i++) {
+                            relayed[1 + i] = senderId[i] == 0 ? (byte) ' ' : senderId[i];
+                        }
+                        relay(member.speakerIndex, relayed);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("[Loopback] Audio receive error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a packet to every other room member that has told us its address,
+     * through the impaired link
+     */
+    private void relay(int senderIndex, byte[] packet) {
+        for (Member member : members.values()) {
+            if (member.speakerIndex == senderIndex || member.audioAddress == null || !member.inRoom) {
+                continue;
+            }
+            Set<Integer> subscribed = member.subscribed;
+            if (subscribed != null && !subscribed.contains(senderIndex)) {
+                continue;
+            }
+
+            if (random.nextDouble() < lossRate) {
+                packetsLost.incrementAndGet();
+                continue;
+            }
+
+            long delay = baseDelayNanos;
+            if (jitterNanos > 0) {
+                delay += (long) (random.nextDouble() * jitterNanos);
+            }
+            if (random.nextDouble() < reorderRate) {
+                // Held back by more than a frame, so the next packet overtakes it
+                delay += TimeUnit.MILLISECONDS.toNanos(25);
+            }
+
+            SocketAddress target = member.audioAddress;
+            Runnable send = () -> {
+                try {
+                    audioSocket.send(new DatagramPacket(packet, packet.length, target));
+                    packetsRelayed.incrementAndGet();
+                } catch (IOException e) {
+                    // Receiver went away
+                }
+            };
+
+            if (delay <= 0) {
+                send.run();
+            } else {
+                relayScheduler.schedule(send, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * A room member, either a connected client or a simulated speaker
+     */
+    private static class Member {
+        final int speakerIndex;
+        final String userId;
+        final String displayName;
+        final String sessionId;
+        volatile boolean inRoom;
+        volatile SocketAddress audioAddress;
+        // Speakers this member wants forwarded; null until it subscribes
+        volatile Set<Integer> subscribed;
+
+        // Session resume: the current control connection, and the room events
+        // sent to this client that it has not acknowledged yet
+        final String resumeToken = UUID.randomUUID().toString();
+        volatile Socket controlSocket;
+        private final Deque<JsonObject> eventLog = new ArrayDeque<>();
+        private long eventSeq = 0;
+
+        Member(int speakerIndex, String userId, String displayName, String sessionId) {
+            this.speakerIndex = speakerIndex;
+            this.userId = userId;
+            this.displayName = displayName;
+            this.sessionId = sessionId;
+            this.inRoom = sessionId == null;
+        }
+
+        synchronized long nextEventSeq() {
+            return ++eventSeq;
+        }
+
+        synchronized void logEvent(JsonObject event) {
+            eventLog.addLast(event);
+        }
+
+        synchronized void trimEvents(long ackedSeq) {
+            while (!eventLog.isEmpty() && eventLog.peekFirst().get("eventSeq").getAsLong() <= ackedSeq) {
+                eventLog.removeFirst();
+            }
+        }
+
+        synchronized JsonArray eventsAfter(long lastEventSeq) {
+            JsonArray events = new JsonArray();
+            for (JsonObject event : eventLog) {
+                if (event.get("eventSeq").getAsLong() > lastEventSeq) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("odId", userId);
+            json.addProperty("displayName", displayName);
+            json.addProperty("speakerIndex", speakerIndex);
+            json.addProperty("muted", false);
+            json.addProperty("deafened", false);
+            return json;
+        }
+    }
+}
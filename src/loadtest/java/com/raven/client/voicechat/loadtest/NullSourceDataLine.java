@@ -0,0 +1,209 @@
+package com.raven.client.voicechat.loadtest;
+
+import javax.sound.sampled.*;
+
+/**
+ * Output line that discards audio but consumes it at the real-time rate of
+ * its format, so the playback mixer is paced exactly as it would be by a
+ * sound card. Lets the voice pipeline run on machines without audio devices.
+ */
+public class NullSourceDataLine implements SourceDataLine {
+
+    private final Line.Info lineInfo = new Line.Info(SourceDataLine.class);
+
+    private AudioFormat format;
+    private int bufferSize;
+    private double bytesPerNano;
+
+    private boolean open = false;
+    private boolean running = false;
+
+    // Bytes written and bytes the virtual device has played so far
+    private long writtenBytes = 0;
+    private long playedBytes = 0;
+    private long lastUpdateNanos;
+
+    // Times the device ran dry while audio was still arriving
+    private long underruns = 0;
+
+    @Override
+    public synchronized void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
+        this.format = format;
+        this.bufferSize = bufferSize - bufferSize % format.getFrameSize();
+        this.bytesPerNano = format.getFrameRate() * format.getFrameSize() / 1_000_000_000.0;
+        this.open = true;
+    }
+
+    @Override
+    public void open(AudioFormat format) throws LineUnavailableException {
+        open(format, (int) (format.getFrameRate() * format.getFrameSize() / 2));
+    }
+
+    @Override
+    public void open() throws LineUnavailableException {
+        throw new LineUnavailableException("Format required");
+    }
+
+    @Override
+    public int write(byte[] b, int off, int len) {
+        int written = 0;
+        while (written < len) {
+            int chunk;
+            synchronized (this) {
+                if (!open) {
+                    return written;
+                }
+                advance();
+                if (writtenBytes == playedBytes && writtenBytes > 0 && running) {
+                    underruns++;
+                }
+                chunk = Math.min(len - written, bufferSize - (int) (writtenBytes - playedBytes));
+                writtenBytes += chunk;
+            }
+            written += chunk;
+
+            if (written < len) {
+                // Line is full; block like a real device until it drains
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return written;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Let the virtual device play out what the elapsed time allows
+     */
+    private void advance() {
+        long now = System.nanoTime();
+        if (running) {
+            long playable = (long) ((now - lastUpdateNanos) * bytesPerNano);
+            playable -= playable % format.getFrameSize();
+            if (playable > 0) {
+                playedBytes = Math.min(writtenBytes, playedBytes + playable);
+                lastUpdateNanos = now;
+            }
+        } else {
+            lastUpdateNanos = now;
+        }
+    }
+
+    @Override
+    public synchronized int available() {
+        advance();
+        return bufferSize - (int) (writtenBytes - playedBytes);
+    }
+
+    @Override
+    public synchronized void drain() {
+        advance();
+        playedBytes = writtenBytes;
+    }
+
+    @Override
+    public synchronized void flush() {
+        advance();
+        writtenBytes = playedBytes;
+    }
+
+    @Override
+    public synchronized void start() {
+        advance();
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        advance();
+        running = false;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        running = false;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public synchronized boolean isActive() {
+        advance();
+        return running && writtenBytes > playedBytes;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public int getFramePosition() {
+        return (int) getLongFramePosition();
+    }
+
+    @Override
+    public synchronized long getLongFramePosition() {
+        advance();
+        return playedBytes / format.getFrameSize();
+    }
+
+    @Override
+    public long getMicrosecondPosition() {
+        return (long) (getLongFramePosition() * 1_000_000L / format.getFrameRate());
+    }
+
+    @Override
+    public float getLevel() {
+        return AudioSystem.NOT_SPECIFIED;
+    }
+
+    public synchronized long getUnderruns() {
+        return underruns;
+    }
+
+    @Override
+    public Line.Info getLineInfo() {
+        return lineInfo;
+    }
+
+    @Override
+    public Control[] getControls() {
+        return new Control[0];
+    }
+
+    @Override
+    public boolean isControlSupported(Control.Type control) {
+        return false;
+    }
+
+    @Override
+    public Control getControl(Control.Type control) {
+        throw new IllegalArgumentException("Unsupported control type: " + control);
+    }
+
+    @Override
+    public void addLineListener(LineListener listener) {
+    }
+
+    @Override
+    public void removeLineListener(LineListener listener) {
+    }
+}
@@ -0,0 +1,349 @@
+package com.raven.client.voicechat.loadtest;
+
+import com.raven.client.voicechat.VoiceChatManager;
+import com.raven.client.voicechat.audio.AdaptiveJitterBuffer;
+import com.raven.client.voicechat.audio.AudioCapture;
+import com.raven.client.voicechat.audio.AudioPlayback;
+import com.raven.client.voicechat.audio.OpusCodec;
+import com.raven.client.voicechat.model.VoiceUser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless voice chat load test.
+ *
+ * Starts a {@link LoopbackVoiceServer}, connects the real VoiceChatManager to
+ * it as a listener playing into a {@link NullSourceDataLine}, and has N
+ * simulated speakers talk continuously through the server's impaired link.
+ * Reports end-to-end latency (sender capture time to estimated speaker
+ * output) percentiles, jitter buffer behaviour and the CPU cost of the mixer
+ * and network threads per mixed stream. With --drop-control the server cuts
+ * the client's control connection every so many seconds to exercise
+ * session resume while audio keeps flowing. The control channel uses the
+ * binary protocol unless --protocol json is given.
+ *
+ * Usage: VoiceLoadTest [--speakers 8] [--seconds 30] [--warmup 2]
+ *        [--loss 0] [--delay 0] [--jitter 0] [--reorder 0]
+ *        [--protocol binary|json] [--drop-control seconds]
+ *        [--max-p99 ms] [--max-underruns n]
+ *
+ * Exits with status 1 if a --max-* limit is exceeded, so it can gate a build.
+ */
+public class VoiceLoadTest {
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    // Frames of synthetic speech encoded up front and looped by every speaker
+    private static final int ENCODED_FRAMES = 250;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int speakers = Integer.parseInt(options.getOrDefault("speakers", "8"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        double loss = Double.parseDouble(options.getOrDefault("loss", "0"));
+        double delay = Double.parseDouble(options.getOrDefault("delay", "0"));
+        double jitter = Double.parseDouble(options.getOrDefault("jitter", "0"));
+        double reorder = Double.parseDouble(options.getOrDefault("reorder", "0"));
+        int dropControlSeconds = Integer.parseInt(options.getOrDefault("drop-control", "0"));
+        boolean binaryProtocol = !options.getOrDefault("protocol", "binary").equals("json");
+
+        System.out.println(String.format("[LoadTest] %d speakers, %ds (+%ds warmup), loss=%.1f%% delay=%.0fms jitter=%.0fms reorder=%.1f%% protocol=%s",
+            speakers, seconds, warmupSeconds, loss, delay, jitter, reorder, binaryProtocol ? "binary" : "json"));
+
+        // Server with one simulated member per speaker
+        LoopbackVoiceServer server = new LoopbackVoiceServer(binaryProtocol);
+        server.start();
+        server.setImpairment(loss, delay, jitter, reorder);
+        int[] speakerIndexes = new int[speakers];
+        for (int i = 0; i < speakers; i++) {
+            speakerIndexes[i] = server.addSimulatedSpeaker("Speaker" + (i + 1));
+        }
+
+        // Real client, listening only
+        NullSourceDataLine line = new NullSourceDataLine();
+        VoiceChatManager manager = VoiceChatManager.getInstance();
+        manager.setLocalIdentity(UUID.randomUUID(), "LoadTest");
+        manager.setMuted(true);
+        manager.setServerHost(InetAddress.getLoopbackAddress().getHostAddress());
+        manager.setServerTcpPort(server.getControlPort());
+        manager.setServerUdpPort(server.getAudioPort());
+        manager.setAuthToken("loadtest");
+        manager.initialize(line);
+
+        manager.connect();
+        waitFor(manager::isConnected, 5000, "connection");
+        manager.joinRoom("loopback");
+        waitFor(() -> manager.getCurrentRoom() != null && manager.getUsersInRoom().size() >= speakers, 5000, "room join");
+        // Give the keepalive time to register our audio address
+        Thread.sleep(200);
+
+        byte[][] frames = encodeSpeech();
+
+        LatencyRecorder latencies = new LatencyRecorder();
+        long startNanos = System.nanoTime();
+        long warmupEndNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        AudioPlayback playback = manager.getAudioPlayback();
+        playback.setPlayoutObserver((user, timestamp, playoutNanos) -> {
+            if (playoutNanos < warmupEndNanos) {
+                return;
+            }
+            // Every speaker's sample clock starts at zero at startNanos
+            long captureNanos = startNanos + (long) (timestamp * 1_000_000_000.0 / AudioCapture.SAMPLE_RATE);
+            latencies.record(playoutNanos - captureNanos);
+        });
+
+        // All speakers send one frame every 20ms, each from its own point in the clip
+        DatagramSocket senderSocket = new DatagramSocket();
+        InetAddress serverAddress = InetAddress.getLoopbackAddress();
+        int audioPort = server.getAudioPort();
+        byte[] packet = new byte[9 + OpusCodec.MAX_PACKET_BYTES];
+        DatagramPacket datagram = new DatagramPacket(packet, packet.length, serverAddress, audioPort);
+        long[] packetsSent = new long[1];
+
+        ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LoadTest-Speakers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleAtFixedRate(new Runnable() {
+            long frameIndex = 0;
+
+            @Override
+            public void run() {
+                // Catch up by frame count so scheduling hiccups do not skew the sender clock
+                long due = (System.nanoTime() - startNanos) / FRAME_NANOS;
+                for (; frameIndex <= due; frameIndex++) {
+                    int seq = (int) (frameIndex & 0xFFFF);
+                    long timestamp = frameIndex * AudioCapture.FRAME_SIZE;
+                    for (int s = 0; s < speakerIndexes.length; s++) {
+                        byte[] opus = frames[(int) ((frameIndex + s * 37L) % frames.length)];
+                        packet[0] = 0x05;
+                        packet[1] = (byte) (speakerIndexes[s] >> 8);
+                        packet[2] = (byte) speakerIndexes[s];
+                        packet[3] = (byte) (seq >> 8);
+                        packet[4] = (byte) seq;
+                        packet[5] = (byte) (timestamp >> 24);
+                        packet[6] = (byte) (timestamp >> 16);
+                        packet[7] = (byte) (timestamp >> 8);
+                        packet[8] = (byte) timestamp;
+                        System.arraycopy(opus, 0, packet, 9, opus.length);
+                        datagram.setLength(9 + opus.length);
+                        try {
+                            senderSocket.send(datagram);
+                            packetsSent[0]++;
+                        } catch (Exception e) {
+                            System.err.println("[LoadTest] Send failed: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        }, 0, 20, TimeUnit.MILLISECONDS);
+
+        long[] controlDrops = new long[1];
+        if (dropControlSeconds > 0) {
+            sender.scheduleAtFixedRate(() -> controlDrops[0] += server.dropControlConnections(),
+                warmupSeconds + dropControlSeconds, dropControlSeconds, TimeUnit.SECONDS);
+        }
+
+        // Measure CPU only over the measurement window
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        long mixerThread = findThread("VoiceChat-AudioPlayback");
+        long networkThread = findThread("VoiceChat-Network");
+        long mixerCpuStart = threadCpu(threads, mixerThread);
+        long networkCpuStart = threadCpu(threads, networkThread);
+        long lineUnderrunsStart = line.getUnderruns();
+        manager.getMetrics().reset();
+        long windowStart = System.nanoTime();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+        long windowNanos = System.nanoTime() - windowStart;
+        long mixerCpu = threadCpu(threads, mixerThread) - mixerCpuStart;
+        long networkCpu = threadCpu(threads, networkThread) - networkCpuStart;
+        long lineUnderruns = line.getUnderruns() - lineUnderrunsStart;
+
+        sender.shutdownNow();
+        playback.setPlayoutObserver(null);
+        Thread.sleep(300);
+
+        // Jitter buffer totals over every simulated speaker
+        long received = 0, late = 0, dropped = 0, concealed = 0, fec = 0, underruns = 0;
+        double jitterSum = 0;
+        for (VoiceUser user : manager.getUsersInRoom().values()) {
+            AdaptiveJitterBuffer buffer = playback.getJitterBuffer(user.getUserId());
+            if (buffer == null) {
+                continue;
+            }
+            received += buffer.getPacketsReceived();
+            late += buffer.getLatePackets();
+            dropped += buffer.getDroppedPackets();
+            concealed += buffer.getConcealedFrames();
+            fec += buffer.getFecRecoveredFrames();
+            underruns += buffer.getUnderruns();
+            jitterSum += buffer.getJitterMillis();
+        }
+
+        double windowSeconds = windowNanos / 1_000_000_000.0;
+        double mixerCorePercent = mixerCpu / (double) windowNanos * 100.0;
+        double networkCorePercent = networkCpu / (double) windowNanos * 100.0;
+
+        System.out.println("[LoadTest] ===== Results =====");
+        System.out.println(String.format("[LoadTest] packets: sent=%d relayed=%d lost-in-link=%d received=%d",
+            packetsSent[0], server.getPacketsRelayed(), server.getPacketsLost(), received));
+        System.out.println(String.format("[LoadTest] end-to-end latency (ms): n=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f",
+            latencies.count(), latencies.percentileMillis(50), latencies.percentileMillis(90),
+            latencies.percentileMillis(99), latencies.percentileMillis(100)));
+        System.out.println(String.format("[LoadTest] jitter buffers: underruns=%d late=%d dropped=%d concealed=%d fec-recovered=%d avg-jitter=%.2fms",
+            underruns, late, dropped, concealed, fec, speakers > 0 ? jitterSum / speakers : 0));
+        System.out.println(String.format("[LoadTest] output line underruns: %d", lineUnderruns));
+        System.out.println(String.format("[LoadTest] mixer CPU: %.2f%% of a core, %.3f%% per stream (%s)",
+            mixerCorePercent, mixerCorePercent / speakers, playback.getMixLatency()));
+        System.out.println(String.format("[LoadTest] network CPU: %.2f%% of a core, %.3f%% per stream",
+            networkCorePercent, networkCorePercent / speakers));
+        if (dropControlSeconds > 0) {
+            System.out.println(String.format("[LoadTest] control drops=%d sessions resumed=%d binary connections=%d still connected=%b",
+                controlDrops[0], server.getSessionsResumed(), server.getBinaryConnections(),
+                manager.isConnected() && !manager.isReconnecting()));
+        }
+        System.out.println(String.format("[LoadTest] measured over %.1fs", windowSeconds));
+        System.out.println("[LoadTest] ===== Client metrics =====");
+        for (String metric : manager.getMetrics().getReport()) {
+            System.out.println("[LoadTest] " + metric);
+        }
+
+        manager.shutdown();
+        server.stop();
+        senderSocket.close();
+
+        boolean failed = false;
+        if (options.containsKey("max-p99")) {
+            double limit = Double.parseDouble(options.get("max-p99"));
+            if (latencies.percentileMillis(99) > limit) {
+                System.err.println(String.format("[LoadTest] FAIL: p99 latency %.1fms exceeds %.1fms", latencies.percentileMillis(99), limit));
+                failed = true;
+            }
+        }
+        if (options.containsKey("max-underruns")) {
+            long limit = Long.parseLong(options.get("max-underruns"));
+            if (underruns > limit) {
+                System.err.println(String.format("[LoadTest] FAIL: %d underruns exceeds %d", underruns, limit));
+                failed = true;
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Encode a looping clip of voice-like audio: a few harmonics of a gliding
+     * pitch, shaped into syllables, with a little breath noise
+     */
+    private static byte[][] encodeSpeech() {
+        OpusCodec codec = new OpusCodec();
+        codec.setDtxEnabled(false);
+        if (!codec.initialize()) {
+            throw new IllegalStateException("Opus encoder unavailable");
+        }
+
+        Random random = new Random(42);
+        short[] pcm = new short[AudioCapture.FRAME_SIZE];
+        byte[] out = new byte[OpusCodec.MAX_PACKET_BYTES];
+        byte[][] frames = new byte[ENCODED_FRAMES][];
+        double phase = 0;
+
+        for (int f = 0; f < ENCODED_FRAMES; f++) {
+            for (int i = 0; i < pcm.length; i++) {
+                double t = (f * pcm.length + i) / (double) AudioCapture.SAMPLE_RATE;
+                double pitch = 140 + 40 * Math.sin(2 * Math.PI * 0.7 * t);
+                phase += 2 * Math.PI * pitch / AudioCapture.SAMPLE_RATE;
+                double voice = Math.sin(phase) + 0.5 * Math.sin(2 * phase) + 0.25 * Math.sin(3 * phase);
+                double syllable = 0.35 + 0.65 * Math.abs(Math.sin(2 * Math.PI * 2.0 * t));
+                double sample = (voice * syllable * 0.3 + random.nextGaussian() * 0.01) * 32767;
+                pcm[i] = (short) Math.max(-32768, Math.min(32767, sample));
+            }
+            int length = codec.encode(pcm, 0, out, 0, out.length);
+            if (length <= 0) {
+                throw new IllegalStateException("Opus encode failed");
+            }
+            frames[f] = Arrays.copyOf(out, length);
+        }
+
+        codec.shutdown();
+        return frames;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition, long timeoutMillis, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static long findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread.getId();
+            }
+        }
+        return -1;
+    }
+
+    private static long threadCpu(ThreadMXBean threads, long threadId) {
+        if (threadId < 0 || !threads.isThreadCpuTimeSupported()) {
+            return 0;
+        }
+        return Math.max(0, threads.getThreadCpuTime(threadId));
+    }
+
+    /**
+     * Collects latency samples from the mixer thread
+     */
+    private static class LatencyRecorder {
+        private long[] samples = new long[1 << 16];
+        private int count = 0;
+
+        synchronized void record(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[count++] = nanos;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+        }
+    }
+}
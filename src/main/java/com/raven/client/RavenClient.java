@@ -23,6 +23,7 @@ import com.raven.client.updater.UpdateChecker;
 import com.raven.client.updater.UpdateHandler;
 import com.raven.client.utils.ConfigManager;
 import com.raven.client.utils.DirectoryManager;
+import com.raven.client.utils.DungeonPlayerTracker;
 import com.raven.client.voicechat.VoiceChatEventHandler;
 import com.raven.client.voicechat.VoiceChatManager;
 
@@ -80,6 +81,7 @@ public class RavenClient {
         // Initialize Voice Chat system
         VoiceChatManager.getInstance().initialize();
         MinecraftForge.EVENT_BUS.register(new VoiceChatEventHandler());
+        MinecraftForge.EVENT_BUS.register(new DungeonPlayerTracker());
 
         // Ensure folders
         DirectoryManager.ensureDirectoriesExist();
@@ -0,0 +1,291 @@
+package com.raven.client.api;
+
+import net.minecraft.client.Minecraft;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Cache of bazaar catalogue responses (categories, sections, item lists),
+ * shared by GuiBazaar and the bazaar tab of GuiAnnouncement and keyed by
+ * request URL.
+ *
+ * Entries live in memory (LRU) and in bazaar_cache/ so they survive a
+ * restart. Each entry carries the TTL it was requested with. A cached body
+ * is handed back immediately even when expired, and an expired one is then
+ * revalidated in the background; the caller hears again only if the body
+ * changed. Entries older than MAX_STALE are treated as missing. A request
+ * for a URL that is already being fetched (often by a prefetch) waits for
+ * that fetch instead of starting another.
+ */
+public final class BazaarCatalogueCache {
+
+    public static final long CATEGORY_TTL = 60 * 60 * 1000L;
+    public static final long SECTION_TTL = 60 * 60 * 1000L;
+    public static final long ITEM_TTL = 60 * 1000L;
+
+    private static final long MAX_STALE = 24 * 60 * 60 * 1000L;
+    private static final int MAX_MEMORY = 128;
+    private static final int MAX_DISK = 512;
+    private static final int FILE_VERSION = 1;
+
+    private static final class Cached {
+        final String body;
+        final long fetchedAt;
+        final long ttl;
+
+        Cached(String body, long fetchedAt, long ttl) {
+            this.body = body;
+            this.fetchedAt = fetchedAt;
+            this.ttl = ttl;
+        }
+
+        boolean isFresh(long now) {
+            return now - fetchedAt < ttl;
+        }
+    }
+
+    /**
+     * A caller waiting on a fetch in flight
+     */
+    private static final class Waiter {
+        // Body the caller already has, or null if it has nothing yet
+        final String knownBody;
+        final Consumer<String> onData;
+        final Consumer<Exception> onError;
+
+        Waiter(String knownBody, Consumer<String> onData, Consumer<Exception> onError) {
+            this.knownBody = knownBody;
+            this.onData = onData;
+            this.onError = onError;
+        }
+    }
+
+    // Least recently used first
+    private static final Map<String, Cached> memory = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+            return size() > MAX_MEMORY;
+        }
+    };
+
+    // Waiters per URL being fetched; guarded by itself
+    private static final Map<String, List<Waiter>> inFlight = new HashMap<>();
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Bazaar-Catalogue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static File directory;
+    private static boolean diskPruned = false;
+
+    private BazaarCatalogueCache() {
+    }
+
+    /**
+     * Get a catalogue response. onData runs on the calling thread if
+     * anything is cached, otherwise (and again after a revalidation that
+     * changed the body) on a background thread. onError runs only when
+     * there was nothing to show.
+     */
+    public static void load(String url, long ttl, Consumer<String> onData, Consumer<Exception> onError) {
+        long now = System.currentTimeMillis();
+        Cached cached = lookup(url, now);
+        if (cached != null) {
+            onData.accept(cached.body);
+            if (!cached.isFresh(now)) {
+                refresh(url, ttl, new Waiter(cached.body, onData, null));
+            }
+            return;
+        }
+
+        refresh(url, ttl, new Waiter(null, onData, onError));
+    }
+
+    /**
+     * Fetch a response ahead of time if it is missing or expired
+     */
+    public static void prefetch(String url, long ttl) {
+        Cached cached = lookup(url, System.currentTimeMillis());
+        if (cached == null || !cached.isFresh(System.currentTimeMillis())) {
+            refresh(url, ttl, null);
+        }
+    }
+
+    /**
+     * Fetch a URL, or join the fetch already in flight for it
+     *
+     * @param waiter Caller to tell about the result, or null for none
+     */
+    private static void refresh(String url, long ttl, Waiter waiter) {
+        synchronized (inFlight) {
+            List<Waiter> waiters = inFlight.get(url);
+            boolean start = waiters == null;
+            if (start) {
+                waiters = new ArrayList<>();
+                inFlight.put(url, waiters);
+            }
+            if (waiter != null) {
+                waiters.add(waiter);
+            }
+            if (!start) return;
+        }
+
+        executor.submit(() -> {
+            Cached fresh = null;
+            Exception error = null;
+            try {
+                fresh = fetch(url, ttl);
+            } catch (Exception e) {
+                error = e;
+                System.err.println("[Bazaar] Failed to fetch " + url + ": " + e.getMessage());
+            }
+
+            List<Waiter> waiters;
+            synchronized (inFlight) {
+                waiters = inFlight.remove(url);
+            }
+            for (Waiter w : waiters) {
+                try {
+                    if (fresh != null) {
+                        // Callers that already show this body hear nothing
+                        if (!fresh.body.equals(w.knownBody)) {
+                            w.onData.accept(fresh.body);
+                        }
+                    } else if (w.onError != null) {
+                        w.onError.accept(error);
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private static Cached fetch(String url, long ttl) throws IOException {
+        String body = BazaarFetcher.get(url).text();
+        Cached entry = new Cached(body, System.currentTimeMillis(), ttl);
+        synchronized (memory) {
+            memory.put(url, entry);
+        }
+        write(url, entry);
+        return entry;
+    }
+
+    private static Cached lookup(String url, long now) {
+        Cached entry;
+        synchronized (memory) {
+            entry = memory.get(url);
+        }
+        if (entry == null) {
+            entry = read(url);
+            if (entry != null) {
+                synchronized (memory) {
+                    memory.put(url, entry);
+                }
+            }
+        }
+        return entry != null && now - entry.fetchedAt < MAX_STALE ? entry : null;
+    }
+
+    // ---- Disk ----
+
+    private static synchronized File directory() {
+        if (directory == null) {
+            directory = new File(Minecraft.getMinecraft().mcDataDir, "bazaar_cache");
+            if (!directory.exists()) directory.mkdirs();
+        }
+        return directory;
+    }
+
+    private static File fileFor(String url) {
+        return new File(directory(), hash(url) + ".bin");
+    }
+
+    private static Cached read(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != FILE_VERSION) return null;
+            // Guards against a hash collision
+            if (!in.readUTF().equals(url)) return null;
+            long fetchedAt = in.readLong();
+            long ttl = in.readLong();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Cached(new String(body, StandardCharsets.UTF_8), fetchedAt, ttl);
+        } catch (IOException e) {
+            System.err.println("[Bazaar] Dropping unreadable cache file: " + file.getName());
+            file.delete();
+            return null;
+        }
+    }
+
+    private static void write(String url, Cached entry) {
+        File file = fileFor(url);
+        File temp = new File(file.getPath() + ".tmp");
+        byte[] body = entry.body.getBytes(StandardCharsets.UTF_8);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(url);
+            out.writeLong(entry.fetchedAt);
+            out.writeLong(entry.ttl);
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (IOException e) {
+            System.err.println("[Bazaar] Failed to write cache file: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        file.delete();
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+        pruneDisk();
+    }
+
+    // Once per session, drop the least recently written files over the limit
+    private static synchronized void pruneDisk() {
+        if (diskPruned) return;
+        diskPruned = true;
+
+        File[] files = directory().listFiles((dir, name) -> name.endsWith(".bin"));
+        if (files == null || files.length <= MAX_DISK) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - MAX_DISK; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.raven.client.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads per-product bazaar details for hover tooltips.
+ *
+ * The screen says which product is hovered and which rows are visible; it
+ * never queues requests itself. One worker fetches whatever is wanted at
+ * that moment, the hovered product first and then the visible rows in
+ * order, over the same kept-alive connection. Moving the mouse replaces
+ * what is wanted rather than adding to a queue, so a sweep down a list
+ * costs at most the request already in flight. Screens read details back
+ * with {@link #get} for the product currently hovered, so a late answer
+ * can never show up under the wrong item.
+ *
+ * Results are cached for a short TTL; failures are not retried for a few
+ * seconds.
+ */
+public final class BazaarDetailLoader<T> {
+
+    private static final int MAX_CACHED = 256;
+    private static final long FAILURE_BACKOFF = 10 * 1000L;
+
+    /**
+     * Fetches one product's detail, or null if the server has none
+     */
+    public interface Fetcher<T> {
+        T fetch(String productId) throws Exception;
+    }
+
+    private static final class Cached<T> {
+        final T value;
+        final long loadedAt;
+        final boolean failed;
+
+        Cached(T value, long loadedAt, boolean failed) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.failed = failed;
+        }
+    }
+
+    private final long ttl;
+    private final Fetcher<T> fetcher;
+
+    // Least recently used first
+    private final Map<String, Cached<T>> cache = new LinkedHashMap<String, Cached<T>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached<T>> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private final ExecutorService worker;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile String hovered;
+    private volatile List<String> visible = new ArrayList<>();
+
+    public BazaarDetailLoader(String threadName, long ttl, Fetcher<T> fetcher) {
+        this.ttl = ttl;
+        this.fetcher = fetcher;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The cached detail for a hovered product, or null while it loads.
+     * Makes it the next product fetched if it is missing or expired.
+     */
+    public T get(String productId) {
+        Cached<T> cached;
+        synchronized (cache) {
+            cached = cache.get(productId);
+        }
+        long now = System.currentTimeMillis();
+        if (!isCurrent(cached, now)) {
+            hovered = productId;
+            wake();
+        }
+        return cached != null && !cached.failed ? cached.value : null;
+    }
+
+    /**
+     * Replace the rows worth loading ahead of a hover, in display order.
+     * Cheap to call every frame with the same list.
+     */
+    public void prefetch(List<String> productIds) {
+        if (productIds.equals(visible)) return;
+        visible = new ArrayList<>(productIds);
+        wake();
+    }
+
+    /**
+     * Forget everything wanted, e.g. when the screen closes
+     */
+    public void clearWanted() {
+        hovered = null;
+        visible = new ArrayList<>();
+    }
+
+    private boolean isCurrent(Cached<T> cached, long now) {
+        if (cached == null) return false;
+        return now - cached.loadedAt < (cached.failed ? FAILURE_BACKOFF : ttl);
+    }
+
+    private void wake() {
+        if (running.compareAndSet(false, true)) {
+            worker.submit(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            String next;
+            while ((next = nextWanted()) != null) {
+                load(next);
+            }
+        } finally {
+            running.set(false);
+        }
+        // Something may have been asked for between the last check and clearing the flag
+        if (nextWanted() != null) {
+            wake();
+        }
+    }
+
+    private String nextWanted() {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            String hover = hovered;
+            if (hover != null && !isCurrent(cache.get(hover), now)) {
+                return hover;
+            }
+            for (String productId : visible) {
+                if (!isCurrent(cache.get(productId), now)) {
+                    return productId;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void load(String productId) {
+        Cached<T> result;
+        try {
+            result = new Cached<>(fetcher.fetch(productId), System.currentTimeMillis(), false);
+        } catch (Exception e) {
+            System.err.println("[Bazaar] Error loading item detail: " + e.getMessage());
+            result = new Cached<>(null, System.currentTimeMillis(), true);
+        }
+        synchronized (cache) {
+            cache.put(productId, result);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.raven.client.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Shared HTTP client for the bazaar endpoints, used by the Stockholder
+ * poller and both bazaar browsers.
+ *
+ * Requests ask for gzip and always drain and close the response, so
+ * HttpURLConnection keeps the socket alive for the next call. ETag and
+ * Last-Modified validators are remembered per URL and sent back as
+ * If-None-Match / If-Modified-Since; a 304 is answered from the cached body.
+ * Concurrent {@link #get} calls for the same URL share one request.
+ */
+public final class BazaarFetcher {
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 5000;
+    private static final int MAX_CACHED = 64;
+
+    /**
+     * A finished request
+     */
+    public static final class Response {
+        public final byte[] body;
+        public final boolean notModified;
+
+        Response(byte[] body, boolean notModified) {
+            this.body = body;
+            this.notModified = notModified;
+        }
+
+        public String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads a response body as it arrives
+     */
+    public interface StreamHandler<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    private static final class Validators {
+        String etag;
+        String lastModified;
+        byte[] body;
+    }
+
+    // Least recently used first
+    private static final Map<String, Validators> validators = new LinkedHashMap<String, Validators>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Validators> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private static final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+
+    private BazaarFetcher() {
+    }
+
+    /**
+     * Fetch a URL, joining a request already in flight for it
+     */
+    public static Response get(String url) throws IOException {
+        CompletableFuture<Response> mine = new CompletableFuture<>();
+        CompletableFuture<Response> existing = inFlight.putIfAbsent(url, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            Response response = request(url);
+            mine.complete(response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(url, mine);
+        }
+    }
+
+    /**
+     * Fetch a URL and hand the body to a streaming reader instead of
+     * buffering it. Only the validators are cached.
+     *
+     * @return The handler's result, or null if the server said not modified
+     */
+    public static <T> T stream(String url, StreamHandler<T> handler) throws IOException {
+        return stream(url, true, handler);
+    }
+
+    /**
+     * As {@link #stream(String, StreamHandler)}. An unconditional request
+     * always gets the body and leaves the cached validators alone, so a
+     * one-off read does not make the regular poller see a 304.
+     */
+    public static <T> T stream(String url, boolean conditional, StreamHandler<T> handler) throws IOException {
+        HttpURLConnection conn = open(url, false, conditional);
+        try {
+            if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                drain(conn.getInputStream());
+                return null;
+            }
+            checkStatus(conn);
+
+            try (InputStream in = body(conn)) {
+                T result = handler.read(in);
+                if (conditional) remember(url, conn, null);
+                return result;
+            }
+        } catch (IOException e) {
+            drainError(conn);
+            throw e;
+        }
+    }
+
+    private static Response request(String url) throws IOException {
+        HttpURLConnection conn = open(url, true, true);
+        try {
+            if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                drain(conn.getInputStream());
+                synchronized (validators) {
+                    Validators cached = validators.get(url);
+                    if (cached != null && cached.body != null) {
+                        return new Response(cached.body, true);
+                    }
+                }
+                // Cache entry evicted between request and reply, ask again unconditionally
+                synchronized (validators) {
+                    validators.remove(url);
+                }
+                return request(url);
+            }
+            checkStatus(conn);
+
+            byte[] body;
+            try (InputStream in = body(conn)) {
+                body = readAll(in);
+            }
+            remember(url, conn, body);
+            return new Response(body, false);
+        } catch (IOException e) {
+            drainError(conn);
+            throw e;
+        }
+    }
+
+    private static HttpURLConnection open(String url, boolean needsBody, boolean conditional) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        conn.setRequestProperty("Connection", "keep-alive");
+
+        if (!conditional) return conn;
+        synchronized (validators) {
+            Validators cached = validators.get(url);
+            // A conditional request is only useful if we can answer a 304
+            if (cached != null && (!needsBody || cached.body != null)) {
+                if (cached.etag != null) conn.setRequestProperty("If-None-Match", cached.etag);
+                if (cached.lastModified != null) conn.setRequestProperty("If-Modified-Since", cached.lastModified);
+            }
+        }
+        return conn;
+    }
+
+    private static void remember(String url, HttpURLConnection conn, byte[] body) {
+        String etag = conn.getHeaderField("ETag");
+        String lastModified = conn.getHeaderField("Last-Modified");
+        synchronized (validators) {
+            if (etag == null && lastModified == null) {
+                validators.remove(url);
+                return;
+            }
+            Validators entry = new Validators();
+            entry.etag = etag;
+            entry.lastModified = lastModified;
+            entry.body = body;
+            validators.put(url, entry);
+        }
+    }
+
+    private static InputStream body(HttpURLConnection conn) throws IOException {
+        InputStream in = conn.getInputStream();
+        return "gzip".equalsIgnoreCase(conn.getContentEncoding()) ? new GZIPInputStream(in) : in;
+    }
+
+    private static void checkStatus(HttpURLConnection conn) throws IOException {
+        int status = conn.getResponseCode();
+        if (status < 200 || status >= 300) {
+            throw new IOException("HTTP " + status + " from " + conn.getURL());
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            while (stream.read(buffer) != -1) {
+                // Discard, so the connection can be reused
+            }
+        }
+    }
+
+    // Reading the error body lets the connection go back to the keep-alive pool
+    private static void drainError(HttpURLConnection conn) {
+        InputStream error = conn.getErrorStream();
+        if (error != null) {
+            try {
+                drain(error);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static Response await(CompletableFuture<Response> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for bazaar request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+}
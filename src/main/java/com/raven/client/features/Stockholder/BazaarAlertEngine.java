@@ -0,0 +1,315 @@
+package com.raven.client.features.Stockholder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates {@link BazaarAlertRule}s against each bazaar update.
+ *
+ * Rules are indexed by product on load, so a product only checks the rules
+ * that can apply to it. Price change metrics read from rolling windows that
+ * are extended by one sample per product per update, never by rescanning
+ * history; each distinct price/window pair used by any rule gets one window
+ * per product. A rule reports a product when it starts matching and stays
+ * quiet until it stops matching again, tracked as one bit per rule in the
+ * product's state.
+ */
+public class BazaarAlertEngine {
+
+    /**
+     * A rule that started matching a product
+     */
+    public static class Hit {
+        public final BazaarAlertRule rule;
+        public final BazaarItem item;
+
+        Hit(BazaarAlertRule rule, BazaarItem item) {
+            this.rule = rule;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Per product: its change windows and which rules it currently matches
+     */
+    private static class ItemState {
+        RollingWindow[] windows;
+        BitSet matching = new BitSet();
+    }
+
+    /**
+     * Samples of one price covering the last window, oldest first
+     */
+    private static class RollingWindow {
+        private final long windowMillis;
+        private long[] times = new long[16];
+        private double[] values = new double[16];
+        private int head = 0;
+        private int size = 0;
+
+        RollingWindow(long windowMillis) {
+            this.windowMillis = windowMillis;
+        }
+
+        void add(long timestamp, double value) {
+            if (size == times.length) {
+                grow();
+            }
+            int tail = (head + size) % times.length;
+            times[tail] = timestamp;
+            values[tail] = value;
+            size++;
+
+            // Keep the newest sample at or before the window start as the baseline
+            while (size >= 2 && times[(head + 1) % times.length] <= timestamp - windowMillis) {
+                head = (head + 1) % times.length;
+                size--;
+            }
+        }
+
+        /**
+         * Percent change from the start of the window to the newest sample,
+         * or NaN until the window is covered
+         */
+        double changePercent(long now) {
+            if (size < 2) return Double.NaN;
+            // Allow for the fetch landing a little late
+            if (times[head] > now - windowMillis + 30_000L) return Double.NaN;
+
+            double first = values[head];
+            double last = values[(head + size - 1) % times.length];
+            return first > 0 ? (last - first) / first * 100 : Double.NaN;
+        }
+
+        private void grow() {
+            long[] newTimes = new long[times.length * 2];
+            double[] newValues = new double[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                newTimes[i] = times[(head + i) % times.length];
+                newValues[i] = values[(head + i) % values.length];
+            }
+            times = newTimes;
+            values = newValues;
+            head = 0;
+        }
+    }
+
+    private final File rulesFile;
+    private final List<BazaarAlertRule> rules = new ArrayList<>();
+
+    // Compiled form: rules for every product, rules per product ID, and the distinct change windows
+    private final List<BazaarAlertRule> globalRules = new ArrayList<>();
+    private final Map<String, List<BazaarAlertRule>> rulesByItem = new HashMap<>();
+    private final List<BazaarAlertRule.Condition> slots = new ArrayList<>();
+    private final Map<String, ItemState> states = new HashMap<>();
+
+    // Rules in bit order of ItemState.matching
+    private List<BazaarAlertRule> indexed = new ArrayList<>();
+
+    public BazaarAlertEngine(File rulesFile) {
+        this.rulesFile = rulesFile;
+    }
+
+    /**
+     * Check one update. Call once per fetch with every product it returned.
+     */
+    public synchronized List<Hit> evaluate(long timestamp, Map<String, BazaarItem> items) {
+        if (rules.isEmpty()) return Collections.emptyList();
+
+        List<Hit> hits = new ArrayList<>();
+        for (BazaarItem item : items.values()) {
+            ItemState state = states.get(item.id);
+            if (state == null) {
+                state = new ItemState();
+                state.windows = newWindows();
+                states.put(item.id, state);
+            }
+            RollingWindow[] itemWindows = state.windows;
+            for (int s = 0; s < itemWindows.length; s++) {
+                itemWindows[s].add(timestamp, slots.get(s).field == BazaarAlertRule.BUY ? item.buyPrice : item.sellPrice);
+            }
+
+            check(globalRules, item, state, timestamp, hits);
+            List<BazaarAlertRule> own = rulesByItem.get(item.id);
+            if (own != null) {
+                check(own, item, state, timestamp, hits);
+            }
+        }
+        return hits;
+    }
+
+    private static void check(List<BazaarAlertRule> candidates, BazaarItem item, ItemState state,
+                              long timestamp, List<Hit> hits) {
+        for (int i = 0, n = candidates.size(); i < n; i++) {
+            BazaarAlertRule rule = candidates.get(i);
+            if (matches(rule, item, state.windows, timestamp)) {
+                if (!state.matching.get(rule.index)) {
+                    state.matching.set(rule.index);
+                    hits.add(new Hit(rule, item));
+                }
+            } else {
+                state.matching.clear(rule.index);
+            }
+        }
+    }
+
+    private RollingWindow[] newWindows() {
+        RollingWindow[] itemWindows = new RollingWindow[slots.size()];
+        for (int s = 0; s < itemWindows.length; s++) {
+            itemWindows[s] = new RollingWindow(slots.get(s).windowMillis);
+        }
+        return itemWindows;
+    }
+
+    private static boolean matches(BazaarAlertRule rule, BazaarItem item, RollingWindow[] itemWindows, long timestamp) {
+        for (BazaarAlertRule.Condition condition : rule.conditions) {
+            double value;
+            switch (condition.metric) {
+                case BazaarAlertRule.BUY: value = item.buyPrice; break;
+                case BazaarAlertRule.SELL: value = item.sellPrice; break;
+                case BazaarAlertRule.BUY_VOLUME: value = item.buyVolume; break;
+                case BazaarAlertRule.SELL_VOLUME: value = item.sellVolume; break;
+                case BazaarAlertRule.MARGIN: value = item.getMargin(); break;
+                case BazaarAlertRule.MARGIN_PERCENT: value = item.getMarginPercent(); break;
+                default: value = itemWindows[condition.slot].changePercent(timestamp); break;
+            }
+            // NaN (not enough history yet) fails every comparison
+            if (!condition.test(value)) return false;
+        }
+        return true;
+    }
+
+    public synchronized List<BazaarAlertRule> getRules() {
+        return new ArrayList<>(rules);
+    }
+
+    public synchronized void addRule(BazaarAlertRule rule) {
+        rules.add(rule);
+        compile();
+    }
+
+    /**
+     * @return The removed rule, or null if the index is out of range
+     */
+    public synchronized BazaarAlertRule removeRule(int index) {
+        if (index < 0 || index >= rules.size()) return null;
+        BazaarAlertRule removed = rules.remove(index);
+        compile();
+        return removed;
+    }
+
+    /**
+     * Rebuild the indexes. Windows are carried over by price and length, so
+     * only a window no rule used before starts out empty, and match state
+     * follows each rule to its new index.
+     */
+    private void compile() {
+        globalRules.clear();
+        rulesByItem.clear();
+        List<String> oldSlots = slotKeys();
+        slots.clear();
+
+        for (int i = 0; i < rules.size(); i++) {
+            BazaarAlertRule rule = rules.get(i);
+            rule.index = i;
+            if (rule.itemId == null) {
+                globalRules.add(rule);
+            } else {
+                rulesByItem.computeIfAbsent(rule.itemId, k -> new ArrayList<>()).add(rule);
+            }
+
+            for (BazaarAlertRule.Condition condition : rule.conditions) {
+                if (condition.metric != BazaarAlertRule.CHANGE) continue;
+                condition.slot = -1;
+                for (int s = 0; s < slots.size(); s++) {
+                    BazaarAlertRule.Condition slot = slots.get(s);
+                    if (slot.field == condition.field && slot.windowMillis == condition.windowMillis) {
+                        condition.slot = s;
+                        break;
+                    }
+                }
+                if (condition.slot < 0) {
+                    condition.slot = slots.size();
+                    slots.add(condition);
+                }
+            }
+        }
+
+        List<String> newSlots = slotKeys();
+        int[] carried = new int[newSlots.size()];
+        boolean windowsChanged = !newSlots.equals(oldSlots);
+        for (int s = 0; s < carried.length; s++) {
+            carried[s] = oldSlots.indexOf(newSlots.get(s));
+        }
+
+        for (ItemState state : states.values()) {
+            BitSet matching = new BitSet();
+            for (int bit = state.matching.nextSetBit(0); bit >= 0; bit = state.matching.nextSetBit(bit + 1)) {
+                BazaarAlertRule rule = indexed.get(bit);
+                if (rules.contains(rule)) {
+                    matching.set(rule.index);
+                }
+            }
+            state.matching = matching;
+            if (windowsChanged) {
+                RollingWindow[] itemWindows = new RollingWindow[carried.length];
+                for (int s = 0; s < carried.length; s++) {
+                    itemWindows[s] = carried[s] >= 0 ? state.windows[carried[s]]
+                        : new RollingWindow(slots.get(s).windowMillis);
+                }
+                state.windows = itemWindows;
+            }
+        }
+        indexed = new ArrayList<>(rules);
+    }
+
+    private List<String> slotKeys() {
+        List<String> keys = new ArrayList<>();
+        for (BazaarAlertRule.Condition slot : slots) {
+            keys.add(slot.field + "/" + slot.windowMillis);
+        }
+        return keys;
+    }
+
+    public synchronized void load() {
+        rules.clear();
+        if (rulesFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(rulesFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) continue;
+                    try {
+                        rules.add(BazaarAlertRule.parse(line));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("[Stockholder] Skipping alert rule '" + line + "': " + e.getMessage());
+                    }
+                }
+                System.out.println("[Stockholder] Loaded " + rules.size() + " alert rules.");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        compile();
+    }
+
+    public synchronized void save() {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rulesFile))) {
+            for (BazaarAlertRule rule : rules) {
+                writer.write(rule.text);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
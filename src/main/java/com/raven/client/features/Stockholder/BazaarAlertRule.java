@@ -0,0 +1,184 @@
+package com.raven.client.features.Stockholder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A compiled alert rule, e.g.
+ *
+ *   margin% > 5 and sellvol > 100k
+ *   ENCHANTED_DIAMOND: buy%10m <= -5
+ *
+ * An optional "ITEM_ID:" prefix limits the rule to one product, otherwise it
+ * applies to every product in the update. Conditions are joined with "and"
+ * and compare a metric against a number (k/m suffixes allowed). Metrics are
+ * buy, sell, buyvol, sellvol, margin, margin% and price changes over a
+ * window such as buy%10m or sell%1h, in percent.
+ *
+ * The text is parsed once; evaluation only compares doubles.
+ */
+public class BazaarAlertRule {
+
+    static final int BUY = 0;
+    static final int SELL = 1;
+    static final int BUY_VOLUME = 2;
+    static final int SELL_VOLUME = 3;
+    static final int MARGIN = 4;
+    static final int MARGIN_PERCENT = 5;
+    static final int CHANGE = 6;
+
+    private static final int GREATER = 0;
+    private static final int GREATER_EQUAL = 1;
+    private static final int LESS = 2;
+    private static final int LESS_EQUAL = 3;
+
+    /**
+     * One "metric op number" term
+     */
+    static class Condition {
+        final int metric;
+        final int op;
+        final double threshold;
+
+        // For CHANGE: which price and over how long, and the engine's window slot
+        final int field;
+        final long windowMillis;
+        int slot = -1;
+
+        Condition(int metric, int field, long windowMillis, int op, double threshold) {
+            this.metric = metric;
+            this.field = field;
+            this.windowMillis = windowMillis;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        boolean test(double value) {
+            switch (op) {
+                case GREATER: return value > threshold;
+                case GREATER_EQUAL: return value >= threshold;
+                case LESS: return value < threshold;
+                default: return value <= threshold;
+            }
+        }
+    }
+
+    public final String text;
+    final String itemId;
+    final Condition[] conditions;
+
+    // Position in the engine's rule list, set when the engine compiles
+    int index;
+
+    private BazaarAlertRule(String text, String itemId, Condition[] conditions) {
+        this.text = text;
+        this.itemId = itemId;
+        this.conditions = conditions;
+    }
+
+    /**
+     * Compile a rule
+     *
+     * @throws IllegalArgumentException With a message fit for chat if the rule is malformed
+     */
+    public static BazaarAlertRule parse(String text) {
+        String body = text.trim();
+        String itemId = null;
+
+        int colon = body.indexOf(": ");
+        if (colon > 0) {
+            itemId = body.substring(0, colon).trim().toUpperCase(Locale.ROOT);
+            body = body.substring(colon + 2).trim();
+        }
+
+        String[] tokens = body.toLowerCase(Locale.ROOT).split("\\s+");
+        List<Condition> conditions = new ArrayList<>();
+        int i = 0;
+        while (true) {
+            if (i + 3 > tokens.length) {
+                throw new IllegalArgumentException("Expected <metric> <op> <number> in: " + body);
+            }
+            conditions.add(parseCondition(tokens[i], tokens[i + 1], tokens[i + 2]));
+            i += 3;
+
+            if (i == tokens.length) break;
+            if (!tokens[i].equals("and")) {
+                throw new IllegalArgumentException("Expected 'and' before: " + tokens[i]);
+            }
+            i++;
+        }
+
+        // Plain comparisons first, so most rules fail before touching a window
+        conditions.sort((a, b) -> Boolean.compare(a.metric == CHANGE, b.metric == CHANGE));
+        return new BazaarAlertRule(text.trim(), itemId, conditions.toArray(new Condition[0]));
+    }
+
+    private static Condition parseCondition(String metric, String op, String number) {
+        int opCode;
+        switch (op) {
+            case ">": opCode = GREATER; break;
+            case ">=": opCode = GREATER_EQUAL; break;
+            case "<": opCode = LESS; break;
+            case "<=": opCode = LESS_EQUAL; break;
+            default: throw new IllegalArgumentException("Unknown comparison: " + op);
+        }
+        double threshold = parseNumber(number);
+
+        switch (metric) {
+            case "buy": return new Condition(BUY, 0, 0, opCode, threshold);
+            case "sell": return new Condition(SELL, 0, 0, opCode, threshold);
+            case "buyvol": return new Condition(BUY_VOLUME, 0, 0, opCode, threshold);
+            case "sellvol": return new Condition(SELL_VOLUME, 0, 0, opCode, threshold);
+            case "margin": return new Condition(MARGIN, 0, 0, opCode, threshold);
+            case "margin%": return new Condition(MARGIN_PERCENT, 0, 0, opCode, threshold);
+        }
+
+        // buy%10m, sell%2h
+        int percent = metric.indexOf('%');
+        if (percent > 0 && percent < metric.length() - 2) {
+            String field = metric.substring(0, percent);
+            if (field.equals("buy") || field.equals("sell")) {
+                return new Condition(CHANGE, field.equals("buy") ? BUY : SELL,
+                        parseWindow(metric.substring(percent + 1)), opCode, threshold);
+            }
+        }
+        throw new IllegalArgumentException("Unknown metric: " + metric);
+    }
+
+    private static long parseWindow(String window) {
+        char unit = window.charAt(window.length() - 1);
+        long amount;
+        try {
+            amount = Long.parseLong(window.substring(0, window.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad window: " + window);
+        }
+        long millis;
+        switch (unit) {
+            case 'm': millis = amount * 60 * 1000L; break;
+            case 'h': millis = amount * 60 * 60 * 1000L; break;
+            default: throw new IllegalArgumentException("Window must end in m or h: " + window);
+        }
+        if (millis <= 0 || millis > 24 * 60 * 60 * 1000L) {
+            throw new IllegalArgumentException("Window must be between 1m and 24h: " + window);
+        }
+        return millis;
+    }
+
+    private static double parseNumber(String number) {
+        double scale = 1;
+        if (number.endsWith("k")) {
+            scale = 1_000;
+            number = number.substring(0, number.length() - 1);
+        } else if (number.endsWith("m")) {
+            scale = 1_000_000;
+            number = number.substring(0, number.length() - 1);
+        }
+        try {
+            return Double.parseDouble(number) * scale;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number: " + number);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.raven.client.features.Stockholder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * OHLC rollups of the tracked items' history at 5 minute, 1 hour and 1 day
+ * resolution, so range queries read a few hundred candles instead of every
+ * minute snapshot.
+ *
+ * Each resolution has its own directory with one file per item, laid out
+ * like {@link BazaarHistoryStore}: a 16 byte header and fixed-width records
+ *
+ *   [start(8)] [last sample(8)] [samples(8)]
+ *   [buy open/high/low/close(32)] [sell open/high/low/close(32)]
+ *   [mean buy volume(8)] [mean sell volume(8)]
+ *
+ * The newest record is the open candle. New snapshots are folded into it in
+ * place, or start the next record once its period is over. An item that has
+ * raw history but no candles yet is rolled up from the history store by
+ * {@link #rollUpMissing} or its next {@link #add}, both on the poller; reads
+ * never write.
+ */
+public class BazaarCandleStore {
+
+    private static final int MAGIC = 0x425A4331; // "BZC1"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 104;
+
+    public enum Resolution {
+        FIVE_MINUTES("5m", 5 * 60 * 1000L),
+        HOUR("1h", 60 * 60 * 1000L),
+        DAY("1d", 24 * 60 * 60 * 1000L);
+
+        public final String name;
+        public final long millis;
+
+        Resolution(String name, long millis) {
+            this.name = name;
+            this.millis = millis;
+        }
+
+        /**
+         * Start of the candle containing the given time. Days follow the local
+         * calendar, shorter periods align to the epoch.
+         */
+        public long bucketStart(long timestamp) {
+            long offset = this == DAY ? TimeZone.getDefault().getOffset(timestamp) : 0;
+            return timestamp - Math.floorMod(timestamp + offset, millis);
+        }
+    }
+
+    /**
+     * One period of an item's prices
+     */
+    public static class Candle {
+        public final long start;
+        public final int samples;
+        public final double buyOpen, buyHigh, buyLow, buyClose;
+        public final double sellOpen, sellHigh, sellLow, sellClose;
+        public final double buyVolume, sellVolume;
+
+        Candle(ByteBuffer in, int offset) {
+            start = in.getLong(offset);
+            samples = (int) in.getLong(offset + 16);
+            buyOpen = in.getDouble(offset + 24);
+            buyHigh = in.getDouble(offset + 32);
+            buyLow = in.getDouble(offset + 40);
+            buyClose = in.getDouble(offset + 48);
+            sellOpen = in.getDouble(offset + 56);
+            sellHigh = in.getDouble(offset + 64);
+            sellLow = in.getDouble(offset + 72);
+            sellClose = in.getDouble(offset + 80);
+            buyVolume = in.getDouble(offset + 88);
+            sellVolume = in.getDouble(offset + 96);
+        }
+    }
+
+    /**
+     * The candle still receiving samples, with where it lives in its file
+     */
+    private static class OpenCandle {
+        long position;
+        long start, lastSample, samples;
+        double buyOpen, buyHigh, buyLow, buyClose;
+        double sellOpen, sellHigh, sellLow, sellClose;
+        double buyVolume, sellVolume;
+
+        void begin(long start, long timestamp, double buy, double sell, double buyVol, double sellVol) {
+            this.start = start;
+            lastSample = timestamp;
+            samples = 1;
+            buyOpen = buyHigh = buyLow = buyClose = buy;
+            sellOpen = sellHigh = sellLow = sellClose = sell;
+            buyVolume = buyVol;
+            sellVolume = sellVol;
+        }
+
+        void add(long timestamp, double buy, double sell, double buyVol, double sellVol) {
+            lastSample = timestamp;
+            samples++;
+            buyHigh = Math.max(buyHigh, buy);
+            buyLow = Math.min(buyLow, buy);
+            buyClose = buy;
+            sellHigh = Math.max(sellHigh, sell);
+            sellLow = Math.min(sellLow, sell);
+            sellClose = sell;
+            buyVolume += (buyVol - buyVolume) / samples;
+            sellVolume += (sellVol - sellVolume) / samples;
+        }
+
+        void write(ByteBuffer out) {
+            out.clear();
+            out.putLong(start).putLong(lastSample).putLong(samples);
+            out.putDouble(buyOpen).putDouble(buyHigh).putDouble(buyLow).putDouble(buyClose);
+            out.putDouble(sellOpen).putDouble(sellHigh).putDouble(sellLow).putDouble(sellClose);
+            out.putDouble(buyVolume).putDouble(sellVolume);
+            out.flip();
+        }
+
+        void read(ByteBuffer in) {
+            start = in.getLong();
+            lastSample = in.getLong();
+            samples = in.getLong();
+            buyOpen = in.getDouble();
+            buyHigh = in.getDouble();
+            buyLow = in.getDouble();
+            buyClose = in.getDouble();
+            sellOpen = in.getDouble();
+            sellHigh = in.getDouble();
+            sellLow = in.getDouble();
+            sellClose = in.getDouble();
+            buyVolume = in.getDouble();
+            sellVolume = in.getDouble();
+        }
+    }
+
+    private final File directory;
+    private final BazaarHistoryStore history;
+
+    // Keyed by resolution name + "/" + item ID
+    private final Map<String, FileChannel> writers = new HashMap<>();
+    private final Map<String, OpenCandle> openCandles = new HashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+
+    public BazaarCandleStore(File directory, BazaarHistoryStore history) {
+        this.directory = directory;
+        this.history = history;
+    }
+
+    /**
+     * Fold one snapshot into every resolution. Snapshots at or before the
+     * newest one already rolled up are ignored.
+     */
+    public synchronized void add(String itemId, long timestamp, double buy, double sell, double buyVol, double sellVol) throws IOException {
+        for (Resolution resolution : Resolution.values()) {
+            String key = resolution.name + "/" + itemId;
+            FileChannel channel = getWriter(itemId, resolution);
+            fold(key, channel, resolution, timestamp, buy, sell, buyVol, sellVol);
+        }
+    }
+
+    /**
+     * Roll up the raw history of an item into every resolution that has no
+     * file yet. Reads the whole history, so keep it off the client thread.
+     */
+    public synchronized void rollUpMissing(String itemId) throws IOException {
+        for (Resolution resolution : Resolution.values()) {
+            if (!fileFor(itemId, resolution).exists()) {
+                getWriter(itemId, resolution);
+            }
+        }
+    }
+
+    /**
+     * Candles overlapping [from, to], oldest first. Reads the file read-only
+     * without the store's lock, so it never waits on a rollup; an item that
+     * has no candles yet reads as empty.
+     */
+    public List<Candle> getCandles(String itemId, Resolution resolution, long from, long to) throws IOException {
+        List<Candle> candles = new ArrayList<>();
+        File file = fileFor(itemId, resolution);
+        if (!file.exists()) return candles;
+
+        MappedByteBuffer buffer;
+        int count;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            count = (int) ((channel.size() - HEADER_BYTES) / RECORD_BYTES);
+            if (count <= 0) return candles;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) count * RECORD_BYTES);
+        }
+
+        // First candle starting at or after the one containing from
+        long first = resolution.bucketStart(from);
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(mid * RECORD_BYTES) < first) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int i = low; i < count; i++) {
+            if (buffer.getLong(i * RECORD_BYTES) > to) break;
+            candles.add(new Candle(buffer, i * RECORD_BYTES));
+        }
+        return candles;
+    }
+
+    /**
+     * Percent change of the buy price over the given window, from the open of
+     * the first 5 minute candle in the window to the latest close
+     *
+     * @return The change, or NaN if there is no data that far back
+     */
+    public double getChangePercent(String itemId, long now, long window) throws IOException {
+        List<Candle> candles = getCandles(itemId, Resolution.FIVE_MINUTES, now - window, now);
+        if (candles.isEmpty()) return Double.NaN;
+
+        Candle first = candles.get(0);
+        Candle last = candles.get(candles.size() - 1);
+        if (first.start > now - window + Resolution.FIVE_MINUTES.millis || first.buyOpen <= 0) {
+            return Double.NaN;
+        }
+        return (last.buyClose - first.buyOpen) / first.buyOpen * 100;
+    }
+
+    public synchronized void close() {
+        for (FileChannel channel : writers.values()) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        writers.clear();
+        openCandles.clear();
+    }
+
+    private void fold(String key, FileChannel channel, Resolution resolution, long timestamp,
+                      double buy, double sell, double buyVol, double sellVol) throws IOException {
+        OpenCandle candle = openCandles.get(key);
+        if (candle != null && timestamp <= candle.lastSample) return;
+
+        long start = resolution.bucketStart(timestamp);
+        if (candle == null) {
+            candle = new OpenCandle();
+            candle.position = channel.size();
+            candle.begin(start, timestamp, buy, sell, buyVol, sellVol);
+            openCandles.put(key, candle);
+        } else if (start != candle.start) {
+            candle.position += RECORD_BYTES;
+            candle.begin(start, timestamp, buy, sell, buyVol, sellVol);
+        } else {
+            candle.add(timestamp, buy, sell, buyVol, sellVol);
+        }
+
+        candle.write(record);
+        long position = candle.position;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+    }
+
+    private FileChannel getWriter(String itemId, Resolution resolution) throws IOException {
+        String key = resolution.name + "/" + itemId;
+        FileChannel channel = writers.get(key);
+        if (channel != null && channel.isOpen()) return channel;
+
+        File dir = new File(directory, resolution.name);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        channel = FileChannel.open(fileFor(itemId, resolution).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writers.put(key, channel);
+
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_BYTES);
+            header.position(HEADER_BYTES);
+            header.flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            rollUp(itemId, key, channel, resolution);
+            return channel;
+        }
+
+        if ((size - HEADER_BYTES) % RECORD_BYTES != 0) {
+            // Drop a record torn by a crash mid-write
+            size -= (size - HEADER_BYTES) % RECORD_BYTES;
+            channel.truncate(size);
+        }
+        if (size > HEADER_BYTES) {
+            OpenCandle candle = new OpenCandle();
+            candle.position = size - RECORD_BYTES;
+            ByteBuffer last = ByteBuffer.allocate(RECORD_BYTES);
+            channel.read(last, candle.position);
+            last.flip();
+            candle.read(last);
+            openCandles.put(key, candle);
+        }
+        return channel;
+    }
+
+    private File fileFor(String itemId, Resolution resolution) {
+        return new File(new File(directory, resolution.name), BazaarHistoryStore.toFileName(itemId) + ".bin");
+    }
+
+    /**
+     * Build a new candle file from the raw history recorded so far
+     */
+    private void rollUp(String itemId, String key, FileChannel channel, Resolution resolution) throws IOException {
+        openCandles.remove(key);
+        BazaarHistoryStore.Series series = history.open(itemId);
+        for (int i = 0; i < series.size(); i++) {
+            fold(key, channel, resolution, series.getTimestamp(i), series.getBuyPrice(i), series.getSellPrice(i),
+                series.getBuyVolume(i), series.getSellVolume(i));
+        }
+    }
+}
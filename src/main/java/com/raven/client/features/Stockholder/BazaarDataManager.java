@@ -1,38 +1,81 @@
 package com.raven.client.features.Stockholder;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.raven.client.api.BazaarFetcher;
 import com.raven.client.features.Feature;
 import com.raven.client.features.FeatureCategory;
+import com.raven.client.gui.notifications.Message;
+import com.raven.client.gui.notifications.MessageManager;
+import com.raven.client.gui.notifications.NotificationManager;
+import com.raven.client.utils.ConfigManager;
 import net.minecraft.client.Minecraft;
-import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
-import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraft.util.EnumChatFormatting;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class BazaarDataManager extends Feature {
 
     private static Minecraft mc;
     private static final String API_URL = "https://api.hypixel.net/v2/skyblock/bazaar";
-    private boolean fetchedThisMinute = false;
+
+    // Hypixel refreshes the snapshot we record once a minute; poll shortly after it lands
+    private static final long POLL_PERIOD = 60_000L;
+    private static final long POLL_SETTLE = 5_000L;
+    // Unchanged snapshot: the refresh is late, look again soon
+    private static final long UNCHANGED_RETRY = 3_000L;
+    private static final long MIN_BACKOFF = 2_000L;
+    private static final long MAX_BACKOFF = 60_000L;
+
+    private static final int FETCHED = 0;
+    private static final int UNCHANGED = 1;
+    private static final int FAILED = 2;
+
+    // Static so tracking an item can hand the poller its archive backfill
+    private static volatile ScheduledExecutorService scheduler;
+    private int failures = 0;
+    private int unchangedRetries = 0;
+
+    // lastUpdated of the newest response, so an unchanged one can be skipped
+    private static volatile long lastUpdated = 0;
     
     private static Minecraft getMc() {
         if (mc == null) mc = Minecraft.getMinecraft();
         return mc;
     }
     
-    private static final File snapshotFile = new File(getMc().mcDataDir, "bazaar_snapshots.txt");
-    private static final java.text.SimpleDateFormat timestampFormat = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm");
+    private static final BazaarHistoryStore historyStore = new BazaarHistoryStore(
+            new File(getMc().mcDataDir, "stockholder_history"),
+            new File(getMc().mcDataDir, "bazaar_snapshots.txt"));
+    private static final BazaarCandleStore candleStore = new BazaarCandleStore(
+            new File(getMc().mcDataDir, "stockholder_candles"), historyStore);
+    private static final BazaarAlertEngine alertEngine = new BazaarAlertEngine(
+            new File(getMc().mcDataDir, "stockholder_rules.txt"));
+    private static final BazaarMarketArchive marketArchive = new BazaarMarketArchive(
+            new File(getMc().mcDataDir, "stockholder_market"));
+
+    // Opt-in: record every product every minute, not just the tracked ones
+    private static volatile boolean recordFullMarket = false;
+    // Opt-in: keep polling on the title screen and in menus, not only in a world
+    private static volatile boolean recordInMenus = false;
 
-    private static final Map<String, BazaarItem> watchedItems = new HashMap<>();
-    private static final Set<String> trackedItemIds = new HashSet<>();
+    // Latest prices of the tracked items, replaced as a whole by each poll
+    private static volatile Map<String, BazaarItem> watchedItems = Collections.emptyMap();
+    // Changed by commands on the client thread while the poller copies it
+    private static final Set<String> trackedItemIds = ConcurrentHashMap.newKeySet();
+    // Newly tracked items whose history is still to be filled from the market archive
+    private static final Set<String> pendingBackfill = new HashSet<>();
     private static final File configFile = new File(getMc().mcDataDir, "stockholder_items.txt");
 
     public BazaarDataManager() {
@@ -42,65 +85,178 @@ public class BazaarDataManager extends Feature {
 
     @Override
     public void onEnable() {
-        net.minecraftforge.common.MinecraftForge.EVENT_BUS.register(this);
         loadTrackedItems();
+        alertEngine.load();
+        recordFullMarket = ConfigManager.get("stockholder.fullMarket", false);
+        recordInMenus = ConfigManager.get("stockholder.recordInMenus", false);
+
+        failures = 0;
+        unchangedRetries = 0;
+        ScheduledThreadPoolExecutor poller = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "Stockholder-Poller");
+            thread.setDaemon(true);
+            return thread;
+        }) {
+            @Override
+            protected void terminated() {
+                // Runs once a fetch in progress has finished its writes
+                closeStores();
+            }
+        };
+        // Shutting down drops the next poll instead of waiting for it
+        poller.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduler = poller;
+        poller.execute(BazaarDataManager::rollUpCandles);
+        poller.execute(BazaarDataManager::backfillFromArchive);
+        poller.schedule(() -> poll(poller), delayToNextMinute(System.currentTimeMillis()), TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void onDisable() {
-        net.minecraftforge.common.MinecraftForge.EVENT_BUS.unregister(this);
+        ScheduledExecutorService poller = scheduler;
+        scheduler = null;
+        if (poller != null) {
+            // No waiting here: a fetch in progress finishes its writes on the
+            // poller thread, and the stores close when that thread is done
+            poller.shutdown();
+        } else {
+            closeStores();
+        }
+    }
+
+    private static void closeStores() {
+        historyStore.close();
+        candleStore.close();
+        marketArchive.close();
     }
 
-    @SubscribeEvent
-    public void onClientTick(TickEvent.ClientTickEvent event) {
+    /**
+     * One poll, then schedule the next from the outcome. Each delay is
+     * computed from an absolute target time, so late runs do not drift.
+     *
+     * @param poller Executor this poll runs on; the next poll is only
+     *               scheduled while it is still the active one
+     */
+    private void poll(ScheduledExecutorService poller) {
+        long delay;
         Minecraft mc = getMc();
-        if (mc.thePlayer == null || mc.theWorld == null) return;
+        if (!recordInMenus && (mc.thePlayer == null || mc.theWorld == null)) {
+            delay = delayToNextMinute(System.currentTimeMillis());
+        } else {
+            int outcome = updateData();
+            long now = System.currentTimeMillis();
+            if (outcome == FETCHED) {
+                failures = 0;
+                unchangedRetries = 0;
+                delay = delayAfterUpdate(now, lastUpdated);
+            } else if (outcome == UNCHANGED && unchangedRetries < 5) {
+                unchangedRetries++;
+                delay = UNCHANGED_RETRY;
+            } else if (outcome == UNCHANGED) {
+                unchangedRetries = 0;
+                delay = delayToNextMinute(now);
+            } else {
+                failures++;
+                delay = backoff(failures);
+                System.err.println("[Stockholder] Retrying bazaar fetch in " + delay / 1000 + "s.");
+            }
+        }
 
-        long currentMillis = System.currentTimeMillis();
-        long seconds = (currentMillis / 1000) % 60;
+        if (poller == scheduler && !poller.isShutdown()) {
+            poller.schedule(() -> poll(poller), delay, TimeUnit.MILLISECONDS);
+        }
+    }
 
-        if (seconds == 5 && !fetchedThisMinute) {
-            fetchedThisMinute = true;
-            new Thread(this::updateData).start();
-        } else if (seconds != 5) {
-            fetchedThisMinute = false;
+    /**
+     * Time until the snapshot after the one stamped lastUpdated should be
+     * available. Falls back to the wall clock if the stamp looks wrong.
+     */
+    static long delayAfterUpdate(long now, long lastUpdated) {
+        long age = now - lastUpdated;
+        if (lastUpdated <= 0 || age < -POLL_PERIOD || age > 2 * POLL_PERIOD) {
+            return delayToNextMinute(now);
         }
+        return Math.max(POLL_SETTLE, lastUpdated + POLL_PERIOD + POLL_SETTLE - now);
     }
 
-    private void updateData() {
-        try {
-            HttpURLConnection conn = (HttpURLConnection) new URL(API_URL).openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(3000);
-            conn.setReadTimeout(3000);
+    // :05 past the next minute, as the tick-driven poll used to do
+    static long delayToNextMinute(long now) {
+        long next = now - now % POLL_PERIOD + POLL_SETTLE;
+        if (next <= now) next += POLL_PERIOD;
+        return next - now;
+    }
 
-            JsonObject root = new JsonParser().parse(new InputStreamReader(conn.getInputStream())).getAsJsonObject();
-            if (!root.get("success").getAsBoolean()) return;
+    // Exponential with equal jitter, so clients that failed together spread out
+    static long backoff(int failures) {
+        long ceiling = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(failures - 1, 10));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
 
-            JsonObject products = root.getAsJsonObject("products");
-            watchedItems.clear();
+    private int updateData() {
+        try {
+            boolean fullMarket = recordFullMarket;
+            Set<String> tracked = new HashSet<>(trackedItemIds);
+            long known = lastUpdated;
+            BazaarResponseParser.Result result = BazaarFetcher.stream(API_URL, in -> {
+                try (Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                    BazaarResponseParser.Result parsed = BazaarResponseParser.parse(reader, fullMarket ? null : tracked, known);
+                    if (parsed == null) throw new IOException("Bazaar API did not report success");
+                    return parsed;
+                }
+            });
+            // Null here is a 304
+            if (result == null || result.items == null) {
+                System.out.println("[Stockholder] Bazaar data unchanged since last fetch.");
+                return UNCHANGED;
+            }
+            lastUpdated = result.lastUpdated;
+            Map<String, BazaarItem> items = result.items;
 
-            for (String id : trackedItemIds) {
-                if (!products.has(id)) continue;
+            Map<String, BazaarItem> watched = new HashMap<>();
+            long timestamp = System.currentTimeMillis();
+            for (String id : tracked) {
+                BazaarItem item = items.get(id);
+                if (item == null) continue;
+                watched.put(id, item);
+                saveSnapshot(id, timestamp, item);
+            }
 
-                JsonObject obj = products.getAsJsonObject(id);
-                JsonObject quickStatus = obj.getAsJsonObject("quick_status");
+            watchedItems = Collections.unmodifiableMap(watched);
 
-                double sell = quickStatus.get("sellPrice").getAsDouble();
-                double buy = quickStatus.get("buyPrice").getAsDouble();
-                double sellVolume = quickStatus.get("sellVolume").getAsDouble();
-                double buyVolume = quickStatus.get("buyVolume").getAsDouble();
+            List<BazaarAlertEngine.Hit> hits = alertEngine.evaluate(timestamp, items);
+            if (!hits.isEmpty()) {
+                getMc().addScheduledTask(() -> announceAlerts(hits, timestamp));
+            }
 
-                BazaarItem item = new BazaarItem(id, buy, sell, buyVolume, sellVolume);
-                watchedItems.put(id, item);
-                saveSnapshot(id, item);
+            if (fullMarket) {
+                try {
+                    marketArchive.record(timestamp, items);
+                } catch (IOException e) {
+                    System.err.println("[Stockholder] Failed to record market snapshot.");
+                    e.printStackTrace();
+                }
             }
 
-            System.out.println("[Stockholder] Bazaar data updated at :05. " + watchedItems.size() + " items loaded.");
+            System.out.println("[Stockholder] Bazaar data updated. " + watched.size() + " items loaded.");
+            return FETCHED;
 
         } catch (Exception e) {
             System.err.println("[Stockholder] Failed to fetch bazaar data.");
             e.printStackTrace();
+            return FAILED;
+        }
+    }
+
+    private static void announceAlerts(List<BazaarAlertEngine.Hit> hits, long timestamp) {
+        int n = 0;
+        for (BazaarAlertEngine.Hit hit : hits) {
+            BazaarItem item = hit.item;
+            NotificationManager.show(EnumChatFormatting.GREEN + "[Bazaar] " + EnumChatFormatting.YELLOW + item.id
+                    + EnumChatFormatting.GRAY + " - " + hit.rule.text, 6000);
+            MessageManager.addMessage(new Message("bazaar-alert-" + timestamp + "-" + n++, "Alert: " + item.id,
+                    String.format("%s matched '%s'. Buy %,.1f, sell %,.1f, margin %.2f%%.", item.id, hit.rule.text,
+                            item.buyPrice, item.sellPrice, item.getMarginPercent()),
+                    Message.MessageType.BAZAAR));
         }
     }
 
@@ -113,11 +269,87 @@ public class BazaarDataManager extends Feature {
     }
 
     public static void watchItem(String id) {
-        trackedItemIds.add(id.toUpperCase());
+        String itemId = id.toUpperCase();
+        if (!trackedItemIds.add(itemId)) return;
+
+        synchronized (pendingBackfill) {
+            pendingBackfill.add(itemId);
+        }
+        // Runs on the poller so it never interleaves with a live snapshot
+        ScheduledExecutorService current = scheduler;
+        if (current != null && !current.isShutdown()) {
+            current.execute(BazaarDataManager::backfillFromArchive);
+        }
+    }
+
+    /**
+     * Build candles for every item that has history but none yet, so the
+     * chart and 24h change never have to roll them up on the client thread
+     */
+    private static void rollUpCandles() {
+        for (String id : historyStore.getItemIds()) {
+            try {
+                candleStore.rollUpMissing(id);
+            } catch (IOException e) {
+                System.err.println("[Stockholder] Failed to roll up candles for: " + id);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Give newly tracked items the snapshots the full market archive has of
+     * them, so their history, candles and chart do not start out empty. Only
+     * snapshots newer than an item's own history are added, which keeps its
+     * files in time order.
+     */
+    private static void backfillFromArchive() {
+        List<String> ids;
+        synchronized (pendingBackfill) {
+            if (pendingBackfill.isEmpty()) return;
+            ids = new ArrayList<>(pendingBackfill);
+            pendingBackfill.clear();
+        }
+
+        try {
+            Map<String, Long> newestRecorded = new HashMap<>();
+            long from = Long.MAX_VALUE;
+            for (String id : ids) {
+                BazaarHistoryStore.Series series = historyStore.open(id);
+                long newest = series.size() == 0 ? 0 : series.getTimestamp(series.size() - 1);
+                newestRecorded.put(id, newest);
+                from = Math.min(from, newest + 1);
+            }
+
+            Map<String, Integer> added = new HashMap<>();
+            marketArchive.scan(from, System.currentTimeMillis(), newestRecorded.keySet(),
+                (timestamp, productId, buy, sell, buyVol, sellVol) -> {
+                    if (timestamp <= newestRecorded.get(productId)) return;
+                    try {
+                        historyStore.append(productId, timestamp, buy, sell, buyVol, sellVol);
+                        candleStore.add(productId, timestamp, buy, sell, buyVol, sellVol);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    added.merge(productId, 1, Integer::sum);
+                });
+
+            for (Map.Entry<String, Integer> entry : added.entrySet()) {
+                System.out.println("[Stockholder] Backfilled " + entry.getValue() + " snapshots for "
+                        + entry.getKey() + " from the market archive.");
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[Stockholder] Failed to backfill from the market archive.");
+            e.printStackTrace();
+        }
     }
 
     public static void unwatchItem(String id) {
-        trackedItemIds.remove(id.toUpperCase());
+        String itemId = id.toUpperCase();
+        trackedItemIds.remove(itemId);
+        synchronized (pendingBackfill) {
+            pendingBackfill.remove(itemId);
+        }
     }
 
     public static void loadTrackedItems() {
@@ -152,18 +384,64 @@ public class BazaarDataManager extends Feature {
     public static Set<String> getTrackedItemIds() {
         return trackedItemIds;
     }
+
+    public static BazaarHistoryStore getHistoryStore() {
+        return historyStore;
+    }
+
+    public static BazaarCandleStore getCandleStore() {
+        return candleStore;
+    }
+
+    /**
+     * Percent change of an item's buy price over the last 24 hours, or NaN
+     * if there is not a day of history yet
+     */
+    public static double getDayChangePercent(String itemId) {
+        try {
+            return candleStore.getChangePercent(itemId, System.currentTimeMillis(), 24 * 60 * 60 * 1000L);
+        } catch (IOException e) {
+            System.err.println("[Stockholder] Failed to read candles for: " + itemId);
+            e.printStackTrace();
+            return Double.NaN;
+        }
+    }
+
+    public static BazaarAlertEngine getAlertEngine() {
+        return alertEngine;
+    }
+
+    public static BazaarMarketArchive getMarketArchive() {
+        return marketArchive;
+    }
+
+    public static boolean isRecordingFullMarket() {
+        return recordFullMarket;
+    }
+
+    public static boolean isRecordingInMenus() {
+        return recordInMenus;
+    }
+
+    public static void setRecordInMenus(boolean enabled) {
+        recordInMenus = enabled;
+        ConfigManager.set("stockholder.recordInMenus", enabled);
+        ConfigManager.save();
+    }
+
+    public static void setRecordFullMarket(boolean enabled) {
+        recordFullMarket = enabled;
+        ConfigManager.set("stockholder.fullMarket", enabled);
+        ConfigManager.save();
+        if (!enabled) {
+            marketArchive.close();
+        }
+    }
     
-    private void saveSnapshot(String itemId, BazaarItem item) {
-        String timestamp = timestampFormat.format(new java.util.Date());
-        String line = itemId + " | " + timestamp +
-                      " | Buy: " + item.buyPrice +
-                      " | Sell: " + item.sellPrice +
-                      " | BuyVol: " + item.buyVolume +
-                      " | SellVol: " + item.sellVolume;
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(snapshotFile, true))) {
-            writer.write(line);
-            writer.newLine();
+    private void saveSnapshot(String itemId, long timestamp, BazaarItem item) {
+        try {
+            historyStore.append(itemId, timestamp, item.buyPrice, item.sellPrice, item.buyVolume, item.sellVolume);
+            candleStore.add(itemId, timestamp, item.buyPrice, item.sellPrice, item.buyVolume, item.sellVolume);
         } catch (IOException e) {
             System.err.println("[Stockholder] Failed to write snapshot for: " + itemId);
             e.printStackTrace();
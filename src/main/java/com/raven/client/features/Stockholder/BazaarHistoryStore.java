@@ -0,0 +1,277 @@
+package com.raven.client.features.Stockholder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only binary store for bazaar snapshots, one file per item.
+ *
+ * A file is a 16 byte header followed by fixed-width records of
+ * [timestamp(8)] [buy(8)] [sell(8)] [buyVol(8)] [sellVol(8)], so readers
+ * memory-map it and address any snapshot by index instead of parsing the
+ * whole history. The old bazaar_snapshots.txt is imported once on first use
+ * and renamed to bazaar_snapshots.txt.imported.
+ */
+public class BazaarHistoryStore {
+
+    private static final int MAGIC = 0x425A4831; // "BZH1"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 40;
+
+    private static final String EXTENSION = ".bin";
+
+    private final File directory;
+    private final File legacyFile;
+    private boolean legacyChecked = false;
+
+    // Open append channels, kept across fetches so a minute's snapshots don't reopen every file
+    private final Map<String, FileChannel> writers = new HashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+
+    public BazaarHistoryStore(File directory, File legacyFile) {
+        this.directory = directory;
+        this.legacyFile = legacyFile;
+    }
+
+    /**
+     * Append one snapshot to the item's history
+     */
+    public synchronized void append(String itemId, long timestamp, double buy, double sell, double buyVol, double sellVol) throws IOException {
+        importLegacy();
+        FileChannel channel = getWriter(itemId);
+
+        record.clear();
+        record.putLong(timestamp).putDouble(buy).putDouble(sell).putDouble(buyVol).putDouble(sellVol);
+        record.flip();
+
+        long position = channel.size();
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+    }
+
+    /**
+     * Items that have any history, sorted by ID
+     */
+    public synchronized List<String> getItemIds() {
+        importLegacy();
+        List<String> ids = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) return ids;
+
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(EXTENSION)) {
+                ids.add(fromFileName(name.substring(0, name.length() - EXTENSION.length())));
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Map an item's history for reading. The series covers the records present
+     * when it was opened; later appends need a fresh call.
+     */
+    public synchronized Series open(String itemId) throws IOException {
+        importLegacy();
+        File file = fileFor(itemId);
+        if (!file.exists()) return Series.EMPTY;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) return Series.EMPTY;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a bazaar history file: " + file);
+            }
+
+            int count = (int) Math.min((size - HEADER_BYTES) / RECORD_BYTES, Integer.MAX_VALUE / RECORD_BYTES);
+            if (count == 0) return Series.EMPTY;
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) count * RECORD_BYTES);
+            return new Series(buffer, count);
+        }
+    }
+
+    /**
+     * Close the append channels. The store reopens them on the next append.
+     */
+    public synchronized void close() {
+        for (FileChannel channel : writers.values()) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        writers.clear();
+    }
+
+    private FileChannel getWriter(String itemId) throws IOException {
+        FileChannel channel = writers.get(itemId);
+        if (channel != null && channel.isOpen()) return channel;
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        channel = FileChannel.open(fileFor(itemId).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_BYTES);
+            header.position(HEADER_BYTES);
+            header.flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+        } else if ((size - HEADER_BYTES) % RECORD_BYTES != 0) {
+            // Drop a record torn by a crash mid-write
+            channel.truncate(size - (size - HEADER_BYTES) % RECORD_BYTES);
+        }
+
+        writers.put(itemId, channel);
+        return channel;
+    }
+
+    /**
+     * Move the old text history into the store, once
+     */
+    private void importLegacy() {
+        if (legacyChecked) return;
+        legacyChecked = true;
+        if (legacyFile == null || !legacyFile.exists()) return;
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        int imported = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(legacyFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|");
+                if (parts.length != 6) continue;
+
+                try {
+                    String id = parts[0].trim();
+                    long timestamp = format.parse(parts[1].trim()).getTime();
+                    double buy = Double.parseDouble(parts[2].replace("Buy:", "").trim());
+                    double sell = Double.parseDouble(parts[3].replace("Sell:", "").trim());
+                    double buyVol = Double.parseDouble(parts[4].replace("BuyVol:", "").trim());
+                    double sellVol = Double.parseDouble(parts[5].replace("SellVol:", "").trim());
+
+                    append(id, timestamp, buy, sell, buyVol, sellVol);
+                    imported++;
+                } catch (ParseException | NumberFormatException e) {
+                    // Skip malformed lines, the old writer had no validation
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Stockholder] Failed to import " + legacyFile.getName());
+            e.printStackTrace();
+            return;
+        }
+
+        File done = new File(legacyFile.getPath() + ".imported");
+        if (!legacyFile.renameTo(done)) {
+            System.err.println("[Stockholder] Could not rename " + legacyFile.getName() + " after import.");
+        }
+        System.out.println("[Stockholder] Imported " + imported + " snapshots from " + legacyFile.getName() + ".");
+    }
+
+    private File fileFor(String itemId) {
+        return new File(directory, toFileName(itemId) + EXTENSION);
+    }
+
+    // Product IDs are [A-Z0-9_:], and ':' is not allowed in Windows file names
+    static String toFileName(String itemId) {
+        return itemId.replace(':', '-');
+    }
+
+    private static String fromFileName(String name) {
+        return name.replace('-', ':');
+    }
+
+    /**
+     * Read-only view of one item's history, oldest first. Values are read
+     * straight from the mapped file, so nothing is decoded until asked for.
+     */
+    public static class Series {
+        static final Series EMPTY = new Series(ByteBuffer.allocate(0), 0);
+
+        private final ByteBuffer buffer;
+        private final int size;
+
+        Series(ByteBuffer buffer, int size) {
+            this.buffer = buffer;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getTimestamp(int index) {
+            return buffer.getLong(index * RECORD_BYTES);
+        }
+
+        public double getBuyPrice(int index) {
+            return buffer.getDouble(index * RECORD_BYTES + 8);
+        }
+
+        public double getSellPrice(int index) {
+            return buffer.getDouble(index * RECORD_BYTES + 16);
+        }
+
+        public double getBuyVolume(int index) {
+            return buffer.getDouble(index * RECORD_BYTES + 24);
+        }
+
+        public double getSellVolume(int index) {
+            return buffer.getDouble(index * RECORD_BYTES + 32);
+        }
+
+        /**
+         * Decode one record, formatting its timestamp with the given format
+         */
+        public BazaarSnapshot get(int index, SimpleDateFormat format) {
+            return new BazaarSnapshot(format.format(new Date(getTimestamp(index))),
+                getBuyPrice(index), getSellPrice(index), getBuyVolume(index), getSellVolume(index));
+        }
+
+        /**
+         * Index of the first record at or after the given time, by binary search
+         */
+        public int indexOf(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (getTimestamp(mid) < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.raven.client.features.Stockholder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Minute-by-minute record of every bazaar product, for the opt-in full
+ * market mode.
+ *
+ * Snapshots are grouped into blocks of up to one hour. Inside a block each
+ * snapshot only stores what changed since the previous one:
+ *
+ *   [length(varint)] [ms since previous snapshot(varint)]
+ *   [new product count(varint)] ([id length(varint)] [id bytes])...
+ *   [changed count(varint)] ([index gap(varint)] [field mask(1)] [delta(zigzag varint)]...)...
+ *
+ * Prices are kept in hundredths of a coin and volumes in whole items, so the
+ * deltas are integers and an unchanged field costs nothing. A block starts
+ * from an empty state, which makes it readable on its own.
+ *
+ * The open block is appended to current.bin as it grows. When the hour
+ * turns it is deflated and appended to the day file as
+ * [magic(4)] [hour start(8)] [raw length(4)] [compressed length(4)] [bytes].
+ */
+public class BazaarMarketArchive {
+
+    private static final int BLOCK_MAGIC = 0x425A4D42; // "BZMB"
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final double PRICE_SCALE = 100.0;
+    private static final int FIELDS = 4;
+
+    private final File directory;
+    private final File currentFile;
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private boolean recovered = false;
+
+    // Encoder state for the open block
+    private long blockHour = -1;
+    private long lastTimestamp;
+    private final Map<String, Integer> productIndex = new HashMap<>();
+    private final List<String> products = new ArrayList<>();
+    private long[] values = new long[0];
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+
+    public BazaarMarketArchive(File directory) {
+        this.directory = directory;
+        this.currentFile = new File(directory, "current.bin");
+        dayFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Receives decoded snapshots from {@link #scan}
+     */
+    public interface Visitor {
+        void visit(long timestamp, String productId, double buyPrice, double sellPrice, double buyVolume, double sellVolume);
+    }
+
+    /**
+     * Append one snapshot of the whole market
+     */
+    public synchronized void record(long timestamp, Map<String, BazaarItem> items) throws IOException {
+        recover();
+
+        long hour = timestamp - timestamp % HOUR_MILLIS;
+        if (hour != blockHour) {
+            flushBlock();
+            startBlock(hour);
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+        writeVarLong(body, Math.max(0, timestamp - lastTimestamp));
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+
+        // Products first seen in this block get the next free index
+        List<String> added = new ArrayList<>();
+        for (String id : items.keySet()) {
+            if (!productIndex.containsKey(id)) {
+                productIndex.put(id, products.size());
+                products.add(id);
+                added.add(id);
+            }
+        }
+        if (values.length < products.size() * FIELDS) {
+            values = Arrays.copyOf(values, Math.max(products.size(), values.length / FIELDS * 2) * FIELDS);
+        }
+        writeVarLong(body, added.size());
+        for (String id : added) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(body, bytes.length);
+            body.write(bytes, 0, bytes.length);
+        }
+
+        // Changed products in index order, so gaps stay small
+        int[] indices = new int[items.size()];
+        int n = 0;
+        for (String id : items.keySet()) {
+            indices[n++] = productIndex.get(id);
+        }
+        Arrays.sort(indices);
+
+        ByteArrayOutputStream changes = new ByteArrayOutputStream(4096);
+        long[] next = new long[FIELDS];
+        int changed = 0;
+        int previousIndex = 0;
+        for (int index : indices) {
+            BazaarItem item = items.get(products.get(index));
+            next[0] = Math.round(item.buyPrice * PRICE_SCALE);
+            next[1] = Math.round(item.sellPrice * PRICE_SCALE);
+            next[2] = Math.round(item.buyVolume);
+            next[3] = Math.round(item.sellVolume);
+
+            int base = index * FIELDS;
+            int mask = 0;
+            for (int f = 0; f < FIELDS; f++) {
+                if (next[f] != values[base + f]) mask |= 1 << f;
+            }
+            if (mask == 0) continue;
+
+            writeVarLong(changes, index - previousIndex);
+            changes.write(mask);
+            for (int f = 0; f < FIELDS; f++) {
+                if ((mask & (1 << f)) != 0) {
+                    writeVarLong(changes, zigzag(next[f] - values[base + f]));
+                    values[base + f] = next[f];
+                }
+            }
+            previousIndex = index;
+            changed++;
+        }
+        writeVarLong(body, changed);
+        changes.writeTo(body);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(body.size() + 5);
+        writeVarLong(record, body.size());
+        body.writeTo(record);
+
+        try (OutputStream out = new FileOutputStream(currentFile, true)) {
+            record.writeTo(out);
+        }
+        record.writeTo(block);
+    }
+
+    /**
+     * Decode the snapshots taken between from and to, inclusive
+     *
+     * @param productIds Products to report, or null for all of them
+     */
+    public synchronized void scan(long from, long to, Set<String> productIds, Visitor visitor) throws IOException {
+        recover();
+
+        // Day files are named by UTC date, one block per hour inside
+        String firstDay = dayFormat.format(new Date(from));
+        String lastDay = dayFormat.format(new Date(to));
+        List<String> days = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (!name.startsWith("market-") || !name.endsWith(".bin")) continue;
+                String day = name.substring(7, name.length() - 4);
+                if (day.compareTo(firstDay) >= 0 && day.compareTo(lastDay) <= 0) {
+                    days.add(name);
+                }
+            }
+        }
+        Collections.sort(days);
+
+        long[] lastVisited = {Long.MIN_VALUE};
+        for (String name : days) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory, name))))) {
+                while (true) {
+                    int magic;
+                    try {
+                        magic = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (magic != BLOCK_MAGIC) {
+                        System.err.println("[Stockholder] Corrupt market block in " + name + ", skipping the rest.");
+                        break;
+                    }
+
+                    long hour = in.readLong();
+                    int rawLength = in.readInt();
+                    byte[] compressed = new byte[in.readInt()];
+                    in.readFully(compressed);
+                    if (hour + HOUR_MILLIS <= from || hour > to) continue;
+
+                    decodeBlock(hour, inflate(compressed, rawLength), from, to, productIds, visitor, lastVisited);
+                }
+            } catch (EOFException e) {
+                // Block torn by a crash while it was being written
+            }
+        }
+
+        if (blockHour >= 0 && blockHour <= to && blockHour + HOUR_MILLIS > from) {
+            decodeBlock(blockHour, block.toByteArray(), from, to, productIds, visitor, lastVisited);
+        }
+    }
+
+    /**
+     * Compress the open block, so nothing is left in current.bin
+     */
+    public synchronized void close() {
+        try {
+            recover();
+            flushBlock();
+        } catch (IOException e) {
+            System.err.println("[Stockholder] Failed to close market archive.");
+            e.printStackTrace();
+        }
+    }
+
+    private void startBlock(long hour) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        blockHour = hour;
+        lastTimestamp = hour;
+        productIndex.clear();
+        products.clear();
+        Arrays.fill(values, 0);
+        block.reset();
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(currentFile))) {
+            out.writeLong(hour);
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockHour < 0) return;
+
+        if (block.size() > 0) {
+            writeBlock(blockHour, block.toByteArray());
+        }
+        blockHour = -1;
+        block.reset();
+        Files.deleteIfExists(currentFile.toPath());
+    }
+
+    /**
+     * Turn a block left in current.bin by the last session into a day file entry
+     */
+    private void recover() throws IOException {
+        if (recovered) return;
+        recovered = true;
+        if (!currentFile.exists()) return;
+
+        byte[] bytes = Files.readAllBytes(currentFile.toPath());
+        if (bytes.length > 8) {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            long hour = in.getLong();
+
+            // Keep whole records only
+            int end = in.position();
+            try {
+                while (in.hasRemaining()) {
+                    long length = readVarLong(in);
+                    if (length > in.remaining()) break;
+                    in.position(in.position() + (int) length);
+                    end = in.position();
+                }
+            } catch (RuntimeException e) {
+                // Torn length prefix
+            }
+
+            if (end > 8) {
+                writeBlock(hour, Arrays.copyOfRange(bytes, 8, end));
+            }
+        }
+        Files.deleteIfExists(currentFile.toPath());
+    }
+
+    private void writeBlock(long hour, byte[] raw) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.write(chunk, 0, n);
+        }
+        deflater.end();
+
+        File dayFile = new File(directory, "market-" + dayFormat.format(new Date(hour)) + ".bin");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(dayFile, true))) {
+            out.writeInt(BLOCK_MAGIC);
+            out.writeLong(hour);
+            out.writeInt(raw.length);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                offset += n;
+            }
+            return offset == rawLength ? raw : Arrays.copyOf(raw, offset);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt market block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Replay one block from its empty starting state
+     *
+     * @param lastVisited Newest timestamp reported so far, so a block written
+     *                    twice (crash between write and cleanup) is reported once
+     */
+    private static void decodeBlock(long hour, byte[] raw, long from, long to, Set<String> productIds,
+                                    Visitor visitor, long[] lastVisited) {
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        List<String> ids = new ArrayList<>();
+        long[] state = new long[64 * FIELDS];
+        long timestamp = hour;
+
+        while (in.hasRemaining()) {
+            long length = readVarLong(in);
+            int end = in.position() + (int) length;
+            if (length > in.remaining()) break;
+
+            timestamp += readVarLong(in);
+
+            int added = (int) readVarLong(in);
+            for (int i = 0; i < added; i++) {
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                in.get(bytes);
+                ids.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            if (state.length < ids.size() * FIELDS) {
+                state = Arrays.copyOf(state, Math.max(ids.size(), state.length / FIELDS * 2) * FIELDS);
+            }
+
+            int changed = (int) readVarLong(in);
+            int index = 0;
+            for (int i = 0; i < changed; i++) {
+                index += (int) readVarLong(in);
+                int mask = in.get();
+                for (int f = 0; f < FIELDS; f++) {
+                    if ((mask & (1 << f)) != 0) {
+                        state[index * FIELDS + f] += unzigzag(readVarLong(in));
+                    }
+                }
+            }
+            in.position(end);
+
+            if (timestamp < from || timestamp > to || timestamp <= lastVisited[0]) continue;
+            lastVisited[0] = timestamp;
+
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                if (productIds != null && !productIds.contains(id)) continue;
+                int base = i * FIELDS;
+                visitor.visit(timestamp, id, state[base] / PRICE_SCALE, state[base + 1] / PRICE_SCALE,
+                    state[base + 2], state[base + 3]);
+            }
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,137 @@
+package com.raven.client.features.Stockholder;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming reader for the Hypixel bazaar response.
+ *
+ * The response covers every product with its full order book, several MB
+ * per fetch. This walks it token by token and only builds a BazaarItem from
+ * quick_status for the products asked for; order books and other products
+ * are skipped without being materialised. If lastUpdated shows the data has
+ * not moved since the previous fetch, reading stops before the products.
+ */
+public final class BazaarResponseParser {
+
+    /**
+     * Parsed response
+     */
+    public static final class Result {
+        public final long lastUpdated;
+        // Null when the data is the same as the known lastUpdated
+        public final Map<String, BazaarItem> items;
+
+        Result(long lastUpdated, Map<String, BazaarItem> items) {
+            this.lastUpdated = lastUpdated;
+            this.items = items;
+        }
+    }
+
+    private BazaarResponseParser() {
+    }
+
+    /**
+     * Read a bazaar response
+     *
+     * @param wanted Product IDs to extract, or null for every product
+     * @param knownLastUpdated lastUpdated of the previous response, 0 if none
+     * @return The result, or null if the API did not report success
+     */
+    public static Result parse(Reader in, Set<String> wanted, long knownLastUpdated) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        Map<String, BazaarItem> items = new HashMap<>();
+        boolean success = false;
+        long lastUpdated = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("success")) {
+                success = reader.nextBoolean();
+                if (!success) return null;
+            } else if (name.equals("lastUpdated")) {
+                lastUpdated = reader.nextLong();
+                if (success && lastUpdated != 0 && lastUpdated == knownLastUpdated) {
+                    return new Result(lastUpdated, null);
+                }
+            } else if (name.equals("products")) {
+                readProducts(reader, wanted, items);
+                // Nothing after the products matters once we know the fetch succeeded
+                if (success && lastUpdated != 0) break;
+            } else {
+                reader.skipValue();
+            }
+        }
+        if (!success) return null;
+        if (lastUpdated != 0 && lastUpdated == knownLastUpdated) {
+            return new Result(lastUpdated, null);
+        }
+        return new Result(lastUpdated, items);
+    }
+
+    private static void readProducts(JsonReader reader, Set<String> wanted, Map<String, BazaarItem> items) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String id = reader.nextName();
+            if (wanted != null && !wanted.contains(id)) {
+                reader.skipValue();
+                continue;
+            }
+
+            BazaarItem item = readProduct(reader, id);
+            if (item != null) {
+                items.put(id, item);
+            }
+        }
+        reader.endObject();
+    }
+
+    private static BazaarItem readProduct(JsonReader reader, String id) throws IOException {
+        BazaarItem item = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("quick_status")) {
+                item = readQuickStatus(reader, id);
+            } else {
+                // buy_summary, sell_summary, product_id
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return item;
+    }
+
+    private static BazaarItem readQuickStatus(JsonReader reader, String id) throws IOException {
+        double buy = 0, sell = 0, buyVolume = 0, sellVolume = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "buyPrice":
+                    buy = reader.nextDouble();
+                    break;
+                case "sellPrice":
+                    sell = reader.nextDouble();
+                    break;
+                case "buyVolume":
+                    buyVolume = reader.nextDouble();
+                    break;
+                case "sellVolume":
+                    sellVolume = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new BazaarItem(id, buy, sell, buyVolume, sellVolume);
+    }
+}
@@ -1,22 +1,43 @@
 package com.raven.client.features.Stockholder;
 
+import com.raven.client.gui.components.PriceChart;
+import com.raven.client.gui.components.ScrollingList;
 import com.raven.client.utils.ChromaText;
 
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.client.gui.ScaledResolution;
-import net.minecraft.client.renderer.GlStateManager;
+import org.lwjgl.input.Mouse;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class GuiBazaarHistory extends GuiScreen {
 
+    private static final String[] MODES = {"Raw", "5m", "1h", "1d"};
+    // How far back each candle mode reaches, a few hundred candles each
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long[] CANDLE_SPANS = {2 * DAY_MILLIS, 14 * DAY_MILLIS, 365 * DAY_MILLIS};
+    private static final int BUY_COLOR = 0xFF55FFFF;
+    private static final int SELL_COLOR = 0xFFFFAA00;
+
     private Minecraft mc;
-    private final Map<String, List<BazaarSnapshot>> history = new HashMap<>();
+    private List<String> items = new ArrayList<>();
+    private final PriceChart chart = new PriceChart(0, 0, 1, 1);
+    private final ScrollingList<String, Void> itemList = new ScrollingList<>(12,
+            new ScrollingList.Renderer<String, Void>() {
+                @Override
+                public Void layout(String item, int width) {
+                    return null;
+                }
+
+                @Override
+                public void draw(String item, Void layout, int x, int y, int width, boolean hovered, int mouseX, int mouseY) {
+                    drawString(fontRendererObj, (item.equals(selectedItem) ? "> " : "  ") + item, x, y, hovered ? 0xFFFFFF : 0xAAAAAA);
+                }
+            });
     
     private Minecraft getMc() {
         if (mc == null) mc = Minecraft.getMinecraft();
@@ -24,11 +45,18 @@ public class GuiBazaarHistory extends GuiScreen {
     }
 
     private String selectedItem = null;
-    private int scrollOffset = 0;
+    private int mode = 0;
 
     @Override
     public void initGui() {
         loadHistory();
+
+        buttonList.clear();
+        for (int i = 0; i < MODES.length; i++) {
+            GuiButton button = new GuiButton(i, 160 + i * 32, height - 30, 30, 20, MODES[i]);
+            button.enabled = i != mode;
+            buttonList.add(button);
+        }
     }
 
     @Override
@@ -49,49 +77,76 @@ public class GuiBazaarHistory extends GuiScreen {
 
         ChromaText.drawChromaString("�lTracked Items:", listX, listY - 12, allowUserInput);
 
-        int i = 0;
-        for (String item : history.keySet()) {
-            int y = listY + i * 12 - scrollOffset;
-            if (y >= listY && y < listY + listHeight) {
-                drawString(fontRendererObj, (item.equals(selectedItem) ? "> " : "  ") + item, listX, y, 0xAAAAAA);
-            }
-            i++;
-        }
+        itemList.setBounds(listX, listY, listWidth, listHeight);
+        itemList.setRows(items);
+        itemList.draw(mouseX, mouseY);
 
-        if (selectedItem != null && history.containsKey(selectedItem)) {
+        if (selectedItem != null) {
             drawString(fontRendererObj, "�lHistory for: " + selectedItem, detailX, detailY - 12, 0xFFFFFF);
-
-            List<BazaarSnapshot> snapshots = history.get(selectedItem);
-            int j = 0;
-            for (BazaarSnapshot snap : snapshots) {
-                int y = detailY + j * 10 - scrollOffset;
-                if (y >= detailY && y < height - 20) {
-                    String line = snap.timestamp + " | Buy: " + snap.buyPrice + " | Sell: " + snap.sellPrice +
-                                  " | Margin: " + String.format("%.2f", snap.getMarginPercent()) + "%";
-                    drawString(fontRendererObj, line, detailX, y, 0xCCCCCC);
-                }
-                j++;
+            if (mode == 0) {
+                int legendX = width - 20 - fontRendererObj.getStringWidth("Buy  Sell");
+                drawString(fontRendererObj, "Buy", legendX, detailY - 12, BUY_COLOR);
+                drawString(fontRendererObj, "Sell", legendX + fontRendererObj.getStringWidth("Buy  "), detailY - 12, SELL_COLOR);
             }
+
+            chart.setBounds(detailX, detailY, width - detailX - 20, height - detailY - 50);
+            chart.draw(mouseX, mouseY, fontRendererObj);
         }
 
         super.drawScreen(mouseX, mouseY, partialTicks);
     }
 
+    @Override
+    protected void actionPerformed(GuiButton button) throws IOException {
+        if (button.id < MODES.length) {
+            mode = button.id;
+            for (GuiButton other : buttonList) {
+                other.enabled = other.id != mode;
+            }
+            loadChart();
+        }
+    }
+
     @Override
     protected void mouseClicked(int mouseX, int mouseY, int mouseButton) throws IOException {
-        int listX = 20;
-        int listY = 40;
+        int index = itemList.rowAt(mouseX, mouseY);
+        if (index >= 0) {
+            selectItem(itemList.getRow(index));
+        }
+        if (selectedItem != null && mouseButton == 0) {
+            chart.mousePressed(mouseX, mouseY);
+        }
+        super.mouseClicked(mouseX, mouseY, mouseButton);
+    }
+
+    @Override
+    protected void mouseClickMove(int mouseX, int mouseY, int clickedMouseButton, long timeSinceLastClick) {
+        chart.mouseDragged(mouseX);
+    }
 
-        int i = 0;
-        for (String item : history.keySet()) {
-            int y = listY + i * 12 - scrollOffset;
-            if (mouseX >= listX && mouseX <= listX + 120 && mouseY >= y && mouseY <= y + 10) {
-                selectedItem = item;
-                break;
+    @Override
+    protected void mouseReleased(int mouseX, int mouseY, int state) {
+        chart.mouseReleased();
+        super.mouseReleased(mouseX, mouseY, state);
+    }
+
+    @Override
+    public void handleMouseInput() throws IOException {
+        super.handleMouseInput();
+
+        int scroll = Mouse.getEventDWheel();
+        if (scroll != 0) {
+            int mouseX = Mouse.getEventX() * width / getMc().displayWidth;
+            int mouseY = height - Mouse.getEventY() * height / getMc().displayHeight - 1;
+            if (!itemList.handleWheel(mouseX, mouseY, scroll) && selectedItem != null) {
+                chart.handleWheel(mouseX, mouseY, scroll);
             }
-            i++;
         }
-        super.mouseClicked(mouseX, mouseY, mouseButton);
+    }
+
+    @Override
+    public void onGuiClosed() {
+        chart.free();
     }
 
     @Override
@@ -100,27 +155,61 @@ public class GuiBazaarHistory extends GuiScreen {
     }
 
     private void loadHistory() {
-        history.clear();
-        File file = new File(getMc().mcDataDir, "bazaar_snapshots.txt");
-        if (!file.exists()) return;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length != 6) continue;
-
-                String id = parts[0].trim();
-                String timestamp = parts[1].trim();
-                double buy = Double.parseDouble(parts[2].replace("Buy:", "").trim());
-                double sell = Double.parseDouble(parts[3].replace("Sell:", "").trim());
-                double buyVol = Double.parseDouble(parts[4].replace("BuyVol:", "").trim());
-                double sellVol = Double.parseDouble(parts[5].replace("SellVol:", "").trim());
-
-                BazaarSnapshot snap = new BazaarSnapshot(timestamp, buy, sell, buyVol, sellVol);
-                history.computeIfAbsent(id, k -> new ArrayList<>()).add(snap);
+        items = BazaarDataManager.getHistoryStore().getItemIds();
+        if (selectedItem != null) {
+            selectItem(selectedItem);
+        }
+    }
+
+    private void selectItem(String item) {
+        selectedItem = item;
+        loadChart();
+    }
+
+    /**
+     * Hand the selected item's data to the chart: every snapshot for the raw
+     * view, otherwise the recent candles of the chosen resolution
+     */
+    private void loadChart() {
+        if (selectedItem == null) return;
+
+        try {
+            if (mode == 0) {
+                BazaarHistoryStore.Series series = BazaarDataManager.getHistoryStore().open(selectedItem);
+                int count = series.size();
+                long[] times = new long[count];
+                double[] buy = new double[count];
+                double[] sell = new double[count];
+                for (int i = 0; i < count; i++) {
+                    times[i] = series.getTimestamp(i);
+                    buy[i] = series.getBuyPrice(i);
+                    sell[i] = series.getSellPrice(i);
+                }
+                chart.setLines(times, new double[][]{buy, sell}, new int[]{BUY_COLOR, SELL_COLOR});
+            } else {
+                BazaarCandleStore.Resolution resolution = BazaarCandleStore.Resolution.values()[mode - 1];
+                long now = System.currentTimeMillis();
+                List<BazaarCandleStore.Candle> candles = BazaarDataManager.getCandleStore()
+                        .getCandles(selectedItem, resolution, now - CANDLE_SPANS[mode - 1], now);
+                int count = candles.size();
+                long[] starts = new long[count];
+                double[] open = new double[count];
+                double[] high = new double[count];
+                double[] low = new double[count];
+                double[] close = new double[count];
+                for (int i = 0; i < count; i++) {
+                    BazaarCandleStore.Candle candle = candles.get(i);
+                    starts[i] = candle.start;
+                    open[i] = candle.buyOpen;
+                    high[i] = candle.buyHigh;
+                    low[i] = candle.buyLow;
+                    close[i] = candle.buyClose;
+                }
+                chart.setCandles(starts, resolution.millis, open, high, low, close);
             }
         } catch (IOException e) {
+            chart.setLines(new long[0], new double[0][], new int[0]);
+            System.err.println("[Stockholder] Failed to read history for: " + selectedItem);
             e.printStackTrace();
         }
     }
@@ -17,13 +17,13 @@ public class StockholderCommand extends CommandBase {
 
     @Override
     public String getCommandUsage(ICommandSender sender) {
-        return "/stock <track|untrack|list> [ITEM_ID]";
+        return "/stock <track|untrack|list|market|menus|alert> [ITEM_ID|on|off|add|remove]";
     }
 
     @Override
     public void processCommand(ICommandSender sender, String[] args) {
         if (args.length == 0) {
-            sender.addChatMessage(new ChatComponentText("cUsage: /stock <track|untrack|list> [ITEM_ID]"));
+            sender.addChatMessage(new ChatComponentText("cUsage: /stock <track|untrack|list|market|menus|alert> [ITEM_ID|on|off|add|remove]"));
             return;
         }
 
@@ -60,12 +60,98 @@ public class StockholderCommand extends CommandBase {
                 }
                 sender.addChatMessage(new ChatComponentText("aTracked Items (" + tracked.size() + "):"));
                 for (String id : tracked) {
-                    sender.addChatMessage(new ChatComponentText("8- e" + id));
+                    double change = BazaarDataManager.getDayChangePercent(id);
+                    String suffix = Double.isNaN(change) ? ""
+                            : (change >= 0 ? " a+" : " c") + String.format("%.2f", change) + "% 7(24h)";
+                    sender.addChatMessage(new ChatComponentText("8- e" + id + suffix));
+                }
+                break;
+
+            case "market":
+                if (args.length == 2 && (args[1].equalsIgnoreCase("on") || args[1].equalsIgnoreCase("off"))) {
+                    BazaarDataManager.setRecordFullMarket(args[1].equalsIgnoreCase("on"));
+                } else if (args.length != 1) {
+                    sender.addChatMessage(new ChatComponentText("cUsage: /stock market [on|off]"));
+                    return;
+                }
+                sender.addChatMessage(new ChatComponentText(BazaarDataManager.isRecordingFullMarket()
+                        ? "aRecording every bazaar product each minute."
+                        : "7Recording tracked items only. Use e/stock market on 7to record the full market."));
+                break;
+
+            case "menus":
+                if (args.length == 2 && (args[1].equalsIgnoreCase("on") || args[1].equalsIgnoreCase("off"))) {
+                    BazaarDataManager.setRecordInMenus(args[1].equalsIgnoreCase("on"));
+                } else if (args.length != 1) {
+                    sender.addChatMessage(new ChatComponentText("cUsage: /stock menus [on|off]"));
+                    return;
+                }
+                sender.addChatMessage(new ChatComponentText(BazaarDataManager.isRecordingInMenus()
+                        ? "aRecording bazaar data in menus too."
+                        : "7Recording only while in a world. Use e/stock menus on 7to keep recording in menus."));
+                break;
+
+            case "alert":
+                handleAlert(sender, args);
+                break;
+
+            default:
+                sender.addChatMessage(new ChatComponentText("cUnknown subcommand. Use: track, untrack, list, market, menus, alert"));
+        }
+    }
+
+    private void handleAlert(ICommandSender sender, String[] args) {
+        BazaarAlertEngine engine = BazaarDataManager.getAlertEngine();
+        String action = args.length > 1 ? args[1].toLowerCase() : "list";
+
+        switch (action) {
+            case "add":
+                if (args.length < 3) {
+                    sender.addChatMessage(new ChatComponentText("cUsage: /stock alert add [ITEM_ID:] <metric> <op> <number> [and ...]"));
+                    sender.addChatMessage(new ChatComponentText("7Metrics: buy, sell, buyvol, sellvol, margin, margin%, buy%10m, sell%1h"));
+                    return;
+                }
+                String text = String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+                try {
+                    engine.addRule(BazaarAlertRule.parse(text));
+                } catch (IllegalArgumentException e) {
+                    sender.addChatMessage(new ChatComponentText("c" + e.getMessage()));
+                    return;
+                }
+                engine.save();
+                sender.addChatMessage(new ChatComponentText("aAdded alert: e" + text));
+                break;
+
+            case "remove":
+                BazaarAlertRule removed = null;
+                if (args.length == 3) {
+                    try {
+                        removed = engine.removeRule(Integer.parseInt(args[2]) - 1);
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                if (removed == null) {
+                    sender.addChatMessage(new ChatComponentText("cUsage: /stock alert remove <number from /stock alert list>"));
+                    return;
+                }
+                engine.save();
+                sender.addChatMessage(new ChatComponentText("cRemoved alert: e" + removed.text));
+                break;
+
+            case "list":
+                List<BazaarAlertRule> rules = engine.getRules();
+                if (rules.isEmpty()) {
+                    sender.addChatMessage(new ChatComponentText("7No alerts set. Use e/stock alert add7."));
+                    return;
+                }
+                sender.addChatMessage(new ChatComponentText("aAlerts (" + rules.size() + "):"));
+                for (int i = 0; i < rules.size(); i++) {
+                    sender.addChatMessage(new ChatComponentText("8" + (i + 1) + ". e" + rules.get(i).text));
                 }
                 break;
 
             default:
-                sender.addChatMessage(new ChatComponentText("cUnknown subcommand. Use: track, untrack, list"));
+                sender.addChatMessage(new ChatComponentText("cUsage: /stock alert <add|remove|list>"));
         }
     }
 
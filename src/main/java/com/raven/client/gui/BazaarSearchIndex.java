@@ -0,0 +1,316 @@
+package com.raven.client.gui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * In-memory search over bazaar product IDs and display names, so the
+ * bazaar browser can search on every keystroke without a server call.
+ *
+ * Every name and ID is split into lowercase words. Distinct words are kept
+ * sorted for prefix lookups by binary search, and indexed by trigram for
+ * typos and matches inside a word. Each query word scores the best word it
+ * hits in an entry (exact, prefix, infix, then edit distance 1-2), an entry
+ * must hit every query word, and results are ranked by total score.
+ */
+public final class BazaarSearchIndex {
+
+    private static final String PRODUCT_LIST = "/assets/ravenclient/bazaar_items.txt";
+
+    private static final float EXACT = 100;
+    private static final float PREFIX = 80;
+    private static final float INFIX = 50;
+    private static final float FUZZY = 40;
+
+    private final String[] ids;
+    private final String[] names;
+
+    // Distinct words, sorted, and the entries each one appears in
+    private final String[] words;
+    private final int[][] wordEntries;
+    // Where the word sits in each of those entries, 0 for the first word of the name
+    private final int[][] wordPositions;
+    private final Map<String, int[]> wordsByTrigram;
+
+    /**
+     * A ranked match
+     */
+    public static final class Result {
+        public final String productId;
+        public final String displayName;
+        public final float score;
+
+        Result(String productId, String displayName, float score) {
+            this.productId = productId;
+            this.displayName = displayName;
+            this.score = score;
+        }
+    }
+
+    private BazaarSearchIndex(List<String> productIds, Function<String, String> displayName) {
+        int n = productIds.size();
+        ids = productIds.toArray(new String[0]);
+        names = new String[n];
+
+        TreeMap<String, List<int[]>> postings = new TreeMap<>();
+        for (int e = 0; e < n; e++) {
+            names[e] = displayName.apply(ids[e]);
+            Set<String> entryWords = new LinkedHashSet<>();
+            entryWords.addAll(split(names[e]));
+            entryWords.addAll(split(ids[e]));
+            int position = 0;
+            for (String word : entryWords) {
+                postings.computeIfAbsent(word, k -> new ArrayList<>()).add(new int[]{e, position++});
+            }
+        }
+
+        words = postings.keySet().toArray(new String[0]);
+        wordEntries = new int[words.length][];
+        wordPositions = new int[words.length][];
+        Map<String, List<Integer>> trigrams = new HashMap<>();
+        for (int w = 0; w < words.length; w++) {
+            List<int[]> list = postings.get(words[w]);
+            wordEntries[w] = new int[list.size()];
+            wordPositions[w] = new int[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                wordEntries[w][i] = list.get(i)[0];
+                wordPositions[w][i] = list.get(i)[1];
+            }
+            for (String trigram : trigrams(words[w])) {
+                trigrams.computeIfAbsent(trigram, k -> new ArrayList<>()).add(w);
+            }
+        }
+
+        wordsByTrigram = new HashMap<>(trigrams.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : trigrams.entrySet()) {
+            List<Integer> list = entry.getValue();
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+            wordsByTrigram.put(entry.getKey(), array);
+        }
+    }
+
+    /**
+     * Index the bundled product list plus any extra IDs
+     */
+    public static BazaarSearchIndex load(Collection<String> extraIds, Function<String, String> displayName) {
+        Set<String> productIds = new LinkedHashSet<>();
+        try (InputStream in = BazaarSearchIndex.class.getResourceAsStream(PRODUCT_LIST)) {
+            if (in == null) {
+                System.err.println("[Bazaar] Bundled product list not found: " + PRODUCT_LIST);
+            } else {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // The file starts with a byte order mark
+                    line = line.replace("\uFEFF", "").trim();
+                    if (!line.isEmpty()) productIds.add(line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Bazaar] Failed to read product list: " + e.getMessage());
+        }
+        productIds.addAll(extraIds);
+        return new BazaarSearchIndex(new ArrayList<>(productIds), displayName);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Best matches first, at most limit of them
+     */
+    public List<Result> search(String query, int limit) {
+        List<String> terms = split(query);
+        if (terms.isEmpty()) return new ArrayList<>();
+
+        float[] total = new float[ids.length];
+        int[] hitCount = new int[ids.length];
+        float[] best = new float[ids.length];
+        int[] touched = new int[ids.length];
+
+        for (int t = 0; t < terms.size(); t++) {
+            String term = terms.get(t);
+            int touchedCount = 0;
+
+            // Exact and prefix: one contiguous run of the sorted words
+            int from = lowerBound(term);
+            for (int w = from; w < words.length && words[w].startsWith(term); w++) {
+                float score = words[w].length() == term.length() ? EXACT
+                        : PREFIX - Math.min(20, words[w].length() - term.length());
+                touchedCount = credit(w, score, t, best, touched, touchedCount);
+            }
+
+            // Infix and typos via shared trigrams
+            if (term.length() >= 3) {
+                for (int w : fuzzyCandidates(term)) {
+                    String word = words[w];
+                    if (word.startsWith(term)) continue;
+                    float score;
+                    if (word.contains(term)) {
+                        score = INFIX;
+                    } else {
+                        int maxDistance = term.length() >= 7 ? 2 : 1;
+                        // Compare against the word's start so a partial word can still be a typo
+                        String compared = word.length() > term.length() + maxDistance
+                                ? word.substring(0, term.length()) : word;
+                        int distance = distance(term, compared, maxDistance);
+                        if (distance > maxDistance) continue;
+                        score = FUZZY - 10 * distance;
+                    }
+                    touchedCount = credit(w, score, t, best, touched, touchedCount);
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                int e = touched[i];
+                total[e] += best[e];
+                hitCount[e]++;
+                best[e] = 0;
+            }
+        }
+
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        List<Integer> matches = new ArrayList<>();
+        for (int e = 0; e < ids.length; e++) {
+            if (hitCount[e] == terms.size()) {
+                // Whole query typed as the name or ID, or the start of one
+                String name = names[e].toLowerCase(Locale.ROOT);
+                String id = ids[e].toLowerCase(Locale.ROOT);
+                if (name.equals(normalized) || id.equals(normalized)) {
+                    total[e] += 60;
+                } else if (name.startsWith(normalized) || id.replace('_', ' ').startsWith(normalized)) {
+                    total[e] += 30;
+                }
+                // Shorter names are the more likely target
+                total[e] -= names[e].length() * 0.1f;
+                matches.add(e);
+            }
+        }
+
+        matches.sort((a, b) -> {
+            int byScore = Float.compare(total[b], total[a]);
+            return byScore != 0 ? byScore : names[a].compareTo(names[b]);
+        });
+
+        List<Result> results = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            int e = matches.get(i);
+            results.add(new Result(ids[e], names[e], total[e]));
+        }
+        return results;
+    }
+
+    // Give every entry containing word w at least this score for the current term
+    private int credit(int w, float score, int term, float[] best, int[] touched, int touchedCount) {
+        int[] entries = wordEntries[w];
+        int[] positions = wordPositions[w];
+        for (int i = 0; i < entries.length; i++) {
+            int e = entries[i];
+            // The first query word matching the first word of the name ranks higher
+            float entryScore = term == 0 && positions[i] == 0 ? score + 10 : score;
+            if (best[e] == 0) touched[touchedCount++] = e;
+            if (entryScore > best[e]) best[e] = entryScore;
+        }
+        return touchedCount;
+    }
+
+    // Words sharing enough trigrams with the term to be worth an edit distance check
+    private int[] fuzzyCandidates(String term) {
+        List<String> termTrigrams = trigrams(term);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String trigram : termTrigrams) {
+            int[] list = wordsByTrigram.get(trigram);
+            if (list == null) continue;
+            for (int w : list) shared.merge(w, 1, Integer::sum);
+        }
+        // One typo changes at most three trigrams
+        int needed = Math.max(1, termTrigrams.size() - 3);
+        int[] candidates = new int[shared.size()];
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+            if (entry.getValue() >= needed) candidates[count++] = entry.getKey();
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private int lowerBound(String key) {
+        int low = 0, high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static List<String> split(String text) {
+        List<String> result = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                result.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) result.add(word.toString());
+        return result;
+    }
+
+    // Padded with a leading space so the first letters count as their own trigram
+    private static List<String> trigrams(String word) {
+        String padded = " " + word;
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    // Optimal string alignment distance, giving up once it exceeds max
+    private static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) return max + 1;
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) return max + 1;
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+}
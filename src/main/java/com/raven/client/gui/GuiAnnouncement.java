@@ -1,9 +1,13 @@
 package com.raven.client.gui;
 
+import com.raven.client.api.BazaarCatalogueCache;
+import com.raven.client.api.BazaarDetailLoader;
+import com.raven.client.api.BazaarFetcher;
 import com.raven.client.gui.notifications.Message;
 import com.raven.client.gui.notifications.MessageManager;
 import com.raven.client.gui.components.CustomButton;
 import com.raven.client.gui.components.RenderUtils;
+import com.raven.client.gui.components.ScrollingList;
 import com.raven.client.gui.partyfinder.PartyFinderCategory;
 import com.raven.client.gui.partyfinder.PartyFinderAPI;
 import com.raven.client.utils.ConfigManager;
@@ -24,10 +28,6 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.text.DecimalFormat;
 import java.util.concurrent.ExecutorService;
@@ -63,13 +63,25 @@ public class GuiAnnouncement extends GuiScreen {
     private String editingFilterName = null; // Which filter is being edited (null = none)
     private String editingFilterValue = ""; // Current typed value while editing
     
-    // Party list data from API
-    private List<JsonObject> partyList = new ArrayList<>();
+    // Party list data from API, replaced rather than modified when a refresh lands
+    private volatile List<JsonObject> partyList = new ArrayList<>();
     private boolean partiesLoading = false;
     private String partiesError = null;
     private long lastPartyRefresh = 0;
     private static final long PARTY_REFRESH_INTERVAL = 10000; // 10 seconds
-    private int partyListScroll = 0;
+    private static final int PARTY_ROW_HEIGHT = 50;
+    private final ScrollingList<JsonObject, PartyRow> partyRows = new ScrollingList<>(PARTY_ROW_HEIGHT + 5,
+            new ScrollingList.Renderer<JsonObject, PartyRow>() {
+                @Override
+                public PartyRow layout(JsonObject party, int width) {
+                    return new PartyRow(party, width);
+                }
+                
+                @Override
+                public void draw(JsonObject party, PartyRow row, int x, int y, int width, boolean hovered, int mouseX, int mouseY) {
+                    drawPartyRow(row, x, y, width, hovered, mouseX, mouseY);
+                }
+            });
     
     // Current player's party
     private JsonObject myParty = null;
@@ -85,6 +97,10 @@ public class GuiAnnouncement extends GuiScreen {
     private static final String BAZAAR_API_URL = "http://100.42.184.35:25581";
     private static final DecimalFormat PRICE_FORMAT = new DecimalFormat("#,##0.0");
     private static final DecimalFormat VOLUME_FORMAT = new DecimalFormat("#,##0");
+    private static final long BAZAAR_DETAIL_TTL = 30 * 1000L;
+    
+    private static final BazaarDetailLoader<BazaarItemDetail> BAZAAR_DETAIL_LOADER =
+            new BazaarDetailLoader<>("Bazaar-Detail", BAZAAR_DETAIL_TTL, GuiAnnouncement::fetchBazaarItemDetail);
     
     private ExecutorService bazaarExecutor = Executors.newSingleThreadExecutor();
     private GuiTextField bazaarSearchField;
@@ -93,11 +109,11 @@ public class GuiAnnouncement extends GuiScreen {
     private int bazaarSectionScrollOffset = 0;
     private int bazaarMaxSectionScroll = 0;
     
-    // Bazaar Data
-    private List<BazaarCategory> bazaarCategories = new ArrayList<>();
-    private List<BazaarSection> bazaarSections = new ArrayList<>();
-    private List<BazaarItem> bazaarItems = new ArrayList<>();
-    private List<BazaarItem> bazaarSearchResults = new ArrayList<>();
+    // Bazaar Data, replaced as whole lists from the catalogue cache threads
+    private volatile List<BazaarCategory> bazaarCategories = new ArrayList<>();
+    private volatile List<BazaarSection> bazaarSections = new ArrayList<>();
+    private volatile List<BazaarItem> bazaarItems = new ArrayList<>();
+    private volatile List<BazaarItem> bazaarSearchResults = new ArrayList<>();
     
     // Bazaar State
     private String selectedBazaarCategory = null;
@@ -691,78 +707,53 @@ public class GuiAnnouncement extends GuiScreen {
         }
         
         // Draw party list
-        int itemHeight = 50;
-        int maxItems = (height - (listStartY - y) - 10) / (itemHeight + 5);
-        int listY = listStartY;
-        
-        for (int i = partyListScroll; i < partyList.size() && i < partyListScroll + maxItems; i++) {
-            JsonObject party = partyList.get(i);
-            
-            boolean hover = mouseX >= x + 10 && mouseX < x + width - 20 &&
-                           mouseY >= listY && mouseY < listY + itemHeight;
-            
-            // Party item background
-            int bgColor = hover ? 0xFF3a3a4a : 0xFF2a2a3a;
-            RenderUtils.drawRect(x + 10, listY, x + width - 20, listY + itemHeight, bgColor);
-            
-            // Category color bar
-            int catColor = party.has("categoryColor") ? party.get("categoryColor").getAsInt() : 0xFFFFFF;
-            RenderUtils.drawRect(x + 10, listY, x + 14, listY + itemHeight, catColor | 0xFF000000);
-            
-            // Leader name and note
-            String leader = party.has("leader") ? party.get("leader").getAsString() : "Unknown";
-            String note = party.has("note") && !party.get("note").getAsString().isEmpty() 
-                         ? party.get("note").getAsString() : party.has("category") 
-                         ? party.get("category").getAsString() : "Party";
-            
-            net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
-            this.fontRendererObj.drawStringWithShadow(leader + "'s Party", x + 20, listY + 5, 0xFFFFFF);
-            
-            // Truncate note if needed
-            int maxNoteWidth = width - 150;
-            if (this.fontRendererObj.getStringWidth(note) > maxNoteWidth) {
-                while (this.fontRendererObj.getStringWidth(note + "...") > maxNoteWidth && note.length() > 3) {
-                    note = note.substring(0, note.length() - 1);
-                }
-                note = note + "...";
-            }
-            this.fontRendererObj.drawString(note, x + 20, listY + 18, 0xAAAAAA);
-            
-            // Member count
-            int members = party.has("memberCount") ? party.get("memberCount").getAsInt() : 1;
-            int maxMembers = party.has("maxPlayers") ? party.get("maxPlayers").getAsInt() : 5;
-            String memberStr = members + "/" + maxMembers;
-            this.fontRendererObj.drawString(memberStr, x + 20, listY + 31, 0x888888);
-            
-            // Min level if set
-            int minLevel = party.has("minLevel") ? party.get("minLevel").getAsInt() : 0;
-            if (minLevel > 0) {
-                this.fontRendererObj.drawString("Lvl " + minLevel + "+", x + 70, listY + 31, 0x888888);
-            }
-            
-            // Join button
-            int joinX = x + width - 80;
-            boolean joinHover = mouseX >= joinX && mouseX < joinX + 50 && 
-                               mouseY >= listY + 10 && mouseY < listY + 35;
-            RenderUtils.drawRect(joinX, listY + 10, joinX + 50, listY + 35, 
-                               joinHover ? 0xFF55AA55 : 0xFF449944);
-            net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
-            this.fontRendererObj.drawString("Join", joinX + 13, listY + 17, 0xFFFFFF);
-            
-            listY += itemHeight + 5;
-        }
+        int listHeight = height - (listStartY - y) - 10;
+        partyRows.setBounds(x + 10, listStartY, width - 30, listHeight);
+        partyRows.setRows(partyList);
+        partyRows.draw(mouseX, mouseY);
         
         // Scroll indicators
-        if (partyListScroll > 0) {
+        if (partyRows.canScrollUp()) {
             net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
             this.fontRendererObj.drawString("^ More above", x + width / 2 - 30, listStartY - 10, 0x888888);
         }
-        if (partyListScroll + maxItems < partyList.size()) {
+        if (partyRows.canScrollDown()) {
             net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
             this.fontRendererObj.drawString("v More below", x + width / 2 - 30, y + height - 15, 0x888888);
         }
     }
     
+    private void drawPartyRow(PartyRow row, int x, int y, int width, boolean hover, int mouseX, int mouseY) {
+        // Party item background
+        int bgColor = hover ? 0xFF3a3a4a : 0xFF2a2a3a;
+        RenderUtils.drawRect(x, y, x + width, y + PARTY_ROW_HEIGHT, bgColor);
+        
+        // Category color bar
+        RenderUtils.drawRect(x, y, x + 4, y + PARTY_ROW_HEIGHT, row.categoryColor | 0xFF000000);
+        
+        // Leader name and note
+        net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+        this.fontRendererObj.drawStringWithShadow(row.title, x + 10, y + 5, 0xFFFFFF);
+        this.fontRendererObj.drawString(row.note, x + 10, y + 18, 0xAAAAAA);
+        
+        // Member count
+        this.fontRendererObj.drawString(row.members, x + 10, y + 31, 0x888888);
+        
+        // Min level if set
+        if (row.minLevel != null) {
+            this.fontRendererObj.drawString(row.minLevel, x + 60, y + 31, 0x888888);
+        }
+        
+        // Join button
+        int joinX = x + width - 60;
+        boolean joinHover = mouseX >= joinX && mouseX < joinX + 50 &&
+                           mouseY >= y + 10 && mouseY < y + 35;
+        RenderUtils.drawRect(joinX, y + 10, joinX + 50, y + 35, 
+                           joinHover ? 0xFF55AA55 : 0xFF449944);
+        net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+        this.fontRendererObj.drawString("Join", joinX + 13, y + 17, 0xFFFFFF);
+    }
+    
     private void refreshParties() {
         if (selectedPartyFinderCategory == null) return;
         
@@ -776,7 +767,7 @@ public class GuiAnnouncement extends GuiScreen {
             @Override
             public void onSuccess(JsonObject response) {
                 partiesLoading = false;
-                partyList.clear();
+                List<JsonObject> loaded = new ArrayList<>();
                 
                 System.out.println("[PartyFinder] Response: " + response.toString());
                 
@@ -784,11 +775,12 @@ public class GuiAnnouncement extends GuiScreen {
                     JsonArray parties = response.getAsJsonArray("parties");
                     for (JsonElement elem : parties) {
                         if (elem.isJsonObject()) {
-                            partyList.add(elem.getAsJsonObject());
+                            loaded.add(elem.getAsJsonObject());
                         }
                     }
                 }
-                System.out.println("[PartyFinder] Loaded " + partyList.size() + " parties");
+                partyList = loaded;
+                System.out.println("[PartyFinder] Loaded " + loaded.size() + " parties");
             }
             
             @Override
@@ -1125,7 +1117,7 @@ public class GuiAnnouncement extends GuiScreen {
             int meterColor;
             if (voiceManager.isMuted()) {
                 meterColor = 0xFF555555;
-            } else if (voiceManager.isPushToTalkActive() || (!voiceManager.isUsePushToTalk() && level > 0.02f)) {
+            } else if (voiceManager.isPushToTalkActive() || (!voiceManager.isUsePushToTalk() && voiceManager.isVoiceDetected())) {
                 meterColor = 0xFF55FF55;
             } else {
                 meterColor = 0xFF55AA55;
@@ -1708,17 +1700,17 @@ public class GuiAnnouncement extends GuiScreen {
         int visibleItems = (height - 30) / itemHeight;
         bazaarMaxScroll = Math.max(0, bazaarItems.size() - visibleItems);
         
+        List<String> visibleIds = new ArrayList<>(visibleItems + 1);
         for (int i = bazaarScrollOffset; i < bazaarItems.size() && itemY < y + height - itemHeight; i++) {
             BazaarItem item = bazaarItems.get(i);
+            if (!item.unavailable) visibleIds.add(item.productId);
             boolean hovered = mouseX >= x && mouseX < x + width && mouseY >= itemY && mouseY < itemY + itemHeight;
             
             if (hovered) {
                 RenderUtils.drawRect(x + 2, itemY, x + width - 2, itemY + itemHeight - 2, 0xFF3A3A5A);
                 hoveredBazaarItem = item;
                 
-                if (hoveredBazaarItemDetail == null || !hoveredBazaarItemDetail.productId.equals(item.productId)) {
-                    loadBazaarItemDetail(item.productId);
-                }
+                hoveredBazaarItemDetail = BAZAAR_DETAIL_LOADER.get(item.productId);
             }
             
             // Item name
@@ -1747,6 +1739,7 @@ public class GuiAnnouncement extends GuiScreen {
             
             itemY += itemHeight;
         }
+        BAZAAR_DETAIL_LOADER.prefetch(visibleIds);
         
         // Scroll indicator
         if (bazaarMaxScroll > 0) {
@@ -1799,17 +1792,17 @@ public class GuiAnnouncement extends GuiScreen {
         int visibleItems = (height - 55) / itemHeight;
         bazaarMaxScroll = Math.max(0, bazaarSearchResults.size() - visibleItems);
         
+        List<String> visibleIds = new ArrayList<>(visibleItems + 1);
         for (int i = bazaarScrollOffset; i < bazaarSearchResults.size() && itemY < y + height - itemHeight; i++) {
             BazaarItem item = bazaarSearchResults.get(i);
+            visibleIds.add(item.productId);
             boolean hovered = mouseX >= x && mouseX < x + width && mouseY >= itemY && mouseY < itemY + itemHeight;
             
             if (hovered) {
                 RenderUtils.drawRect(x + 2, itemY, x + width - 2, itemY + itemHeight - 2, 0xFF3A3A5A);
                 hoveredBazaarItem = item;
                 
-                if (hoveredBazaarItemDetail == null || !hoveredBazaarItemDetail.productId.equals(item.productId)) {
-                    loadBazaarItemDetail(item.productId);
-                }
+                hoveredBazaarItemDetail = BAZAAR_DETAIL_LOADER.get(item.productId);
             }
             
             // Item name
@@ -1833,6 +1826,7 @@ public class GuiAnnouncement extends GuiScreen {
             
             itemY += itemHeight;
         }
+        BAZAAR_DETAIL_LOADER.prefetch(visibleIds);
     }
     
     private void drawBazaarItemTooltip(int mouseX, int mouseY) {
@@ -1912,32 +1906,34 @@ public class GuiAnnouncement extends GuiScreen {
         bazaarIsLoading = true;
         bazaarStatusMessage = "Loading categories...";
         
-        bazaarExecutor.submit(() -> {
-            try {
-                String response = bazaarHttpGet(BAZAAR_API_URL + "/bazaar/categories");
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        BazaarCatalogueCache.load(BAZAAR_API_URL + "/bazaar/categories", BazaarCatalogueCache.CATEGORY_TTL, response -> {
+            JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+            
+            if (json.get("success").getAsBoolean()) {
+                List<BazaarCategory> loaded = new ArrayList<>();
+                JsonArray catArray = json.getAsJsonArray("categories");
                 
-                if (json.get("success").getAsBoolean()) {
-                    bazaarCategories.clear();
-                    JsonArray catArray = json.getAsJsonArray("categories");
-                    
-                    for (JsonElement elem : catArray) {
-                        JsonObject catObj = elem.getAsJsonObject();
-                        BazaarCategory cat = new BazaarCategory();
-                        cat.id = catObj.get("id").getAsString();
-                        cat.name = catObj.get("name").getAsString();
-                        cat.color = catObj.get("color").getAsInt();
-                        cat.sectionCount = catObj.get("sectionCount").getAsInt();
-                        bazaarCategories.add(cat);
-                    }
-                    
-                    bazaarIsLoading = false;
-                    bazaarDataLoaded = true;
+                for (JsonElement elem : catArray) {
+                    JsonObject catObj = elem.getAsJsonObject();
+                    BazaarCategory cat = new BazaarCategory();
+                    cat.id = catObj.get("id").getAsString();
+                    cat.name = catObj.get("name").getAsString();
+                    cat.color = catObj.get("color").getAsInt();
+                    cat.sectionCount = catObj.get("sectionCount").getAsInt();
+                    loaded.add(cat);
+                }
+                
+                bazaarCategories = loaded;
+                bazaarIsLoading = false;
+                bazaarDataLoaded = true;
+                
+                for (BazaarCategory cat : loaded) {
+                    BazaarCatalogueCache.prefetch(bazaarSectionsUrl(cat.id), BazaarCatalogueCache.SECTION_TTL);
                 }
-            } catch (Exception e) {
-                bazaarStatusMessage = "Error: " + e.getMessage();
-                System.err.println("[Bazaar] Error loading categories: " + e.getMessage());
             }
+        }, e -> {
+            bazaarStatusMessage = "Error: " + e.getMessage();
+            System.err.println("[Bazaar] Error loading categories: " + e.getMessage());
         });
     }
     
@@ -1945,114 +1941,141 @@ public class GuiAnnouncement extends GuiScreen {
         bazaarIsLoading = true;
         bazaarStatusMessage = "Loading sections...";
         
-        bazaarExecutor.submit(() -> {
-            try {
-                String response = bazaarHttpGet(BAZAAR_API_URL + "/bazaar/sections?category=" + URLEncoder.encode(categoryId, "UTF-8"));
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        BazaarCatalogueCache.load(bazaarSectionsUrl(categoryId), BazaarCatalogueCache.SECTION_TTL, response -> {
+            if (!categoryId.equals(selectedBazaarCategory)) return;
+            JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+            
+            if (json.get("success").getAsBoolean()) {
+                List<BazaarSection> loaded = new ArrayList<>();
+                JsonArray sectionArray = json.getAsJsonArray("sections");
                 
-                if (json.get("success").getAsBoolean()) {
-                    bazaarSections.clear();
-                    JsonArray sectionArray = json.getAsJsonArray("sections");
-                    
-                    for (JsonElement elem : sectionArray) {
-                        JsonObject secObj = elem.getAsJsonObject();
-                        BazaarSection section = new BazaarSection();
-                        section.id = secObj.get("id").getAsString();
-                        section.name = secObj.get("name").getAsString();
-                        section.itemCount = secObj.get("itemCount").getAsInt();
-                        bazaarSections.add(section);
-                    }
-                    
-                    bazaarIsLoading = false;
+                for (JsonElement elem : sectionArray) {
+                    JsonObject secObj = elem.getAsJsonObject();
+                    BazaarSection section = new BazaarSection();
+                    section.id = secObj.get("id").getAsString();
+                    section.name = secObj.get("name").getAsString();
+                    section.itemCount = secObj.get("itemCount").getAsInt();
+                    loaded.add(section);
+                }
+                
+                bazaarSections = loaded;
+                bazaarIsLoading = false;
+                
+                for (int i = 0; i < Math.min(2, loaded.size()); i++) {
+                    BazaarCatalogueCache.prefetch(bazaarItemsUrl(categoryId, loaded.get(i).id), BazaarCatalogueCache.ITEM_TTL);
                 }
-            } catch (Exception e) {
-                bazaarStatusMessage = "Error: " + e.getMessage();
-                System.err.println("[Bazaar] Error loading sections: " + e.getMessage());
             }
+        }, e -> {
+            bazaarStatusMessage = "Error: " + e.getMessage();
+            System.err.println("[Bazaar] Error loading sections: " + e.getMessage());
         });
     }
     
     private void loadBazaarItems(String categoryId, String sectionId) {
         bazaarIsLoading = true;
         bazaarStatusMessage = "Loading items...";
+        prefetchBazaarNeighbours(categoryId, sectionId);
         
-        bazaarExecutor.submit(() -> {
-            try {
-                String url = BAZAAR_API_URL + "/bazaar/items?category=" + URLEncoder.encode(categoryId, "UTF-8") 
-                           + "&section=" + URLEncoder.encode(sectionId, "UTF-8");
-                String response = bazaarHttpGet(url);
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        BazaarCatalogueCache.load(bazaarItemsUrl(categoryId, sectionId), BazaarCatalogueCache.ITEM_TTL, response -> {
+            if (!sectionId.equals(selectedBazaarSection)) return;
+            JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+            
+            if (json.get("success").getAsBoolean()) {
+                List<BazaarItem> loaded = new ArrayList<>();
+                JsonArray itemArray = json.getAsJsonArray("items");
                 
-                if (json.get("success").getAsBoolean()) {
-                    bazaarItems.clear();
-                    JsonArray itemArray = json.getAsJsonArray("items");
-                    
-                    for (JsonElement elem : itemArray) {
-                        JsonObject itemObj = elem.getAsJsonObject();
-                        BazaarItem item = new BazaarItem();
-                        item.productId = itemObj.get("productId").getAsString();
-                        item.displayName = itemObj.has("displayName") ? itemObj.get("displayName").getAsString() : item.productId;
-                        item.buyPrice = itemObj.get("buyPrice").getAsDouble();
-                        item.sellPrice = itemObj.get("sellPrice").getAsDouble();
-                        item.buyVolume = itemObj.get("buyVolume").getAsLong();
-                        item.sellVolume = itemObj.get("sellVolume").getAsLong();
-                        item.unavailable = itemObj.has("unavailable") && itemObj.get("unavailable").getAsBoolean();
-                        bazaarItems.add(item);
-                    }
-                    
-                    bazaarIsLoading = false;
+                for (JsonElement elem : itemArray) {
+                    JsonObject itemObj = elem.getAsJsonObject();
+                    BazaarItem item = new BazaarItem();
+                    item.productId = itemObj.get("productId").getAsString();
+                    item.displayName = itemObj.has("displayName") ? itemObj.get("displayName").getAsString() : item.productId;
+                    item.buyPrice = itemObj.get("buyPrice").getAsDouble();
+                    item.sellPrice = itemObj.get("sellPrice").getAsDouble();
+                    item.buyVolume = itemObj.get("buyVolume").getAsLong();
+                    item.sellVolume = itemObj.get("sellVolume").getAsLong();
+                    item.unavailable = itemObj.has("unavailable") && itemObj.get("unavailable").getAsBoolean();
+                    loaded.add(item);
                 }
-            } catch (Exception e) {
-                bazaarStatusMessage = "Error: " + e.getMessage();
-                System.err.println("[Bazaar] Error loading items: " + e.getMessage());
+                
+                bazaarItems = loaded;
+                bazaarIsLoading = false;
             }
+        }, e -> {
+            bazaarStatusMessage = "Error: " + e.getMessage();
+            System.err.println("[Bazaar] Error loading items: " + e.getMessage());
         });
     }
     
-    private void loadBazaarItemDetail(String productId) {
-        bazaarExecutor.submit(() -> {
-            try {
-                String url = BAZAAR_API_URL + "/bazaar/item?id=" + URLEncoder.encode(productId, "UTF-8");
-                String response = bazaarHttpGet(url);
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
-                
-                if (json.get("success").getAsBoolean()) {
-                    JsonObject itemObj = json.getAsJsonObject("item");
-                    JsonObject current = itemObj.getAsJsonObject("current");
-                    JsonObject history = itemObj.getAsJsonObject("history");
-                    
-                    BazaarItemDetail detail = new BazaarItemDetail();
-                    detail.productId = itemObj.get("productId").getAsString();
-                    detail.displayName = itemObj.get("displayName").getAsString();
-                    detail.buyPrice = current.get("buyPrice").getAsDouble();
-                    detail.sellPrice = current.get("sellPrice").getAsDouble();
-                    detail.buyVolume = current.get("buyVolume").getAsLong();
-                    detail.sellVolume = current.get("sellVolume").getAsLong();
-                    detail.buyOrders = current.get("buyOrders").getAsLong();
-                    detail.sellOrders = current.get("sellOrders").getAsLong();
-                    
-                    if (history.has("oneHour") && !history.get("oneHour").isJsonNull()) {
-                        JsonObject h = history.getAsJsonObject("oneHour");
-                        detail.buyPrice1h = h.get("buyPrice").getAsDouble();
-                        detail.sellPrice1h = h.get("sellPrice").getAsDouble();
-                    }
-                    if (history.has("oneDay") && !history.get("oneDay").isJsonNull()) {
-                        JsonObject h = history.getAsJsonObject("oneDay");
-                        detail.buyPrice1d = h.get("buyPrice").getAsDouble();
-                        detail.sellPrice1d = h.get("sellPrice").getAsDouble();
-                    }
-                    if (history.has("sevenDays") && !history.get("sevenDays").isJsonNull()) {
-                        JsonObject h = history.getAsJsonObject("sevenDays");
-                        detail.buyPrice7d = h.get("buyPrice").getAsDouble();
-                        detail.sellPrice7d = h.get("sellPrice").getAsDouble();
-                    }
-                    
-                    hoveredBazaarItemDetail = detail;
-                }
-            } catch (Exception e) {
-                System.err.println("[Bazaar] Error loading item detail: " + e.getMessage());
+    private void prefetchBazaarNeighbours(String categoryId, String sectionId) {
+        List<BazaarSection> current = bazaarSections;
+        for (int i = 0; i < current.size(); i++) {
+            if (!current.get(i).id.equals(sectionId)) continue;
+            if (i > 0) {
+                BazaarCatalogueCache.prefetch(bazaarItemsUrl(categoryId, current.get(i - 1).id), BazaarCatalogueCache.ITEM_TTL);
             }
-        });
+            if (i + 1 < current.size()) {
+                BazaarCatalogueCache.prefetch(bazaarItemsUrl(categoryId, current.get(i + 1).id), BazaarCatalogueCache.ITEM_TTL);
+            }
+            return;
+        }
+    }
+    
+    private static String bazaarSectionsUrl(String categoryId) {
+        return BAZAAR_API_URL + "/bazaar/sections?category=" + bazaarEncode(categoryId);
+    }
+    
+    private static String bazaarItemsUrl(String categoryId, String sectionId) {
+        return BAZAAR_API_URL + "/bazaar/items?category=" + bazaarEncode(categoryId) + "&section=" + bazaarEncode(sectionId);
+    }
+    
+    private static String bazaarEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // One product's detail for the tooltip, called on the loader's thread
+    private static BazaarItemDetail fetchBazaarItemDetail(String productId) throws java.io.IOException {
+        String url = BAZAAR_API_URL + "/bazaar/item?id=" + URLEncoder.encode(productId, "UTF-8");
+        String response = bazaarHttpGet(url);
+        JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        
+        if (json.get("success").getAsBoolean()) {
+            JsonObject itemObj = json.getAsJsonObject("item");
+            JsonObject current = itemObj.getAsJsonObject("current");
+            JsonObject history = itemObj.getAsJsonObject("history");
+            
+            BazaarItemDetail detail = new BazaarItemDetail();
+            detail.productId = itemObj.get("productId").getAsString();
+            detail.displayName = itemObj.get("displayName").getAsString();
+            detail.buyPrice = current.get("buyPrice").getAsDouble();
+            detail.sellPrice = current.get("sellPrice").getAsDouble();
+            detail.buyVolume = current.get("buyVolume").getAsLong();
+            detail.sellVolume = current.get("sellVolume").getAsLong();
+            detail.buyOrders = current.get("buyOrders").getAsLong();
+            detail.sellOrders = current.get("sellOrders").getAsLong();
+            
+            if (history.has("oneHour") && !history.get("oneHour").isJsonNull()) {
+                JsonObject h = history.getAsJsonObject("oneHour");
+                detail.buyPrice1h = h.get("buyPrice").getAsDouble();
+                detail.sellPrice1h = h.get("sellPrice").getAsDouble();
+            }
+            if (history.has("oneDay") && !history.get("oneDay").isJsonNull()) {
+                JsonObject h = history.getAsJsonObject("oneDay");
+                detail.buyPrice1d = h.get("buyPrice").getAsDouble();
+                detail.sellPrice1d = h.get("sellPrice").getAsDouble();
+            }
+            if (history.has("sevenDays") && !history.get("sevenDays").isJsonNull()) {
+                JsonObject h = history.getAsJsonObject("sevenDays");
+                detail.buyPrice7d = h.get("buyPrice").getAsDouble();
+                detail.sellPrice7d = h.get("sellPrice").getAsDouble();
+            }
+            
+            return detail;
+        }
+        return null;
     }
     
     private void searchBazaarItems(String query) {
@@ -2090,22 +2113,8 @@ public class GuiAnnouncement extends GuiScreen {
         });
     }
     
-    private String bazaarHttpGet(String urlStr) throws java.io.IOException {
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(5000);
-        
-        BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            response.append(line);
-        }
-        reader.close();
-        
-        return response.toString();
+    private static String bazaarHttpGet(String urlStr) throws java.io.IOException {
+        return BazaarFetcher.get(urlStr).text();
     }
     
     // ===================== END BAZAAR METHODS =====================
@@ -2372,20 +2381,21 @@ public class GuiAnnouncement extends GuiScreen {
                 if (mouseX >= refreshX && mouseX < refreshX + 70 && mouseY >= refreshY && mouseY < refreshY + 18) {
                     // Force refresh
                     lastPartyRefresh = 0;
-                    partyList.clear();
+                    partyList = new ArrayList<>();
                     partiesLoading = true;
                     partiesError = null;
                     
                     PartyFinderAPI.getParties(selectedPartyFinderCategory, new PartyFinderAPI.PartiesCallback() {
                         @Override
                         public void onSuccess(JsonObject response) {
-                            partyList.clear();
+                            List<JsonObject> loaded = new ArrayList<>();
                             if (response.has("parties")) {
                                 JsonArray parties = response.getAsJsonArray("parties");
                                 for (int i = 0; i < parties.size(); i++) {
-                                    partyList.add(parties.get(i).getAsJsonObject());
+                                    loaded.add(parties.get(i).getAsJsonObject());
                                 }
                             }
+                            partyList = loaded;
                             partiesLoading = false;
                             lastPartyRefresh = System.currentTimeMillis();
                         }
@@ -2400,29 +2410,20 @@ public class GuiAnnouncement extends GuiScreen {
                 }
                 
                 // Party card clicks (Join buttons)
-                if (!partyList.isEmpty()) {
-                    int cardY = contentY + 30;
-                    int cardHeight = 70;
-                    int cardSpacing = 5;
+                int index = partyRows.rowAt(mouseX, mouseY);
+                if (index >= 0) {
+                    JsonObject party = partyRows.getRow(index);
+                    String partyId = party.has("id") ? party.get("id").getAsString() : "";
                     
-                    for (int i = 0; i < partyList.size(); i++) {
-                        if (cardY + cardHeight > contentY + contentHeight - 10) break;
-                        
-                        JsonObject party = partyList.get(i);
-                        String partyId = party.has("id") ? party.get("id").getAsString() : "";
-                        
-                        // Join button position (same as in drawPartyBrowseContent)
-                        int joinBtnX = rightX + rightWidth - 70;
-                        int joinBtnY = cardY + 25;
-                        
-                        if (mouseX >= joinBtnX && mouseX < joinBtnX + 55 && 
-                            mouseY >= joinBtnY && mouseY < joinBtnY + 20) {
-                            // Join this party
-                            joinParty(partyId, party);
-                            return;
-                        }
-                        
-                        cardY += cardHeight + cardSpacing;
+                    // Join button position (same as in drawPartyRow)
+                    int joinBtnX = rightX + rightWidth - 80;
+                    int joinBtnY = partyRows.rowTop(index) + 10;
+                    
+                    if (mouseX >= joinBtnX && mouseX < joinBtnX + 50 && 
+                        mouseY >= joinBtnY && mouseY < joinBtnY + 25) {
+                        // Join this party
+                        joinParty(partyId, party);
+                        return;
                     }
                 }
             }
@@ -2848,6 +2849,9 @@ public class GuiAnnouncement extends GuiScreen {
         int mouseY = height - Mouse.getEventY() * height / mc.displayHeight - 1;
         
         int scroll = Mouse.getEventDWheel();
+        if (scroll != 0 && currentTab == Message.MessageType.PARTY_FINDER) {
+            partyRows.handleWheel(mouseX, mouseY, scroll);
+        }
         if (scroll != 0) {
             // Handle Bazaar scrolling
             if (currentTab == Message.MessageType.BAZAAR) {
@@ -2886,6 +2890,44 @@ public class GuiAnnouncement extends GuiScreen {
     
     // ===================== INNER CLASSES =====================
     
+    /**
+     * Strings for one row of the party browser, built once per party list
+     */
+    private class PartyRow {
+        final String title;
+        final String note;
+        final String members;
+        final String minLevel;
+        final int categoryColor;
+        
+        PartyRow(JsonObject party, int width) {
+            String leader = party.has("leader") ? party.get("leader").getAsString() : "Unknown";
+            title = leader + "'s Party";
+            
+            String text = party.has("note") && !party.get("note").getAsString().isEmpty() 
+                         ? party.get("note").getAsString() : party.has("category") 
+                         ? party.get("category").getAsString() : "Party";
+            // Truncate note if needed
+            int maxNoteWidth = width - 120;
+            if (fontRendererObj.getStringWidth(text) > maxNoteWidth) {
+                while (fontRendererObj.getStringWidth(text + "...") > maxNoteWidth && text.length() > 3) {
+                    text = text.substring(0, text.length() - 1);
+                }
+                text = text + "...";
+            }
+            note = text;
+            
+            int memberCount = party.has("memberCount") ? party.get("memberCount").getAsInt() : 1;
+            int maxMembers = party.has("maxPlayers") ? party.get("maxPlayers").getAsInt() : 5;
+            members = memberCount + "/" + maxMembers;
+            
+            int level = party.has("minLevel") ? party.get("minLevel").getAsInt() : 0;
+            minLevel = level > 0 ? "Lvl " + level + "+" : null;
+            
+            categoryColor = party.has("categoryColor") ? party.get("categoryColor").getAsInt() : 0xFFFFFF;
+        }
+    }
+    
     /**
      * Simple class to hold voice room info for the room browser
      */
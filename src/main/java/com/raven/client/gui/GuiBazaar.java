@@ -4,14 +4,21 @@ import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.input.Mouse;
@@ -28,35 +35,137 @@ import net.minecraft.client.gui.GuiTextField;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.util.EnumChatFormatting;
 
+import com.raven.client.api.BazaarCatalogueCache;
+import com.raven.client.api.BazaarDetailLoader;
+import com.raven.client.api.BazaarFetcher;
+import com.raven.client.features.Stockholder.BazaarResponseParser;
+import com.raven.client.gui.components.ScrollingList;
+
 public class GuiBazaar extends GuiScreen {
     
     private static final String BAZAAR_API_URL = "http://100.42.184.35:25581";
+    private static final String HYPIXEL_BAZAAR_URL = "https://api.hypixel.net/v2/skyblock/bazaar";
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final long SEARCH_PRICE_TTL = 60 * 1000L;
+    private static final int SECTION_ROW_HEIGHT = 22;
+    private static final int ITEM_ROW_HEIGHT = 40;
+    private static final int SEARCH_ROW_HEIGHT = 35;
+    private static final long DETAIL_TTL = 30 * 1000L;
     private static final DecimalFormat PRICE_FORMAT = new DecimalFormat("#,##0.0");
     private static final DecimalFormat VOLUME_FORMAT = new DecimalFormat("#,##0");
     
     private ExecutorService executor = Executors.newSingleThreadExecutor();
     
+    // Search runs locally; prices for the results come from one Hypixel request, shared while fresh
+    private static volatile BazaarSearchIndex searchIndex;
+    private static volatile Map<String, com.raven.client.features.Stockholder.BazaarItem> searchPrices;
+    private static volatile long searchPricesAt = 0;
+    private static volatile boolean searchPricesLoading = false;
+    // "Category > Section" for products seen while browsing
+    private static final Map<String, String> KNOWN_PATHS = new ConcurrentHashMap<>();
+    
+    private static final BazaarDetailLoader<BazaarItemDetail> DETAIL_LOADER =
+            new BazaarDetailLoader<>("Bazaar-Detail", DETAIL_TTL, GuiBazaar::fetchItemDetail);
+    
     // UI Components
     private GuiTextField searchField;
-    private int scrollOffset = 0;
-    private int maxScroll = 0;
-    private int sectionScrollOffset = 0;
-    private int maxSectionScroll = 0;
     
-    // Data
-    private List<BazaarCategory> categories = new ArrayList<>();
-    private List<BazaarSection> sections = new ArrayList<>();
-    private List<BazaarItem> items = new ArrayList<>();
-    private List<BazaarItem> searchResults = new ArrayList<>();
+    // Row layouts are the names cut to fit the column
+    private final ScrollingList<BazaarSection, String> sectionList = new ScrollingList<>(SECTION_ROW_HEIGHT,
+            new ScrollingList.Renderer<BazaarSection, String>() {
+                @Override
+                public String layout(BazaarSection section, int width) {
+                    return fitName(section.name, width - 30);
+                }
+                
+                @Override
+                public void draw(BazaarSection section, String name, int x, int y, int width, boolean hovered, int mouseX, int mouseY) {
+                    if (section.id.equals(selectedSection)) {
+                        drawRect(x + 2, y, x + width - 2, y + SECTION_ROW_HEIGHT - 2, 0xFF4A4A6A);
+                    } else if (hovered) {
+                        drawRect(x + 2, y, x + width - 2, y + SECTION_ROW_HEIGHT - 2, 0xFF3A3A5A);
+                    }
+                    fontRendererObj.drawString(name, x + 5, y + 6, 0xFFFFFF);
+                }
+            });
+    
+    private final ScrollingList<BazaarItem, String> itemList = new ScrollingList<>(ITEM_ROW_HEIGHT,
+            new ScrollingList.Renderer<BazaarItem, String>() {
+                @Override
+                public String layout(BazaarItem item, int width) {
+                    return fitName(item.displayName, width - 160);
+                }
+                
+                @Override
+                public void draw(BazaarItem item, String name, int x, int y, int width, boolean hovered, int mouseX, int mouseY) {
+                    if (hovered) {
+                        drawRect(x + 2, y, x + width - 2, y + ITEM_ROW_HEIGHT - 2, 0xFF3A3A5A);
+                    }
+                    
+                    // Item name
+                    int nameColor = item.unavailable ? 0x888888 : 0xFFFFFF;
+                    fontRendererObj.drawString(name, x + 5, y + 5, nameColor);
+                    
+                    // Buy price
+                    fontRendererObj.drawString(item.buyText, x + width - 140, y + 5, 0x55FF55);
+                    
+                    // Sell price
+                    fontRendererObj.drawString(item.sellText, x + width - 70, y + 5, 0xFF5555);
+                    
+                    // Volume info
+                    if (item.volumeText != null) {
+                        fontRendererObj.drawString(item.volumeText, x + 5, y + 17, 0x888888);
+                    }
+                    
+                    // Separator line
+                    drawRect(x + 5, y + ITEM_ROW_HEIGHT - 3, x + width - 5, y + ITEM_ROW_HEIGHT - 2, 0xFF3D3D5C);
+                }
+            });
+    
+    private final ScrollingList<BazaarItem, String> searchList = new ScrollingList<>(SEARCH_ROW_HEIGHT,
+            new ScrollingList.Renderer<BazaarItem, String>() {
+                @Override
+                public String layout(BazaarItem item, int width) {
+                    return fitName(item.displayName, width - 180);
+                }
+                
+                @Override
+                public void draw(BazaarItem item, String name, int x, int y, int width, boolean hovered, int mouseX, int mouseY) {
+                    if (hovered) {
+                        drawRect(x + 2, y, x + width - 2, y + SEARCH_ROW_HEIGHT - 2, 0xFF3A3A5A);
+                    }
+                    
+                    // Item name
+                    fontRendererObj.drawString(name, x + 5, y + 3, 0xFFFFFF);
+                    
+                    // Category/Section path, once the section has been browsed
+                    if (item.pathText != null) {
+                        fontRendererObj.drawString(item.pathText, x + 5, y + 14, 0x666666);
+                    }
+                    
+                    // Prices
+                    fontRendererObj.drawString(item.buyText, x + width - 140, y + 8, 0x55FF55);
+                    fontRendererObj.drawString(item.sellText, x + width - 70, y + 8, 0xFF5555);
+                }
+            });
+    
+    // Data, replaced as a whole by loaders on any thread and read once per frame
+    private final AtomicReference<BazaarView> view = new AtomicReference<>(BazaarView.EMPTY);
     
     // State
-    private String selectedCategory = null;
-    private String selectedSection = null;
+    // Written on the client thread, read by loaders to drop answers for a selection the user left
+    private volatile String selectedCategory = null;
+    private volatile String selectedSection = null;
     private BazaarItem hoveredItem = null;
     private BazaarItemDetail hoveredItemDetail = null;
-    private String statusMessage = "Loading categories...";
-    private boolean isLoading = false;
     private boolean showSearch = false;
+    // Latest query typed before the search index was ready; run once it is
+    private volatile String pendingQuery;
+    
+    // Tooltip for the hovered row, rebuilt only when the row or its detail changes
+    private BazaarItem tooltipItem = null;
+    private BazaarItemDetail tooltipDetail = null;
+    private List<String> tooltipLines = null;
     
     // Layout constants
     private int panelX, panelY, panelWidth, panelHeight;
@@ -434,32 +543,127 @@ public class GuiBazaar extends GuiScreen {
     }
     
     // Category data class
-    private static class BazaarCategory {
-        String id;
-        String name;
-        String icon;
-        int color;
-        int sectionCount;
+    private static final class BazaarCategory {
+        final String id;
+        final String name;
+        final String icon;
+        final int color;
+        final int sectionCount;
+        final String countText;
+        
+        BazaarCategory(String id, String name, String icon, int color, int sectionCount) {
+            this.id = id;
+            this.name = name;
+            this.icon = icon;
+            this.color = color;
+            this.sectionCount = sectionCount;
+            this.countText = "(" + sectionCount + ")";
+        }
     }
     
     // Section data class
-    private static class BazaarSection {
-        String id;
-        String name;
-        int itemCount;
+    private static final class BazaarSection {
+        final String id;
+        final String name;
+        final int itemCount;
+        
+        BazaarSection(String id, String name, int itemCount) {
+            this.id = id;
+            this.name = name;
+            this.itemCount = itemCount;
+        }
+
     }
     
-    // Item data class
-    private static class BazaarItem {
-        String productId;
-        String displayName;
-        double buyPrice;
-        double sellPrice;
-        long buyVolume;
-        long sellVolume;
-        String category;
-        String section;
-        boolean unavailable;
+    // Item row, with the strings the list draws formatted when it is built
+    private static final class BazaarItem {
+        final String productId;
+        final String displayName;
+        final double buyPrice;
+        final double sellPrice;
+        final long buyVolume;
+        final long sellVolume;
+        final String category;
+        final String section;
+        final boolean unavailable;
+        
+        final String buyText;
+        final String sellText;
+        final String volumeText;
+        final String pathText;
+        
+        // priced is false while search prices are still loading
+        BazaarItem(String productId, String displayName, double buyPrice, double sellPrice, long buyVolume, long sellVolume,
+                   String category, String section, boolean unavailable, boolean priced) {
+            this.productId = productId;
+            this.displayName = displayName;
+            this.buyPrice = buyPrice;
+            this.sellPrice = sellPrice;
+            this.buyVolume = buyVolume;
+            this.sellVolume = sellVolume;
+            this.category = category;
+            this.section = section;
+            this.unavailable = unavailable;
+            
+            this.buyText = !priced ? "..." : unavailable ? "N/A" : formatPrice(buyPrice);
+            this.sellText = !priced ? "..." : unavailable ? "N/A" : formatPrice(sellPrice);
+            this.volumeText = !priced || unavailable ? null
+                    : EnumChatFormatting.GRAY + "Vol: " + formatVolume(buyVolume) + " / " + formatVolume(sellVolume);
+            this.pathText = category == null ? null : EnumChatFormatting.DARK_GRAY + category + " > " + section;
+        }
+
+    }
+    
+    // Everything the panels draw. Never modified; loaders publish a new one.
+    private static final class BazaarView {
+        static final BazaarView EMPTY = new BazaarView(Collections.<BazaarCategory>emptyList(),
+                Collections.<BazaarSection>emptyList(), Collections.<BazaarItem>emptyList(),
+                Collections.<BazaarItem>emptyList(), "Loading categories...", false);
+        
+        final List<BazaarCategory> categories;
+        final List<BazaarSection> sections;
+        final List<BazaarItem> items;
+        final List<BazaarItem> searchResults;
+        final String searchHeader;
+        final String statusMessage;
+        final String statusText;
+        final boolean loading;
+        
+        private BazaarView(List<BazaarCategory> categories, List<BazaarSection> sections, List<BazaarItem> items,
+                           List<BazaarItem> searchResults, String statusMessage, boolean loading) {
+            this.categories = categories;
+            this.sections = sections;
+            this.items = items;
+            this.searchResults = searchResults;
+            this.searchHeader = "Search Results (" + searchResults.size() + ")";
+            this.statusMessage = statusMessage;
+            this.statusText = EnumChatFormatting.YELLOW + statusMessage;
+            this.loading = loading;
+        }
+        
+        BazaarView withCategories(List<BazaarCategory> list) {
+            return new BazaarView(Collections.unmodifiableList(list), sections, items, searchResults, statusMessage, loading);
+        }
+        
+        BazaarView withSections(List<BazaarSection> list) {
+            return new BazaarView(categories, Collections.unmodifiableList(list), items, searchResults, statusMessage, loading);
+        }
+        
+        BazaarView withItems(List<BazaarItem> list) {
+            return new BazaarView(categories, sections, Collections.unmodifiableList(list), searchResults, statusMessage, loading);
+        }
+        
+        BazaarView withSearchResults(List<BazaarItem> list) {
+            return new BazaarView(categories, sections, items, Collections.unmodifiableList(list), statusMessage, loading);
+        }
+        
+        BazaarView withStatus(String message, boolean isLoading) {
+            return new BazaarView(categories, sections, items, searchResults, message, isLoading);
+        }
+        
+        BazaarView idle() {
+            return loading ? withStatus(statusMessage, false) : this;
+        }
     }
     
     // Item detail with price history
@@ -492,6 +696,10 @@ public class GuiBazaar extends GuiScreen {
         panelX = (width - panelWidth) / 2;
         panelY = (height - panelHeight) / 2;
         
+        sectionList.setScrollbar(0xFF1A1A2E, 0xFF5A5A7A);
+        itemList.setScrollbar(0xFF1A1A2E, 0xFF5A5A7A);
+        searchList.setScrollbar(0xFF1A1A2E, 0xFF5A5A7A);
+        
         // Search field
         searchField = new GuiTextField(0, fontRendererObj, panelX + categoryWidth + 10, panelY - 25, 200, 18);
         searchField.setMaxStringLength(50);
@@ -505,12 +713,23 @@ public class GuiBazaar extends GuiScreen {
         
         // Load categories
         loadCategories();
+        if (searchIndex == null) {
+            executor.submit(() -> {
+                buildSearchIndex();
+                String query = pendingQuery;
+                if (query != null) {
+                    pendingQuery = null;
+                    searchItems(query);
+                }
+            });
+        }
     }
     
     @Override
     public void onGuiClosed() {
         super.onGuiClosed();
         Keyboard.enableRepeatEvents(false);
+        DETAIL_LOADER.clearWanted();
     }
     
     @Override
@@ -528,24 +747,27 @@ public class GuiBazaar extends GuiScreen {
         // Draw search field
         searchField.drawTextBox();
         
+        // One snapshot for the whole frame
+        BazaarView v = view.get();
+        
         // Category panel
-        drawCategoryPanel(mouseX, mouseY);
+        drawCategoryPanel(v, mouseX, mouseY);
         
         // Section panel (if category selected)
         if (selectedCategory != null && !showSearch) {
-            drawSectionPanel(mouseX, mouseY);
+            drawSectionPanel(v, mouseX, mouseY);
         }
         
         // Items panel
         if (showSearch) {
-            drawSearchResults(mouseX, mouseY);
+            drawSearchResults(v, mouseX, mouseY);
         } else if (selectedSection != null) {
-            drawItemsPanel(mouseX, mouseY);
+            drawItemsPanel(v, mouseX, mouseY);
         }
         
         // Status message
-        if (isLoading) {
-            drawCenteredString(fontRendererObj, EnumChatFormatting.YELLOW + statusMessage, width / 2, panelY + panelHeight + 10, 0xFFFFFF);
+        if (v.loading) {
+            drawCenteredString(fontRendererObj, v.statusText, width / 2, panelY + panelHeight + 10, 0xFFFFFF);
         }
         
         // Draw tooltip for hovered item
@@ -556,7 +778,7 @@ public class GuiBazaar extends GuiScreen {
         super.drawScreen(mouseX, mouseY, partialTicks);
     }
     
-    private void drawCategoryPanel(int mouseX, int mouseY) {
+    private void drawCategoryPanel(BazaarView v, int mouseX, int mouseY) {
         int x = panelX;
         int y = panelY;
         int itemHeight = 24;
@@ -570,7 +792,7 @@ public class GuiBazaar extends GuiScreen {
         
         y += 25;
         
-        for (BazaarCategory cat : categories) {
+        for (BazaarCategory cat : v.categories) {
             boolean hovered = mouseX >= x && mouseX < x + categoryWidth && mouseY >= y && mouseY < y + itemHeight;
             boolean selected = cat.id.equals(selectedCategory);
             
@@ -586,17 +808,15 @@ public class GuiBazaar extends GuiScreen {
             fontRendererObj.drawString(cat.name, x + 8, y + 7, textColor);
             
             // Section count
-            String count = "(" + cat.sectionCount + ")";
-            fontRendererObj.drawString(count, x + categoryWidth - fontRendererObj.getStringWidth(count) - 8, y + 7, 0x888888);
+            fontRendererObj.drawString(cat.countText, x + categoryWidth - fontRendererObj.getStringWidth(cat.countText) - 8, y + 7, 0x888888);
             
             y += itemHeight;
         }
     }
     
-    private void drawSectionPanel(int mouseX, int mouseY) {
+    private void drawSectionPanel(BazaarView v, int mouseX, int mouseY) {
         int x = panelX + categoryWidth + 5;
         int y = panelY;
-        int itemHeight = 22;
         
         // Panel background
         drawRect(x, y, x + sectionWidth, y + panelHeight, 0xFF2D2D44);
@@ -605,49 +825,15 @@ public class GuiBazaar extends GuiScreen {
         drawRect(x, y, x + sectionWidth, y + 20, 0xFF3D3D5C);
         drawCenteredString(fontRendererObj, "Sections", x + sectionWidth / 2, y + 6, 0xFFFFFF);
         
-        y += 25;
-        
-        int visibleSections = (panelHeight - 30) / itemHeight;
-        maxSectionScroll = Math.max(0, sections.size() - visibleSections);
-        
-        for (int i = sectionScrollOffset; i < sections.size() && y < panelY + panelHeight - itemHeight; i++) {
-            BazaarSection section = sections.get(i);
-            boolean hovered = mouseX >= x && mouseX < x + sectionWidth && mouseY >= y && mouseY < y + itemHeight;
-            boolean selected = section.id.equals(selectedSection);
-            
-            // Background
-            if (selected) {
-                drawRect(x + 2, y, x + sectionWidth - 2, y + itemHeight - 2, 0xFF4A4A6A);
-            } else if (hovered) {
-                drawRect(x + 2, y, x + sectionWidth - 2, y + itemHeight - 2, 0xFF3A3A5A);
-            }
-            
-            // Section name
-            String name = section.name;
-            if (fontRendererObj.getStringWidth(name) > sectionWidth - 30) {
-                name = fontRendererObj.trimStringToWidth(name, sectionWidth - 35) + "...";
-            }
-            fontRendererObj.drawString(name, x + 5, y + 6, 0xFFFFFF);
-            
-            y += itemHeight;
-        }
-        
-        // Scroll indicator for sections
-        if (maxSectionScroll > 0) {
-            int scrollBarHeight = panelHeight - 30;
-            int scrollThumbHeight = Math.max(20, scrollBarHeight * visibleSections / sections.size());
-            int scrollThumbY = panelY + 25 + (int)((scrollBarHeight - scrollThumbHeight) * sectionScrollOffset / (float)maxSectionScroll);
-            
-            drawRect(x + sectionWidth - 5, panelY + 25, x + sectionWidth - 2, panelY + panelHeight, 0xFF1A1A2E);
-            drawRect(x + sectionWidth - 5, scrollThumbY, x + sectionWidth - 2, scrollThumbY + scrollThumbHeight, 0xFF5A5A7A);
-        }
+        sectionList.setBounds(x, y + 25, sectionWidth, panelHeight - 25);
+        sectionList.setRows(v.sections);
+        sectionList.draw(mouseX, mouseY);
     }
     
-    private void drawItemsPanel(int mouseX, int mouseY) {
+    private void drawItemsPanel(BazaarView v, int mouseX, int mouseY) {
         int x = panelX + categoryWidth + sectionWidth + 10;
         int y = panelY;
         int itemsWidth = panelWidth - categoryWidth - sectionWidth - 15;
-        int itemHeight = 40;
         
         // Panel background
         drawRect(x, y, x + itemsWidth, y + panelHeight, 0xFF2D2D44);
@@ -658,125 +844,75 @@ public class GuiBazaar extends GuiScreen {
         drawString(fontRendererObj, "Buy", x + itemsWidth - 140, y + 6, 0x55FF55);
         drawString(fontRendererObj, "Sell", x + itemsWidth - 70, y + 6, 0xFF5555);
         
-        y += 25;
-        hoveredItem = null;
-        
-        int visibleItems = (panelHeight - 30) / itemHeight;
-        maxScroll = Math.max(0, items.size() - visibleItems);
-        
-        for (int i = scrollOffset; i < items.size() && y < panelY + panelHeight - itemHeight; i++) {
-            BazaarItem item = items.get(i);
-            boolean hovered = mouseX >= x && mouseX < x + itemsWidth && mouseY >= y && mouseY < y + itemHeight;
-            
-            if (hovered) {
-                drawRect(x + 2, y, x + itemsWidth - 2, y + itemHeight - 2, 0xFF3A3A5A);
-                hoveredItem = item;
-                
-                // Load detailed info for tooltip
-                if (hoveredItemDetail == null || !hoveredItemDetail.productId.equals(item.productId)) {
-                    loadItemDetail(item.productId);
-                }
-            }
-            
-            // Item name
-            String name = item.displayName;
-            if (fontRendererObj.getStringWidth(name) > itemsWidth - 160) {
-                name = fontRendererObj.trimStringToWidth(name, itemsWidth - 165) + "...";
-            }
-            
-            int nameColor = item.unavailable ? 0x888888 : 0xFFFFFF;
-            fontRendererObj.drawString(name, x + 5, y + 5, nameColor);
-            
-            // Buy price
-            String buyStr = item.unavailable ? "N/A" : formatPrice(item.buyPrice);
-            fontRendererObj.drawString(buyStr, x + itemsWidth - 140, y + 5, 0x55FF55);
-            
-            // Sell price
-            String sellStr = item.unavailable ? "N/A" : formatPrice(item.sellPrice);
-            fontRendererObj.drawString(sellStr, x + itemsWidth - 70, y + 5, 0xFF5555);
-            
-            // Volume info
-            if (!item.unavailable) {
-                String volumeInfo = EnumChatFormatting.GRAY + "Vol: " + VOLUME_FORMAT.format(item.buyVolume) + " / " + VOLUME_FORMAT.format(item.sellVolume);
-                fontRendererObj.drawString(volumeInfo, x + 5, y + 17, 0x888888);
-            }
-            
-            // Separator line
-            drawRect(x + 5, y + itemHeight - 3, x + itemsWidth - 5, y + itemHeight - 2, 0xFF3D3D5C);
-            
-            y += itemHeight;
-        }
-        
-        // Scroll indicator
-        if (maxScroll > 0) {
-            int scrollBarHeight = panelHeight - 30;
-            int scrollThumbHeight = Math.max(20, scrollBarHeight * visibleItems / items.size());
-            int scrollThumbY = panelY + 25 + (int)((scrollBarHeight - scrollThumbHeight) * scrollOffset / (float)maxScroll);
-            
-            drawRect(x + itemsWidth - 5, panelY + 25, x + itemsWidth - 2, panelY + panelHeight, 0xFF1A1A2E);
-            drawRect(x + itemsWidth - 5, scrollThumbY, x + itemsWidth - 2, scrollThumbY + scrollThumbHeight, 0xFF5A5A7A);
-        }
+        itemList.setBounds(x, y + 25, itemsWidth, panelHeight - 25);
+        itemList.setRows(v.items);
+        itemList.draw(mouseX, mouseY);
+        trackHover(itemList, true);
     }
     
-    private void drawSearchResults(int mouseX, int mouseY) {
+    private void drawSearchResults(BazaarView v, int mouseX, int mouseY) {
         int x = panelX + categoryWidth + 10;
         int y = panelY;
         int resultsWidth = panelWidth - categoryWidth - 15;
-        int itemHeight = 35;
         
         // Panel background
         drawRect(x, y, x + resultsWidth, y + panelHeight, 0xFF2D2D44);
         
         // Header
         drawRect(x, y, x + resultsWidth, y + 20, 0xFF3D3D5C);
-        drawString(fontRendererObj, "Search Results (" + searchResults.size() + ")", x + 5, y + 6, 0xFFFFFF);
+        drawString(fontRendererObj, v.searchHeader, x + 5, y + 6, 0xFFFFFF);
         
-        y += 25;
-        hoveredItem = null;
-        
-        if (searchResults.isEmpty()) {
-            drawCenteredString(fontRendererObj, EnumChatFormatting.GRAY + "No results found", x + resultsWidth / 2, y + 50, 0xFFFFFF);
+        if (v.searchResults.isEmpty()) {
+            hoveredItem = null;
+            String empty = searchIndex == null ? "Indexing..." : "No results found";
+            drawCenteredString(fontRendererObj, EnumChatFormatting.GRAY + empty, x + resultsWidth / 2, y + 75, 0xFFFFFF);
             return;
         }
         
-        int visibleItems = (panelHeight - 30) / itemHeight;
-        maxScroll = Math.max(0, searchResults.size() - visibleItems);
+        searchList.setBounds(x, y + 25, resultsWidth, panelHeight - 25);
+        searchList.setRows(v.searchResults);
+        searchList.draw(mouseX, mouseY);
+        trackHover(searchList, false);
+    }
+    
+    // Pick up the hovered row for the tooltip and tell the detail loader what is on screen
+    private void trackHover(ScrollingList<BazaarItem, String> list, boolean skipUnavailable) {
+        int hovered = list.getHoveredIndex();
+        hoveredItem = hovered >= 0 ? list.getRow(hovered) : null;
+        if (hoveredItem != null) {
+            // Detail for the tooltip, loaded in the background if not cached yet
+            hoveredItemDetail = DETAIL_LOADER.get(hoveredItem.productId);
+        }
         
-        for (int i = scrollOffset; i < searchResults.size() && y < panelY + panelHeight - itemHeight; i++) {
-            BazaarItem item = searchResults.get(i);
-            boolean hovered = mouseX >= x && mouseX < x + resultsWidth && mouseY >= y && mouseY < y + itemHeight;
-            
-            if (hovered) {
-                drawRect(x + 2, y, x + resultsWidth - 2, y + itemHeight - 2, 0xFF3A3A5A);
-                hoveredItem = item;
-                
-                if (hoveredItemDetail == null || !hoveredItemDetail.productId.equals(item.productId)) {
-                    loadItemDetail(item.productId);
-                }
-            }
-            
-            // Item name
-            String name = item.displayName;
-            if (fontRendererObj.getStringWidth(name) > resultsWidth - 180) {
-                name = fontRendererObj.trimStringToWidth(name, resultsWidth - 185) + "...";
-            }
-            fontRendererObj.drawString(name, x + 5, y + 3, 0xFFFFFF);
-            
-            // Category/Section path
-            String path = EnumChatFormatting.DARK_GRAY + item.category + " > " + item.section;
-            fontRendererObj.drawString(path, x + 5, y + 14, 0x666666);
-            
-            // Prices
-            fontRendererObj.drawString(formatPrice(item.buyPrice), x + resultsWidth - 140, y + 8, 0x55FF55);
-            fontRendererObj.drawString(formatPrice(item.sellPrice), x + resultsWidth - 70, y + 8, 0xFF5555);
-            
-            y += itemHeight;
+        List<String> visibleIds = new ArrayList<>(list.getLastVisible() - list.getFirstVisible());
+        for (int i = list.getFirstVisible(); i < list.getLastVisible(); i++) {
+            BazaarItem item = list.getRow(i);
+            if (!skipUnavailable || !item.unavailable) visibleIds.add(item.productId);
         }
+        DETAIL_LOADER.prefetch(visibleIds);
+    }
+    
+    private String fitName(String name, int maxWidth) {
+        if (fontRendererObj.getStringWidth(name) > maxWidth) {
+            return fontRendererObj.trimStringToWidth(name, maxWidth - 5) + "...";
+        }
+        return name;
     }
     
     private void drawItemTooltip(int mouseX, int mouseY) {
         if (hoveredItem == null) return;
         
+        BazaarItemDetail detail = hoveredItemDetail != null && hoveredItemDetail.productId.equals(hoveredItem.productId)
+                ? hoveredItemDetail : null;
+        if (tooltipLines == null || tooltipItem != hoveredItem || tooltipDetail != detail) {
+            tooltipLines = buildTooltip(hoveredItem, detail);
+            tooltipItem = hoveredItem;
+            tooltipDetail = detail;
+        }
+        drawHoveringText(tooltipLines, mouseX, mouseY);
+    }
+    
+    private static List<String> buildTooltip(BazaarItem hoveredItem, BazaarItemDetail hoveredItemDetail) {
         List<String> lines = new ArrayList<>();
         
         // Title
@@ -789,11 +925,11 @@ public class GuiBazaar extends GuiScreen {
         lines.add("");
         
         // Volume
-        lines.add(EnumChatFormatting.GRAY + "Buy Volume: " + EnumChatFormatting.WHITE + VOLUME_FORMAT.format(hoveredItem.buyVolume));
-        lines.add(EnumChatFormatting.GRAY + "Sell Volume: " + EnumChatFormatting.WHITE + VOLUME_FORMAT.format(hoveredItem.sellVolume));
+        lines.add(EnumChatFormatting.GRAY + "Buy Volume: " + EnumChatFormatting.WHITE + formatVolume(hoveredItem.buyVolume));
+        lines.add(EnumChatFormatting.GRAY + "Sell Volume: " + EnumChatFormatting.WHITE + formatVolume(hoveredItem.sellVolume));
         
         // Price history if available
-        if (hoveredItemDetail != null && hoveredItemDetail.productId.equals(hoveredItem.productId)) {
+        if (hoveredItemDetail != null) {
             lines.add("");
             lines.add(EnumChatFormatting.YELLOW + "Price History:");
             
@@ -820,19 +956,19 @@ public class GuiBazaar extends GuiScreen {
             
             // Orders
             lines.add("");
-            lines.add(EnumChatFormatting.GRAY + "Buy Orders: " + EnumChatFormatting.WHITE + VOLUME_FORMAT.format(hoveredItemDetail.buyOrders));
-            lines.add(EnumChatFormatting.GRAY + "Sell Orders: " + EnumChatFormatting.WHITE + VOLUME_FORMAT.format(hoveredItemDetail.sellOrders));
+            lines.add(EnumChatFormatting.GRAY + "Buy Orders: " + EnumChatFormatting.WHITE + formatVolume(hoveredItemDetail.buyOrders));
+            lines.add(EnumChatFormatting.GRAY + "Sell Orders: " + EnumChatFormatting.WHITE + formatVolume(hoveredItemDetail.sellOrders));
         }
         
-        drawHoveringText(lines, mouseX, mouseY);
+        return lines;
     }
     
-    private double calculatePercentChange(double oldPrice, double newPrice) {
+    private static double calculatePercentChange(double oldPrice, double newPrice) {
         if (oldPrice == 0) return 0;
         return ((newPrice - oldPrice) / oldPrice) * 100;
     }
     
-    private String formatChangeString(double percentChange) {
+    private static String formatChangeString(double percentChange) {
         DecimalFormat df = new DecimalFormat("+0.0;-0.0");
         String formatted = df.format(percentChange) + "%";
         
@@ -844,15 +980,24 @@ public class GuiBazaar extends GuiScreen {
         return EnumChatFormatting.GRAY + formatted;
     }
     
-    private String formatPrice(double price) {
-        if (price >= 1000000000) {
-            return PRICE_FORMAT.format(price / 1000000000) + "B";
-        } else if (price >= 1000000) {
-            return PRICE_FORMAT.format(price / 1000000) + "M";
-        } else if (price >= 1000) {
-            return PRICE_FORMAT.format(price / 1000) + "K";
+    // Rows are built on loader threads and DecimalFormat is not thread safe
+    private static String formatPrice(double price) {
+        synchronized (PRICE_FORMAT) {
+            if (price >= 1000000000) {
+                return PRICE_FORMAT.format(price / 1000000000) + "B";
+            } else if (price >= 1000000) {
+                return PRICE_FORMAT.format(price / 1000000) + "M";
+            } else if (price >= 1000) {
+                return PRICE_FORMAT.format(price / 1000) + "K";
+            }
+            return PRICE_FORMAT.format(price);
+        }
+    }
+    
+    private static String formatVolume(double volume) {
+        synchronized (VOLUME_FORMAT) {
+            return VOLUME_FORMAT.format(volume);
         }
-        return PRICE_FORMAT.format(price);
     }
     
     @Override
@@ -866,15 +1011,17 @@ public class GuiBazaar extends GuiScreen {
             int y = panelY + 25;
             int itemHeight = 24;
             
-            for (BazaarCategory cat : categories) {
+            BazaarView v = view.get();
+            for (BazaarCategory cat : v.categories) {
                 if (mouseX >= x && mouseX < x + categoryWidth && mouseY >= y && mouseY < y + itemHeight) {
                     if (!cat.id.equals(selectedCategory)) {
                         selectedCategory = cat.id;
                         selectedSection = null;
-                        sections.clear();
-                        items.clear();
-                        scrollOffset = 0;
-                        sectionScrollOffset = 0;
+                        view.updateAndGet(current -> current
+                                .withSections(Collections.<BazaarSection>emptyList())
+                                .withItems(Collections.<BazaarItem>emptyList()));
+                        itemList.scrollToTop();
+                        sectionList.scrollToTop();
                         showSearch = false;
                         loadSections(cat.id);
                     }
@@ -885,22 +1032,15 @@ public class GuiBazaar extends GuiScreen {
             
             // Check section clicks (if not in search mode)
             if (selectedCategory != null && !showSearch) {
-                x = panelX + categoryWidth + 5;
-                y = panelY + 25;
-                itemHeight = 22;
-                
-                for (int i = sectionScrollOffset; i < sections.size() && y < panelY + panelHeight - itemHeight; i++) {
-                    BazaarSection section = sections.get(i);
-                    if (mouseX >= x && mouseX < x + sectionWidth && mouseY >= y && mouseY < y + itemHeight) {
-                        if (!section.id.equals(selectedSection)) {
-                            selectedSection = section.id;
-                            items.clear();
-                            scrollOffset = 0;
-                            loadItems(selectedCategory, section.id);
-                        }
-                        return;
+                int index = sectionList.rowAt(mouseX, mouseY);
+                if (index >= 0) {
+                    BazaarSection section = sectionList.getRow(index);
+                    if (!section.id.equals(selectedSection)) {
+                        selectedSection = section.id;
+                        view.updateAndGet(current -> current.withItems(Collections.<BazaarItem>emptyList()));
+                        itemList.scrollToTop();
+                        loadItems(selectedCategory, section.id);
                     }
-                    y += itemHeight;
                 }
             }
         }
@@ -909,9 +1049,10 @@ public class GuiBazaar extends GuiScreen {
     @Override
     protected void keyTyped(char typedChar, int keyCode) throws IOException {
         if (searchField.isFocused()) {
+            String before = searchField.getText();
             searchField.textboxKeyTyped(typedChar, keyCode);
             
-            if (keyCode == Keyboard.KEY_RETURN) {
+            if (keyCode == Keyboard.KEY_RETURN || !searchField.getText().equals(before)) {
                 performSearch();
             }
         } else if (keyCode == Keyboard.KEY_ESCAPE) {
@@ -928,26 +1069,10 @@ public class GuiBazaar extends GuiScreen {
         
         int scroll = Mouse.getEventDWheel();
         if (scroll != 0) {
-            // Check if mouse is over sections panel
-            int sectionPanelX = panelX + categoryWidth + 5;
-            boolean overSections = selectedCategory != null && !showSearch && 
-                mouseX >= sectionPanelX && mouseX < sectionPanelX + sectionWidth &&
-                mouseY >= panelY && mouseY < panelY + panelHeight;
-            
-            if (overSections) {
-                // Scroll sections
-                if (scroll > 0) {
-                    sectionScrollOffset = Math.max(0, sectionScrollOffset - 1);
-                } else {
-                    sectionScrollOffset = Math.min(maxSectionScroll, sectionScrollOffset + 1);
-                }
-            } else {
-                // Scroll items/search results
-                if (scroll > 0) {
-                    scrollOffset = Math.max(0, scrollOffset - 1);
-                } else {
-                    scrollOffset = Math.min(maxScroll, scrollOffset + 1);
-                }
+            if (showSearch) {
+                searchList.handleWheel(mouseX, mouseY, scroll);
+            } else if (selectedCategory != null && !sectionList.handleWheel(mouseX, mouseY, scroll)) {
+                itemList.handleWheel(mouseX, mouseY, scroll);
             }
         }
     }
@@ -965,212 +1090,300 @@ public class GuiBazaar extends GuiScreen {
         String query = searchField.getText().trim();
         if (query.length() >= 2) {
             showSearch = true;
-            searchResults.clear();
-            scrollOffset = 0;
+            searchList.scrollToTop();
             searchItems(query);
+        } else if (query.isEmpty()) {
+            showSearch = false;
+            pendingQuery = null;
+            searchList.scrollToTop();
         }
     }
     
     // API Methods
     
     private void loadCategories() {
-        isLoading = true;
-        statusMessage = "Loading categories...";
+        view.updateAndGet(v -> v.withStatus("Loading categories...", true));
         
-        executor.submit(() -> {
-            try {
-                String response = httpGet(BAZAAR_API_URL + "/bazaar/categories");
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        BazaarCatalogueCache.load(BAZAAR_API_URL + "/bazaar/categories", BazaarCatalogueCache.CATEGORY_TTL, response -> {
+            JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+            
+            if (json.get("success").getAsBoolean()) {
+                List<BazaarCategory> loaded = new ArrayList<>();
+                JsonArray catArray = json.getAsJsonArray("categories");
                 
-                if (json.get("success").getAsBoolean()) {
-                    categories.clear();
-                    JsonArray catArray = json.getAsJsonArray("categories");
-                    
-                    for (JsonElement elem : catArray) {
-                        JsonObject catObj = elem.getAsJsonObject();
-                        BazaarCategory cat = new BazaarCategory();
-                        cat.id = catObj.get("id").getAsString();
-                        cat.name = catObj.get("name").getAsString();
-                        cat.icon = catObj.get("icon").getAsString();
-                        cat.color = catObj.get("color").getAsInt();
-                        cat.sectionCount = catObj.get("sectionCount").getAsInt();
-                        categories.add(cat);
-                    }
-                    
-                    isLoading = false;
+                for (JsonElement elem : catArray) {
+                    JsonObject catObj = elem.getAsJsonObject();
+                    loaded.add(new BazaarCategory(
+                            catObj.get("id").getAsString(),
+                            catObj.get("name").getAsString(),
+                            catObj.get("icon").getAsString(),
+                            catObj.get("color").getAsInt(),
+                            catObj.get("sectionCount").getAsInt()));
+                }
+                
+                view.updateAndGet(v -> v.withCategories(loaded).idle());
+                
+                // There are only a handful of categories, so have every section list ready
+                for (BazaarCategory cat : loaded) {
+                    BazaarCatalogueCache.prefetch(sectionsUrl(cat.id), BazaarCatalogueCache.SECTION_TTL);
                 }
-            } catch (Exception e) {
-                statusMessage = "Error loading categories: " + e.getMessage();
-                System.err.println("[Bazaar] Error loading categories: " + e.getMessage());
             }
+        }, e -> {
+            view.updateAndGet(v -> v.withStatus("Error loading categories: " + e.getMessage(), v.loading));
+            System.err.println("[Bazaar] Error loading categories: " + e.getMessage());
         });
     }
     
     private void loadSections(String categoryId) {
-        isLoading = true;
-        statusMessage = "Loading sections...";
+        view.updateAndGet(v -> v.withStatus("Loading sections...", true));
         
-        executor.submit(() -> {
-            try {
-                String response = httpGet(BAZAAR_API_URL + "/bazaar/sections?category=" + URLEncoder.encode(categoryId, "UTF-8"));
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        BazaarCatalogueCache.load(sectionsUrl(categoryId), BazaarCatalogueCache.SECTION_TTL, response -> {
+            // A late answer for a category the user already left
+            if (!categoryId.equals(selectedCategory)) return;
+            JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+            
+            if (json.get("success").getAsBoolean()) {
+                List<BazaarSection> loaded = new ArrayList<>();
+                JsonArray sectionArray = json.getAsJsonArray("sections");
                 
-                if (json.get("success").getAsBoolean()) {
-                    sections.clear();
-                    JsonArray sectionArray = json.getAsJsonArray("sections");
-                    
-                    for (JsonElement elem : sectionArray) {
-                        JsonObject secObj = elem.getAsJsonObject();
-                        BazaarSection section = new BazaarSection();
-                        section.id = secObj.get("id").getAsString();
-                        section.name = secObj.get("name").getAsString();
-                        section.itemCount = secObj.get("itemCount").getAsInt();
-                        sections.add(section);
-                    }
-                    
-                    isLoading = false;
+                for (JsonElement elem : sectionArray) {
+                    JsonObject secObj = elem.getAsJsonObject();
+                    loaded.add(new BazaarSection(
+                            secObj.get("id").getAsString(),
+                            secObj.get("name").getAsString(),
+                            secObj.get("itemCount").getAsInt()));
+                }
+                
+                // Checked again inside the update so a click in between can't be overwritten
+                view.updateAndGet(v -> categoryId.equals(selectedCategory)
+                        ? v.withSections(loaded).idle() : v);
+                
+                // The first sections are the likeliest next click
+                for (int i = 0; i < Math.min(2, loaded.size()); i++) {
+                    BazaarCatalogueCache.prefetch(itemsUrl(categoryId, loaded.get(i).id), BazaarCatalogueCache.ITEM_TTL);
                 }
-            } catch (Exception e) {
-                statusMessage = "Error loading sections: " + e.getMessage();
-                System.err.println("[Bazaar] Error loading sections: " + e.getMessage());
             }
+        }, e -> {
+            view.updateAndGet(v -> v.withStatus("Error loading sections: " + e.getMessage(), v.loading));
+            System.err.println("[Bazaar] Error loading sections: " + e.getMessage());
         });
     }
     
     private void loadItems(String categoryId, String sectionId) {
-        isLoading = true;
-        statusMessage = "Loading items...";
+        view.updateAndGet(v -> v.withStatus("Loading items...", true));
+        prefetchNeighbours(categoryId, sectionId);
         
-        executor.submit(() -> {
-            try {
-                String url = BAZAAR_API_URL + "/bazaar/items?category=" + URLEncoder.encode(categoryId, "UTF-8") 
-                           + "&section=" + URLEncoder.encode(sectionId, "UTF-8");
-                String response = httpGet(url);
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        BazaarCatalogueCache.load(itemsUrl(categoryId, sectionId), BazaarCatalogueCache.ITEM_TTL, response -> {
+            if (!sectionId.equals(selectedSection)) return;
+            JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+            
+            if (json.get("success").getAsBoolean()) {
+                List<BazaarItem> loaded = new ArrayList<>();
+                JsonArray itemArray = json.getAsJsonArray("items");
                 
-                if (json.get("success").getAsBoolean()) {
-                    items.clear();
-                    JsonArray itemArray = json.getAsJsonArray("items");
-                    
-                    for (JsonElement elem : itemArray) {
-                        JsonObject itemObj = elem.getAsJsonObject();
-                        BazaarItem item = new BazaarItem();
-                        item.productId = itemObj.get("productId").getAsString();
-                        item.displayName = getDisplayName(item.productId);
-                        item.buyPrice = itemObj.get("buyPrice").getAsDouble();
-                        item.sellPrice = itemObj.get("sellPrice").getAsDouble();
-                        item.buyVolume = itemObj.get("buyVolume").getAsLong();
-                        item.sellVolume = itemObj.get("sellVolume").getAsLong();
-                        item.unavailable = itemObj.has("unavailable") && itemObj.get("unavailable").getAsBoolean();
-                        items.add(item);
-                    }
-                    
-                    isLoading = false;
+                for (JsonElement elem : itemArray) {
+                    JsonObject itemObj = elem.getAsJsonObject();
+                    String productId = itemObj.get("productId").getAsString();
+                    loaded.add(new BazaarItem(
+                            productId,
+                            getDisplayName(productId),
+                            itemObj.get("buyPrice").getAsDouble(),
+                            itemObj.get("sellPrice").getAsDouble(),
+                            itemObj.get("buyVolume").getAsLong(),
+                            itemObj.get("sellVolume").getAsLong(),
+                            null, null,
+                            itemObj.has("unavailable") && itemObj.get("unavailable").getAsBoolean(),
+                            true));
                 }
-            } catch (Exception e) {
-                statusMessage = "Error loading items: " + e.getMessage();
-                System.err.println("[Bazaar] Error loading items: " + e.getMessage());
+                
+                view.updateAndGet(v -> sectionId.equals(selectedSection)
+                        ? v.withItems(loaded).idle() : v);
+                rememberPaths(categoryId, sectionId, loaded);
             }
+        }, e -> {
+            view.updateAndGet(v -> v.withStatus("Error loading items: " + e.getMessage(), v.loading));
+            System.err.println("[Bazaar] Error loading items: " + e.getMessage());
         });
     }
     
-    private void loadItemDetail(String productId) {
-        executor.submit(() -> {
-            try {
-                String url = BAZAAR_API_URL + "/bazaar/item?id=" + URLEncoder.encode(productId, "UTF-8");
-                String response = httpGet(url);
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
-                
-                if (json.get("success").getAsBoolean()) {
-                    JsonObject itemObj = json.getAsJsonObject("item");
-                    JsonObject current = itemObj.getAsJsonObject("current");
-                    JsonObject history = itemObj.getAsJsonObject("history");
-                    
-                    BazaarItemDetail detail = new BazaarItemDetail();
-                    detail.productId = itemObj.get("productId").getAsString();
-                    detail.displayName = itemObj.get("displayName").getAsString();
-                    detail.buyPrice = current.get("buyPrice").getAsDouble();
-                    detail.sellPrice = current.get("sellPrice").getAsDouble();
-                    detail.buyVolume = current.get("buyVolume").getAsLong();
-                    detail.sellVolume = current.get("sellVolume").getAsLong();
-                    detail.buyOrders = current.get("buyOrders").getAsLong();
-                    detail.sellOrders = current.get("sellOrders").getAsLong();
-                    
-                    // Parse history
-                    if (!history.get("oneHour").isJsonNull()) {
-                        JsonObject h = history.getAsJsonObject("oneHour");
-                        detail.buyPrice1h = h.get("buyPrice").getAsDouble();
-                        detail.sellPrice1h = h.get("sellPrice").getAsDouble();
-                    }
-                    if (!history.get("oneDay").isJsonNull()) {
-                        JsonObject h = history.getAsJsonObject("oneDay");
-                        detail.buyPrice1d = h.get("buyPrice").getAsDouble();
-                        detail.sellPrice1d = h.get("sellPrice").getAsDouble();
-                    }
-                    if (!history.get("sevenDays").isJsonNull()) {
-                        JsonObject h = history.getAsJsonObject("sevenDays");
-                        detail.buyPrice7d = h.get("buyPrice").getAsDouble();
-                        detail.sellPrice7d = h.get("sellPrice").getAsDouble();
-                    }
-                    
-                    hoveredItemDetail = detail;
-                }
-            } catch (Exception e) {
-                System.err.println("[Bazaar] Error loading item detail: " + e.getMessage());
+    // Sections either side of the one opened
+    private void prefetchNeighbours(String categoryId, String sectionId) {
+        List<BazaarSection> current = view.get().sections;
+        for (int i = 0; i < current.size(); i++) {
+            if (!current.get(i).id.equals(sectionId)) continue;
+            if (i > 0) {
+                BazaarCatalogueCache.prefetch(itemsUrl(categoryId, current.get(i - 1).id), BazaarCatalogueCache.ITEM_TTL);
             }
-        });
+            if (i + 1 < current.size()) {
+                BazaarCatalogueCache.prefetch(itemsUrl(categoryId, current.get(i + 1).id), BazaarCatalogueCache.ITEM_TTL);
+            }
+            return;
+        }
+    }
+    
+    private static String sectionsUrl(String categoryId) {
+        return BAZAAR_API_URL + "/bazaar/sections?category=" + encode(categoryId);
     }
     
+    private static String itemsUrl(String categoryId, String sectionId) {
+        return BAZAAR_API_URL + "/bazaar/items?category=" + encode(categoryId) + "&section=" + encode(sectionId);
+    }
+    
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // One product's detail for the tooltip, called on the loader's thread
+    private static BazaarItemDetail fetchItemDetail(String productId) throws IOException {
+        String url = BAZAAR_API_URL + "/bazaar/item?id=" + URLEncoder.encode(productId, "UTF-8");
+        String response = httpGet(url);
+        JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+        
+        if (json.get("success").getAsBoolean()) {
+            JsonObject itemObj = json.getAsJsonObject("item");
+            JsonObject current = itemObj.getAsJsonObject("current");
+            JsonObject history = itemObj.getAsJsonObject("history");
+            
+            BazaarItemDetail detail = new BazaarItemDetail();
+            detail.productId = itemObj.get("productId").getAsString();
+            detail.displayName = itemObj.get("displayName").getAsString();
+            detail.buyPrice = current.get("buyPrice").getAsDouble();
+            detail.sellPrice = current.get("sellPrice").getAsDouble();
+            detail.buyVolume = current.get("buyVolume").getAsLong();
+            detail.sellVolume = current.get("sellVolume").getAsLong();
+            detail.buyOrders = current.get("buyOrders").getAsLong();
+            detail.sellOrders = current.get("sellOrders").getAsLong();
+            
+            // Parse history
+            if (!history.get("oneHour").isJsonNull()) {
+                JsonObject h = history.getAsJsonObject("oneHour");
+                detail.buyPrice1h = h.get("buyPrice").getAsDouble();
+                detail.sellPrice1h = h.get("sellPrice").getAsDouble();
+            }
+            if (!history.get("oneDay").isJsonNull()) {
+                JsonObject h = history.getAsJsonObject("oneDay");
+                detail.buyPrice1d = h.get("buyPrice").getAsDouble();
+                detail.sellPrice1d = h.get("sellPrice").getAsDouble();
+            }
+            if (!history.get("sevenDays").isJsonNull()) {
+                JsonObject h = history.getAsJsonObject("sevenDays");
+                detail.buyPrice7d = h.get("buyPrice").getAsDouble();
+                detail.sellPrice7d = h.get("sellPrice").getAsDouble();
+            }
+            
+            return detail;
+        }
+        return null;
+    }
+    
+    /**
+     * Search the product names. Until the index is built on the executor the
+     * results show as indexing, and the query runs again once it is ready.
+     */
     private void searchItems(String query) {
-        isLoading = true;
-        statusMessage = "Searching...";
+        BazaarSearchIndex index = searchIndex;
+        if (index == null) {
+            pendingQuery = query;
+            view.updateAndGet(v -> v.withSearchResults(Collections.emptyList()));
+            return;
+        }
+        List<BazaarSearchIndex.Result> matches = index.search(query, MAX_SEARCH_RESULTS);
+        
+        Map<String, com.raven.client.features.Stockholder.BazaarItem> prices = searchPrices;
+        List<BazaarItem> results = new ArrayList<>(matches.size());
+        for (BazaarSearchIndex.Result match : matches) {
+            results.add(searchRow(match.productId, match.displayName, prices));
+        }
+        view.updateAndGet(v -> v.withSearchResults(results).idle());
+        
+        if (System.currentTimeMillis() - searchPricesAt > SEARCH_PRICE_TTL) {
+            loadSearchPrices();
+        }
+    }
+    
+    // Only called on the executor; synchronized so two screens never build it twice
+    private static synchronized void buildSearchIndex() {
+        if (searchIndex == null) {
+            searchIndex = BazaarSearchIndex.load(DISPLAY_NAMES.keySet(), GuiBazaar::getDisplayName);
+        }
+    }
+    
+    // A search row, priced if prices have loaded
+    private static BazaarItem searchRow(String productId, String displayName,
+                                        Map<String, com.raven.client.features.Stockholder.BazaarItem> prices) {
+        String category = null;
+        String section = null;
+        String path = KNOWN_PATHS.get(productId);
+        if (path != null) {
+            int split = path.indexOf(" > ");
+            category = path.substring(0, split);
+            section = path.substring(split + 3);
+        }
+        
+        if (prices == null) {
+            return new BazaarItem(productId, displayName, 0, 0, 0, 0, category, section, false, false);
+        }
+        com.raven.client.features.Stockholder.BazaarItem price = prices.get(productId);
+        if (price == null) {
+            return new BazaarItem(productId, displayName, 0, 0, 0, 0, category, section, true, true);
+        }
+        return new BazaarItem(productId, displayName, price.buyPrice, price.sellPrice,
+                (long) price.buyVolume, (long) price.sellVolume, category, section, false, true);
+    }
+    
+    // One request for every product's quick status; order books are skipped while parsing
+    private void loadSearchPrices() {
+        if (searchPricesLoading) return;
+        searchPricesLoading = true;
         
         executor.submit(() -> {
             try {
-                String url = BAZAAR_API_URL + "/bazaar/search?q=" + URLEncoder.encode(query, "UTF-8");
-                String response = httpGet(url);
-                JsonObject json = new JsonParser().parse(response).getAsJsonObject();
-                
-                if (json.get("success").getAsBoolean()) {
-                    searchResults.clear();
-                    JsonArray resultArray = json.getAsJsonArray("results");
-                    
-                    for (JsonElement elem : resultArray) {
-                        JsonObject itemObj = elem.getAsJsonObject();
-                        BazaarItem item = new BazaarItem();
-                        item.productId = itemObj.get("productId").getAsString();
-                        item.displayName = getDisplayName(item.productId);
-                        item.buyPrice = itemObj.get("buyPrice").getAsDouble();
-                        item.sellPrice = itemObj.get("sellPrice").getAsDouble();
-                        item.category = itemObj.get("category").getAsString();
-                        item.section = itemObj.get("section").getAsString();
-                        searchResults.add(item);
+                BazaarResponseParser.Result result = BazaarFetcher.stream(HYPIXEL_BAZAAR_URL, false, in -> {
+                    try (Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                        return BazaarResponseParser.parse(reader, null, 0);
                     }
-                    
-                    isLoading = false;
+                });
+                if (result != null && result.items != null) {
+                    Map<String, com.raven.client.features.Stockholder.BazaarItem> prices = result.items;
+                    searchPrices = prices;
+                    searchPricesAt = System.currentTimeMillis();
+                    view.updateAndGet(v -> {
+                        List<BazaarItem> priced = new ArrayList<>(v.searchResults.size());
+                        for (BazaarItem row : v.searchResults) {
+                            priced.add(searchRow(row.productId, row.displayName, prices));
+                        }
+                        return v.withSearchResults(priced);
+                    });
                 }
             } catch (Exception e) {
-                statusMessage = "Error searching: " + e.getMessage();
-                System.err.println("[Bazaar] Error searching: " + e.getMessage());
+                view.updateAndGet(v -> v.withStatus("Error loading prices: " + e.getMessage(), v.loading));
+                System.err.println("[Bazaar] Error loading search prices: " + e.getMessage());
+            } finally {
+                searchPricesLoading = false;
             }
         });
     }
     
-    private String httpGet(String urlStr) throws IOException {
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(5000);
-        
-        BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            response.append(line);
+    private void rememberPaths(String categoryId, String sectionId, List<BazaarItem> loaded) {
+        BazaarView v = view.get();
+        String categoryName = categoryId;
+        for (BazaarCategory cat : v.categories) {
+            if (cat.id.equals(categoryId)) categoryName = cat.name;
         }
-        reader.close();
-        
-        return response.toString();
+        String sectionName = sectionId;
+        for (BazaarSection section : v.sections) {
+            if (section.id.equals(sectionId)) sectionName = section.name;
+        }
+        for (BazaarItem item : loaded) {
+            KNOWN_PATHS.put(item.productId, categoryName + " > " + sectionName);
+        }
+    }
+    
+    private static String httpGet(String urlStr) throws IOException {
+        return BazaarFetcher.get(urlStr).text();
     }
 }
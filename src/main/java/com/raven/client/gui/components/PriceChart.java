@@ -0,0 +1,440 @@
+package com.raven.client.gui.components;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.FontRenderer;
+import net.minecraft.client.gui.ScaledResolution;
+import net.minecraft.client.renderer.GLAllocation;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import org.lwjgl.opengl.GL11;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Time series chart with line and candlestick modes, mouse wheel zoom, drag
+ * to pan and a crosshair readout.
+ *
+ * The series are drawn into a display list that is only rebuilt when the
+ * data or the visible range changes, and replayed every frame. Lines are
+ * decimated to the min and max of each pixel column and candles narrower
+ * than two pixels are merged per column, so the list stays a few thousand
+ * vertices no matter how many points are loaded.
+ */
+public class PriceChart {
+
+    private static final int UP_COLOR = 0xFF55FF55;
+    private static final int DOWN_COLOR = 0xFFFF5555;
+    private static final long MIN_SPAN = 10 * 60 * 1000L;
+
+    private int x, y, width, height;
+
+    // Line mode: shared timestamps, one value array per line
+    private long[] times = new long[0];
+    private double[][] lines = new double[0][];
+    private int[] lineColors = new int[0];
+
+    // Candle mode
+    private boolean candleMode = false;
+    private long candlePeriod;
+    private double[] open, high, low, close;
+
+    // Visible range
+    private long viewStart, viewEnd;
+    private double minValue, maxValue;
+
+    private int displayList = -1;
+    private boolean dirty = true;
+
+    private boolean dragging = false;
+    private int dragX;
+    private long dragViewStart;
+
+    // Labels are formatted on rebuild or when the hovered point changes, not per frame
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm");
+    private String maxLabel = "", minLabel = "", startLabel = "", endLabel = "";
+    private int hoverIndex = -1;
+    private String hoverLabel = "";
+
+    public PriceChart(int x, int y, int width, int height) {
+        setBounds(x, y, width, height);
+    }
+
+    public void setBounds(int x, int y, int width, int height) {
+        if (width != this.width || height != this.height) {
+            dirty = true;
+        }
+        this.x = x;
+        this.y = y;
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+    }
+
+    /**
+     * Show one or more lines sharing the same timestamps, oldest first
+     */
+    public void setLines(long[] times, double[][] values, int[] colors) {
+        this.times = times;
+        this.lines = values;
+        this.lineColors = colors;
+        candleMode = false;
+        resetView();
+    }
+
+    /**
+     * Show candles, each covering [start, start + period)
+     */
+    public void setCandles(long[] starts, long period, double[] open, double[] high, double[] low, double[] close) {
+        this.times = starts;
+        this.candlePeriod = period;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        candleMode = true;
+        resetView();
+    }
+
+    /**
+     * Zoom out to the whole series
+     */
+    public void resetView() {
+        if (times.length == 0) {
+            viewStart = 0;
+            viewEnd = 1;
+        } else {
+            viewStart = times[0];
+            viewEnd = Math.max(times[times.length - 1] + (candleMode ? candlePeriod : 0), viewStart + MIN_SPAN);
+        }
+        dirty = true;
+    }
+
+    public void draw(int mouseX, int mouseY, FontRenderer font) {
+        RenderUtils.drawBox(x, y, x + width, y + height, 0xAA000000, 0xFF444444, 1);
+        if (times.length == 0) {
+            font.drawString("No data yet", x + 4, y + 4, 0x888888);
+            return;
+        }
+
+        if (dirty) {
+            rebuild();
+        }
+
+        if (displayList >= 0) {
+            ScaledResolution sr = new ScaledResolution(Minecraft.getMinecraft());
+            int scale = sr.getScaleFactor();
+            GL11.glEnable(GL11.GL_SCISSOR_TEST);
+            GL11.glScissor(x * scale, (sr.getScaledHeight() - y - height) * scale, width * scale, height * scale);
+            GlStateManager.pushMatrix();
+            GlStateManager.translate(x, y, 0);
+            GlStateManager.disableTexture2D();
+            GlStateManager.enableBlend();
+            GlStateManager.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+            GlStateManager.callList(displayList);
+            GlStateManager.disableBlend();
+            GlStateManager.enableTexture2D();
+            GlStateManager.popMatrix();
+            GL11.glDisable(GL11.GL_SCISSOR_TEST);
+            GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+        }
+
+        font.drawString(maxLabel, x + 3, y + 3, 0xAAAAAA);
+        font.drawString(minLabel, x + 3, y + height - 11, 0xAAAAAA);
+        font.drawString(startLabel, x, y + height + 3, 0x888888);
+        font.drawString(endLabel, x + width - font.getStringWidth(endLabel), y + height + 3, 0x888888);
+
+        if (isInside(mouseX, mouseY)) {
+            drawCrosshair(mouseX, mouseY, font);
+        }
+    }
+
+    /**
+     * Zoom around the cursor
+     *
+     * @param wheel Mouse wheel delta, positive zooms in
+     */
+    public boolean handleWheel(int mouseX, int mouseY, int wheel) {
+        if (wheel == 0 || !isInside(mouseX, mouseY) || times.length == 0) return false;
+
+        long span = viewEnd - viewStart;
+        long anchor = xToTime(mouseX - x);
+        long newSpan = Math.max(MIN_SPAN, wheel > 0 ? span * 4 / 5 : span * 5 / 4);
+        double ratio = (anchor - viewStart) / (double) span;
+
+        viewStart = anchor - (long) (newSpan * ratio);
+        viewEnd = viewStart + newSpan;
+        clampView();
+        return true;
+    }
+
+    public boolean mousePressed(int mouseX, int mouseY) {
+        if (!isInside(mouseX, mouseY)) return false;
+        dragging = true;
+        dragX = mouseX;
+        dragViewStart = viewStart;
+        return true;
+    }
+
+    public void mouseDragged(int mouseX) {
+        if (!dragging) return;
+        long span = viewEnd - viewStart;
+        viewStart = dragViewStart - (long) ((mouseX - dragX) / (double) width * span);
+        viewEnd = viewStart + span;
+        clampView();
+    }
+
+    public void mouseReleased() {
+        dragging = false;
+    }
+
+    /**
+     * Release the display list, call when the screen closes
+     */
+    public void free() {
+        if (displayList >= 0) {
+            GLAllocation.deleteDisplayLists(displayList);
+            displayList = -1;
+        }
+        dirty = true;
+    }
+
+    private boolean isInside(int mouseX, int mouseY) {
+        return mouseX >= x && mouseX < x + width && mouseY >= y && mouseY < y + height;
+    }
+
+    private void clampView() {
+        long span = viewEnd - viewStart;
+        long first = times[0];
+        long last = Math.max(times[times.length - 1] + (candleMode ? candlePeriod : 0), first + MIN_SPAN);
+        if (span >= last - first) {
+            viewStart = first;
+            viewEnd = last;
+        } else if (viewStart < first) {
+            viewStart = first;
+            viewEnd = first + span;
+        } else if (viewEnd > last) {
+            viewEnd = last;
+            viewStart = last - span;
+        }
+        hoverIndex = -1;
+        dirty = true;
+    }
+
+    private void rebuild() {
+        dirty = false;
+
+        // One point either side so lines run off the edges instead of stopping short
+        int from = Math.max(0, lowerBound(viewStart - (candleMode ? candlePeriod : 0)) - 1);
+        int to = Math.min(times.length, lowerBound(viewEnd) + 1);
+
+        minValue = Double.MAX_VALUE;
+        maxValue = -Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            if (candleMode) {
+                minValue = Math.min(minValue, low[i]);
+                maxValue = Math.max(maxValue, high[i]);
+            } else {
+                for (double[] line : lines) {
+                    minValue = Math.min(minValue, line[i]);
+                    maxValue = Math.max(maxValue, line[i]);
+                }
+            }
+        }
+        if (minValue > maxValue) {
+            minValue = 0;
+            maxValue = 1;
+        }
+        double padding = Math.max((maxValue - minValue) * 0.05, Math.abs(maxValue) * 0.001 + 0.01);
+        minValue -= padding;
+        maxValue += padding;
+
+        maxLabel = formatValue(maxValue);
+        minLabel = formatValue(minValue);
+        startLabel = timeFormat.format(new Date(viewStart));
+        endLabel = timeFormat.format(new Date(viewEnd));
+
+        if (displayList < 0) {
+            displayList = GLAllocation.generateDisplayLists(1);
+        }
+        // Geometry only: state changes recorded here would bypass GlStateManager's
+        // cache, so draw() sets the state around callList instead
+        GL11.glNewList(displayList, GL11.GL_COMPILE);
+        if (candleMode) {
+            buildCandles(from, to);
+        } else {
+            for (int l = 0; l < lines.length; l++) {
+                buildLine(lines[l], lineColors[l], from, to);
+            }
+        }
+        GL11.glEndList();
+    }
+
+    /**
+     * Line strip through the first, lowest, highest and last value of each
+     * pixel column the points fall in
+     */
+    private void buildLine(double[] values, int color, int from, int to) {
+        Tessellator tessellator = Tessellator.getInstance();
+        WorldRenderer renderer = tessellator.getWorldRenderer();
+        renderer.begin(GL11.GL_LINE_STRIP, DefaultVertexFormats.POSITION_COLOR);
+
+        int column = Integer.MIN_VALUE;
+        double first = 0, min = 0, max = 0, last = 0;
+        for (int i = from; i < to; i++) {
+            int px = (int) timeToX(times[i]);
+            double value = values[i];
+            if (px != column) {
+                if (column != Integer.MIN_VALUE) {
+                    addColumn(renderer, column, first, min, max, last, color);
+                }
+                column = px;
+                first = min = max = last = value;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                last = value;
+            }
+        }
+        if (column != Integer.MIN_VALUE) {
+            addColumn(renderer, column, first, min, max, last, color);
+        }
+        tessellator.draw();
+    }
+
+    private void addColumn(WorldRenderer renderer, int column, double first, double min, double max, double last, int color) {
+        vertex(renderer, column, valueToY(first), color);
+        if (min != max) {
+            // Visit the extremes in the order that keeps the strip monotone
+            boolean falling = last < first;
+            vertex(renderer, column, valueToY(falling ? max : min), color);
+            vertex(renderer, column, valueToY(falling ? min : max), color);
+        }
+        vertex(renderer, column, valueToY(last), color);
+    }
+
+    private void buildCandles(int from, int to) {
+        Tessellator tessellator = Tessellator.getInstance();
+        WorldRenderer renderer = tessellator.getWorldRenderer();
+        double candleWidth = candlePeriod / (double) (viewEnd - viewStart) * width;
+
+        // Wicks, merging candles that share a pixel column
+        renderer.begin(GL11.GL_LINES, DefaultVertexFormats.POSITION_COLOR);
+        int column = Integer.MIN_VALUE;
+        double o = 0, h = 0, l = 0, c = 0;
+        for (int i = from; i < to; i++) {
+            int px = (int) (timeToX(times[i]) + candleWidth / 2);
+            if (px != column || candleWidth >= 2) {
+                if (column != Integer.MIN_VALUE) {
+                    addWick(renderer, column, o, h, l, c);
+                }
+                column = px;
+                o = open[i];
+                h = high[i];
+                l = low[i];
+            } else {
+                h = Math.max(h, high[i]);
+                l = Math.min(l, low[i]);
+            }
+            c = close[i];
+        }
+        if (column != Integer.MIN_VALUE) {
+            addWick(renderer, column, o, h, l, c);
+        }
+        tessellator.draw();
+
+        if (candleWidth < 2) return;
+
+        // Bodies
+        double bodyWidth = Math.max(1, candleWidth * 0.7);
+        renderer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
+        for (int i = from; i < to; i++) {
+            double center = timeToX(times[i]) + candleWidth / 2;
+            double left = center - bodyWidth / 2;
+            double right = center + bodyWidth / 2;
+            double top = valueToY(Math.max(open[i], close[i]));
+            double bottom = Math.max(top + 1, valueToY(Math.min(open[i], close[i])));
+            int color = close[i] >= open[i] ? UP_COLOR : DOWN_COLOR;
+
+            vertex(renderer, left, bottom, color);
+            vertex(renderer, right, bottom, color);
+            vertex(renderer, right, top, color);
+            vertex(renderer, left, top, color);
+        }
+        tessellator.draw();
+    }
+
+    private void addWick(WorldRenderer renderer, int column, double o, double h, double l, double c) {
+        int color = c >= o ? UP_COLOR : DOWN_COLOR;
+        vertex(renderer, column + 0.5, valueToY(h), color);
+        vertex(renderer, column + 0.5, valueToY(l), color);
+    }
+
+    private static void vertex(WorldRenderer renderer, double px, double py, int color) {
+        renderer.pos(px, py, 0).color(color >> 16 & 255, color >> 8 & 255, color & 255, color >> 24 & 255).endVertex();
+    }
+
+    private void drawCrosshair(int mouseX, int mouseY, FontRenderer font) {
+        RenderUtils.drawRect(mouseX, y, mouseX + 1, y + height, 0x66FFFFFF);
+        RenderUtils.drawRect(x, mouseY, x + width, mouseY + 1, 0x66FFFFFF);
+
+        long time = xToTime(mouseX - x);
+        int index = candleMode
+            ? Math.max(0, lowerBound(time + 1) - 1)
+            : nearest(time);
+        if (index != hoverIndex) {
+            hoverIndex = index;
+            hoverLabel = formatPoint(index);
+        }
+
+        int labelWidth = font.getStringWidth(hoverLabel);
+        int labelX = Math.min(mouseX + 6, x + width - labelWidth - 4);
+        RenderUtils.drawRect(labelX - 2, y + 2, labelX + labelWidth + 2, y + 13, 0xCC000000);
+        font.drawString(hoverLabel, labelX, y + 4, 0xFFFFFF);
+    }
+
+    private String formatPoint(int index) {
+        StringBuilder label = new StringBuilder(timeFormat.format(new Date(times[index])));
+        if (candleMode) {
+            label.append("  O ").append(formatValue(open[index]))
+                .append(" H ").append(formatValue(high[index]))
+                .append(" L ").append(formatValue(low[index]))
+                .append(" C ").append(formatValue(close[index]));
+        } else {
+            for (double[] line : lines) {
+                label.append("  ").append(formatValue(line[index]));
+            }
+        }
+        return label.toString();
+    }
+
+    private static String formatValue(double value) {
+        return String.format("%,.1f", value);
+    }
+
+    private double timeToX(long time) {
+        return (time - viewStart) / (double) (viewEnd - viewStart) * width;
+    }
+
+    private long xToTime(int px) {
+        return viewStart + (long) (px / (double) width * (viewEnd - viewStart));
+    }
+
+    private double valueToY(double value) {
+        return height - (value - minValue) / (maxValue - minValue) * height;
+    }
+
+    private int lowerBound(long time) {
+        int index = Arrays.binarySearch(times, time);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private int nearest(long time) {
+        int index = lowerBound(time);
+        if (index >= times.length) return times.length - 1;
+        if (index > 0 && time - times[index - 1] < times[index] - time) return index - 1;
+        return index;
+    }
+}
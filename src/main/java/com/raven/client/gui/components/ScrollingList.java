@@ -0,0 +1,252 @@
+package com.raven.client.gui.components;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.ScaledResolution;
+import net.minecraft.client.renderer.GlStateManager;
+import org.lwjgl.opengl.GL11;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Vertical list of fixed-height rows that only draws the rows on screen.
+ *
+ * The visible range comes straight from the scroll position, so a list of
+ * thousands of rows costs the same per frame as one of ten. Work that only
+ * depends on a row and the list width (trimmed names, formatted numbers)
+ * goes in {@link Renderer#layout} and is cached until the rows or the width
+ * change. The wheel moves a target that the view eases toward, and rows are
+ * clipped to the list bounds so a half scrolled row never spills out.
+ *
+ * @param <T> Row type
+ * @param <L> Cached layout for a row
+ */
+public class ScrollingList<T, L> {
+
+    /**
+     * Lays out and draws rows for a list
+     */
+    public interface Renderer<T, L> {
+        /**
+         * Per-row work that only depends on the row and the list width
+         */
+        L layout(T row, int width);
+
+        /**
+         * Draw one row with its top left corner at x, y. The mouse position
+         * is passed for controls inside the row.
+         */
+        void draw(T row, L layout, int x, int y, int width, boolean hovered, int mouseX, int mouseY);
+    }
+
+    // Time constant of the scroll easing
+    private static final float SCROLL_EASE_MS = 60;
+    // Stands in for a null layout so it is not recomputed every frame
+    private static final Object NO_LAYOUT = new Object();
+
+    private final int rowHeight;
+    private final Renderer<T, L> renderer;
+
+    private int x, y, width, height;
+
+    private List<T> rows = Collections.emptyList();
+    private Object[] layouts = new Object[0];
+    private int layoutWidth = -1;
+
+    private float scroll;
+    private float targetScroll;
+    private long lastFrame;
+    // Whole pixels the rows were last drawn at, so clicks match what is on screen
+    private int drawnScroll;
+
+    private int firstVisible, lastVisible;
+    private int hoveredIndex = -1;
+
+    // Scrollbar colors, none drawn if the track is 0
+    private int trackColor = 0;
+    private int thumbColor = 0;
+
+    /**
+     * @param rowHeight Distance from one row's top to the next, spacing included
+     */
+    public ScrollingList(int rowHeight, Renderer<T, L> renderer) {
+        this.rowHeight = Math.max(1, rowHeight);
+        this.renderer = renderer;
+    }
+
+    public void setBounds(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        clampScroll();
+    }
+
+    /**
+     * Show these rows. Passing the same list again keeps the cached layouts,
+     * so callers can hand over their current list every frame.
+     */
+    public void setRows(List<T> rows) {
+        if (rows == this.rows) return;
+        this.rows = rows;
+        invalidate();
+        clampScroll();
+    }
+
+    /**
+     * Drop the cached layouts, for when rows changed inside the same list
+     */
+    public void invalidate() {
+        layouts = new Object[rows.size()];
+    }
+
+    public void setScrollbar(int trackColor, int thumbColor) {
+        this.trackColor = trackColor;
+        this.thumbColor = thumbColor;
+    }
+
+    /**
+     * Jump to the top without easing, e.g. when the list shows new content
+     */
+    public void scrollToTop() {
+        scroll = 0;
+        targetScroll = 0;
+        drawnScroll = 0;
+    }
+
+    public void draw(int mouseX, int mouseY) {
+        ease();
+
+        int count = rows.size();
+        drawnScroll = Math.round(scroll);
+        firstVisible = Math.min(count, drawnScroll / rowHeight);
+        lastVisible = Math.min(count, (drawnScroll + height + rowHeight - 1) / rowHeight);
+        hoveredIndex = rowAt(mouseX, mouseY);
+
+        if (layoutWidth != width || layouts.length != count) {
+            layouts = new Object[count];
+            layoutWidth = width;
+        }
+
+        if (firstVisible < lastVisible) {
+            ScaledResolution sr = new ScaledResolution(Minecraft.getMinecraft());
+            int scale = sr.getScaleFactor();
+            GL11.glEnable(GL11.GL_SCISSOR_TEST);
+            GL11.glScissor(x * scale, (sr.getScaledHeight() - y - height) * scale, width * scale, height * scale);
+            for (int i = firstVisible; i < lastVisible; i++) {
+                T row = rows.get(i);
+                renderer.draw(row, layout(i, row), x, y + i * rowHeight - drawnScroll, width, i == hoveredIndex, mouseX, mouseY);
+            }
+            GL11.glDisable(GL11.GL_SCISSOR_TEST);
+            GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+        }
+
+        drawScrollbar();
+    }
+
+    /**
+     * Scroll by one row per wheel notch if the mouse is over the list
+     *
+     * @param wheel Mouse wheel delta, positive scrolls up
+     */
+    public boolean handleWheel(int mouseX, int mouseY, int wheel) {
+        if (wheel == 0 || !isInside(mouseX, mouseY)) return false;
+        targetScroll -= Integer.signum(wheel) * rowHeight;
+        clampScroll();
+        return true;
+    }
+
+    /**
+     * Index of the row under the mouse, or -1
+     */
+    public int rowAt(int mouseX, int mouseY) {
+        if (!isInside(mouseX, mouseY)) return -1;
+        int index = (mouseY - y + drawnScroll) / rowHeight;
+        return index < rows.size() ? index : -1;
+    }
+
+    /**
+     * Top of a row on screen as last drawn
+     */
+    public int rowTop(int index) {
+        return y + index * rowHeight - drawnScroll;
+    }
+
+    public boolean isInside(int mouseX, int mouseY) {
+        return mouseX >= x && mouseX < x + width && mouseY >= y && mouseY < y + height;
+    }
+
+    public T getRow(int index) {
+        return rows.get(index);
+    }
+
+    public int getHoveredIndex() {
+        return hoveredIndex;
+    }
+
+    /**
+     * First row drawn last frame
+     */
+    public int getFirstVisible() {
+        return firstVisible;
+    }
+
+    /**
+     * One past the last row drawn last frame
+     */
+    public int getLastVisible() {
+        return lastVisible;
+    }
+
+    public boolean canScrollUp() {
+        return targetScroll > 0;
+    }
+
+    public boolean canScrollDown() {
+        return targetScroll < maxScroll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private L layout(int index, T row) {
+        Object cached = layouts[index];
+        if (cached == null) {
+            L computed = renderer.layout(row, width);
+            layouts[index] = computed != null ? computed : NO_LAYOUT;
+            return computed;
+        }
+        return cached == NO_LAYOUT ? null : (L) cached;
+    }
+
+    private void ease() {
+        long now = System.currentTimeMillis();
+        long elapsed = lastFrame == 0 ? 0 : now - lastFrame;
+        lastFrame = now;
+
+        float distance = targetScroll - scroll;
+        if (Math.abs(distance) < 0.5f) {
+            scroll = targetScroll;
+        } else {
+            scroll += distance * (1 - (float) Math.exp(-elapsed / SCROLL_EASE_MS));
+        }
+    }
+
+    private int maxScroll() {
+        return Math.max(0, rows.size() * rowHeight - height);
+    }
+
+    private void clampScroll() {
+        int max = maxScroll();
+        targetScroll = Math.max(0, Math.min(max, targetScroll));
+        scroll = Math.max(0, Math.min(max, scroll));
+    }
+
+    private void drawScrollbar() {
+        int max = maxScroll();
+        if (trackColor == 0 || max == 0) return;
+
+        int thumbHeight = Math.max(20, height * height / (rows.size() * rowHeight));
+        int thumbY = y + (int) ((height - thumbHeight) * scroll / max);
+        RenderUtils.drawRect(x + width - 3, y, x + width, y + height, trackColor);
+        RenderUtils.drawRect(x + width - 3, thumbY, x + width, thumbY + thumbHeight, thumbColor);
+    }
+}
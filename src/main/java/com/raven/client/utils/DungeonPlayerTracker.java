@@ -8,6 +8,7 @@ import net.minecraft.scoreboard.ScorePlayerTeam;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,16 +24,25 @@ public class DungeonPlayerTracker {
     // Maps clean IGN to their coordinates
     public static final Map<String, PlayerPosition> playerPositions = new HashMap<>();
 
+    // Immutable copy for other threads (voice mixer), replaced every tick
+    private static volatile PositionSnapshot snapshot = PositionSnapshot.EMPTY;
+
     public static void init() {
         // Register this to the Forge event bus in your mod entry class
     }
 
     @SubscribeEvent
     public void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+
         Minecraft mc = getMc();
-        if (mc.theWorld == null || mc.thePlayer == null || !isInDungeon()) return;
+        if (mc.theWorld == null || mc.thePlayer == null || !isInDungeon()) {
+            snapshot = PositionSnapshot.EMPTY;
+            return;
+        }
 
         playerPositions.clear();
+        Map<String, PlayerPosition> byName = new HashMap<>();
 
         for (EntityPlayer player : mc.theWorld.playerEntities) {
             if (player instanceof EntityPlayerSP) continue;
@@ -42,10 +52,24 @@ public class DungeonPlayerTracker {
 
             boolean isDead = player.isDead || player.getHealth() <= 0;
 
-            playerPositions.put(cleanName, new PlayerPosition(
+            PlayerPosition position = new PlayerPosition(
                 player.posX, player.posY, player.posZ, isDead
-            ));
+            );
+            playerPositions.put(cleanName, position);
+            byName.put(player.getName(), position);
         }
+
+        EntityPlayerSP self = mc.thePlayer;
+        snapshot = new PositionSnapshot(Collections.unmodifiableMap(byName),
+            new PlayerPosition(self.posX, self.posY, self.posZ, false), self.rotationYaw);
+    }
+
+    /**
+     * Latest positions of the other players, keyed by plain username, plus the
+     * local player's position and facing. Safe to read from any thread.
+     */
+    public static PositionSnapshot getSnapshot() {
+        return snapshot;
     }
 
     private boolean isInDungeon() {
@@ -61,6 +85,20 @@ public class DungeonPlayerTracker {
         return name.replaceAll("�.", "").trim();
     }
 
+    public static class PositionSnapshot {
+        static final PositionSnapshot EMPTY = new PositionSnapshot(Collections.<String, PlayerPosition>emptyMap(), null, 0);
+
+        public final Map<String, PlayerPosition> players;
+        public final PlayerPosition self;
+        public final float selfYaw;
+
+        PositionSnapshot(Map<String, PlayerPosition> players, PlayerPosition self, float selfYaw) {
+            this.players = players;
+            this.self = self;
+            this.selfYaw = selfYaw;
+        }
+    }
+
     public static class PlayerPosition {
         public final double x, y, z;
         public final boolean isDead;
@@ -13,6 +13,10 @@ public class VoiceChatEventHandler {
     
     private boolean pttWasPressed = false;
     
+    // Ticks between proximity re-checks of which speakers to stream
+    private static final int SUBSCRIPTION_INTERVAL_TICKS = 10;
+    private int subscriptionTicks = 0;
+    
     @SubscribeEvent
     public void onClientTick(TickEvent.ClientTickEvent event) {
         if (event.phase != TickEvent.Phase.END) return;
@@ -20,6 +24,14 @@ public class VoiceChatEventHandler {
         Minecraft mc = Minecraft.getMinecraft();
         if (mc.theWorld == null || mc.thePlayer == null) return;
         
+        // Players move in and out of proximity range; everything else that
+        // changes the subscription updates it from its own event
+        VoiceChatManager proximityManager = VoiceChatManager.getInstance();
+        if (proximityManager.isProximityEnabled() && ++subscriptionTicks >= SUBSCRIPTION_INTERVAL_TICKS) {
+            subscriptionTicks = 0;
+            proximityManager.updateSubscription();
+        }
+        
         // Don't process if a GUI is open (let the GUI handle it)
         if (mc.currentScreen != null) {
             // Reset PTT when GUI opens
@@ -3,13 +3,18 @@ package com.raven.client.voicechat;
 import com.raven.client.voicechat.audio.AudioCapture;
 import com.raven.client.voicechat.audio.AudioPlayback;
 import com.raven.client.voicechat.audio.OpusCodec;
+import com.raven.client.voicechat.audio.SpatialAudio;
+import com.raven.client.voicechat.audio.VoiceMetrics;
 import com.raven.client.voicechat.model.VoiceRoom;
 import com.raven.client.voicechat.model.VoiceUser;
 import com.raven.client.voicechat.network.VoiceClient;
 
+import javax.sound.sampled.SourceDataLine;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -25,11 +30,13 @@ public class VoiceChatManager {
     private AudioCapture audioCapture;
     private AudioPlayback audioPlayback;
     private OpusCodec opusCodec;
+    private final VoiceMetrics metrics = new VoiceMetrics(this);
     
     // Connection state
     private boolean initialized = false;
     private boolean connected = false;
     private boolean connecting = false;
+    private volatile boolean reconnecting = false;
     
     // User state
     private boolean muted = false;
@@ -43,14 +50,36 @@ public class VoiceChatManager {
     private float outputVolume = 1.0f;
     private float voiceActivationThreshold = 0.02f;
     
+    // Proximity voice: attenuate and pan speakers by their in-game position
+    private volatile boolean proximityEnabled = false;
+    private volatile double proximityRange = 48.0;
+    
+    // Extra distance past the proximity range that is still streamed, so a
+    // speaker walking into range is already buffered
+    private static final double SUBSCRIBE_MARGIN = 8.0;
+    
+    // Speakers the server was last asked to forward; null until sent in this room
+    private int[] subscribedSpeakers;
+    // Set while a new session rejoins our room: the speaker indexes we hold
+    // belong to the old session, so no subscription is sent until the join answer
+    private boolean rejoinPending;
+    
     // Authentication
     private String authToken;
     private String verifiedDiscordName;
     private String displayNickname;
     
+    // Identity to connect as when there is no Minecraft player, e.g. headless runs
+    private UUID localPlayerId;
+    private String localPlayerName;
+    
     // Room state
     private VoiceRoom currentRoom;
     private Map<String, VoiceUser> usersInRoom = new ConcurrentHashMap<>();
+    
+    // Users by server-assigned speaker index, so compact audio packets are
+    // routed without a string lookup. Copy-on-write; only the network thread writes.
+    private volatile VoiceUser[] speakers = new VoiceUser[0];
     private List<VoiceRoom> availableRooms = new ArrayList<>();
     
     // Server configuration
@@ -61,6 +90,9 @@ public class VoiceChatManager {
     // Listeners
     private List<VoiceChatListener> listeners = new ArrayList<>();
     
+    // Reused for every captured frame so encoding does not allocate
+    private final byte[] encodeBuffer = new byte[OpusCodec.MAX_PACKET_BYTES];
+    
     private VoiceChatManager() {
         // Private constructor for singleton
     }
@@ -83,6 +115,14 @@ public class VoiceChatManager {
      * Initialize the voice chat system.
      */
     public void initialize() {
+        initialize(null);
+    }
+    
+    /**
+     * Initialize the voice chat system, playing into the given line instead of
+     * the default output device when it is not null.
+     */
+    public void initialize(SourceDataLine outputLine) {
         System.out.println("[VoiceChat] Initializing voice chat system...");
         
         try {
@@ -92,7 +132,7 @@ public class VoiceChatManager {
             
             // Initialize audio playback
             audioPlayback = new AudioPlayback(this);
-            audioPlayback.initialize();
+            audioPlayback.initialize(outputLine);
             
             // Initialize audio capture
             audioCapture = new AudioCapture(this);
@@ -258,7 +298,7 @@ public class VoiceChatManager {
         
         // Clear room state
         currentRoom = null;
-        usersInRoom.clear();
+        clearRoomUsers();
     }
     
     // ============================================================
@@ -271,6 +311,7 @@ public class VoiceChatManager {
     public void onConnectionStateChanged(boolean isConnected) {
         this.connected = isConnected;
         this.connecting = false;
+        this.reconnecting = false;
         
         if (isConnected) {
             System.out.println("[VoiceChat] Connected to voice server");
@@ -278,34 +319,100 @@ public class VoiceChatManager {
         } else {
             System.out.println("[VoiceChat] Disconnected from voice server");
             currentRoom = null;
-            usersInRoom.clear();
+            clearRoomUsers();
             notifyDisconnected();
         }
     }
     
     /**
-     * Called by VoiceClient when audio is received.
+     * Called by VoiceClient when the control connection dropped and it is
+     * reconnecting. Room state and the audio path are kept meanwhile.
+     */
+    public void onConnectionInterrupted() {
+        reconnecting = true;
+        System.out.println("[VoiceChat] Connection interrupted, reconnecting");
+    }
+    
+    /**
+     * Called by VoiceClient once the control connection is back.
+     *
+     * @param resumed True if the server continued our session and replayed
+     *                what we missed; false if it is a new session
+     * @param serverRoomId Room the server has us in after a resume, or null
      */
-    public void onAudioReceived(String odId, byte[] opusData) {
+    public void onConnectionRestored(boolean resumed, String serverRoomId) {
+        reconnecting = false;
+        VoiceRoom room = currentRoom;
+        boolean rejoin = false;
+        
+        if (!resumed || serverRoomId == null) {
+            // A new session is in no room yet
+            rejoin = room != null;
+        } else if (room == null) {
+            // We left while the connection was down
+            voiceClient.sendLeaveRoom();
+        } else if (!room.getId().equals(serverRoomId)) {
+            rejoin = true;
+        }
+        
+        synchronized (this) {
+            subscribedSpeakers = null;
+            rejoinPending = rejoin;
+        }
+        if (rejoin) {
+            // The join answer brings the user list, which sends the subscription
+            voiceClient.sendJoinRoom(room.getId());
+        }
+        
+        // Anything sent while the connection was down was dropped
+        voiceClient.sendMuteState(muted);
+        voiceClient.sendDeafenState(deafened);
+        updateSubscription();
+        
+        System.out.println("[VoiceChat] Connection restored (" + (resumed ? "session resumed" : "new session") + ")");
+    }
+    
+    /**
+     * Called by VoiceClient when audio is received. Decoding happens at playout
+     * time in the speaker's jitter buffer, so this only queues the packet.
+     *
+     * @param sequence 16-bit packet sequence number, or -1 for unsequenced packets
+     * @param timestamp Sender sample clock of the packet
+     */
+    public void onAudioReceived(String odId, byte[] data, int offset, int length, int sequence, long timestamp) {
         if (deafened) {
             return;
         }
         
-        VoiceUser user = usersInRoom.get(odId);
+        queueUserAudio(usersInRoom.get(odId), data, offset, length, sequence, timestamp);
+    }
+    
+    /**
+     * Called by VoiceClient for compact audio packets, which name the sender
+     * by the speaker index the server assigned in this room.
+     */
+    public void onAudioReceived(int speakerIndex, byte[] data, int offset, int length, int sequence, long timestamp) {
+        if (deafened) {
+            return;
+        }
+        
+        VoiceUser[] bySpeaker = speakers;
+        if (speakerIndex < bySpeaker.length) {
+            queueUserAudio(bySpeaker[speakerIndex], data, offset, length, sequence, timestamp);
+        }
+    }
+    
+    private void queueUserAudio(VoiceUser user, byte[] data, int offset, int length, int sequence, long timestamp) {
         if (user == null || user.isMuted()) {
             return;
         }
         
-        // Decode and play
-        byte[] pcmData = opusCodec.decode(opusData);
-        if (pcmData != null) {
-            audioPlayback.playAudio(odId, pcmData, user.getVolume() * outputVolume);
-            
-            // Update talking state
-            if (!user.isTalking()) {
-                user.setTalking(true);
-                onUserTalkingChanged(odId, true);
-            }
+        audioPlayback.queueAudio(user, data, offset, length, sequence, timestamp, user.getVolume() * outputVolume);
+        
+        // Update talking state
+        if (!user.isTalking()) {
+            user.setTalking(true);
+            notifyUserTalkingChanged(user);
         }
     }
     
@@ -315,7 +422,7 @@ public class VoiceChatManager {
     public void onRoomJoined(VoiceRoom room) {
         System.out.println("[VoiceChat] Joined room: " + room.getName());
         this.currentRoom = room;
-        this.usersInRoom.clear();
+        clearRoomUsers();
         
         // Start audio capture
         if (audioCapture != null && !muted) {
@@ -332,7 +439,7 @@ public class VoiceChatManager {
         System.out.println("[VoiceChat] Left room");
         VoiceRoom oldRoom = currentRoom;
         currentRoom = null;
-        usersInRoom.clear();
+        clearRoomUsers();
         
         if (audioCapture != null) {
             audioCapture.stopCapture();
@@ -347,6 +454,20 @@ public class VoiceChatManager {
     public void onUserJoined(VoiceUser user) {
         System.out.println("[VoiceChat] User joined: " + user.getDisplayName());
         usersInRoom.put(user.getUserId(), user);
+        
+        int index = user.getSpeakerIndex();
+        if (index >= 0) {
+            VoiceUser[] bySpeaker = speakers;
+            if (index >= bySpeaker.length) {
+                bySpeaker = Arrays.copyOf(bySpeaker, Math.max(index + 1, bySpeaker.length * 2));
+            } else {
+                bySpeaker = bySpeaker.clone();
+            }
+            bySpeaker[index] = user;
+            speakers = bySpeaker;
+        }
+        
+        updateSubscription();
         notifyUserJoined(user);
     }
     
@@ -357,11 +478,73 @@ public class VoiceChatManager {
         VoiceUser user = usersInRoom.remove(odId);
         if (user != null) {
             System.out.println("[VoiceChat] User left: " + user.getDisplayName());
-            audioPlayback.stopUser(odId);
+            
+            int index = user.getSpeakerIndex();
+            VoiceUser[] bySpeaker = speakers;
+            if (index >= 0 && index < bySpeaker.length && bySpeaker[index] == user) {
+                bySpeaker = bySpeaker.clone();
+                bySpeaker[index] = null;
+                speakers = bySpeaker;
+            }
+            
+            audioPlayback.stopUser(user);
+            updateSubscription();
             notifyUserLeft(user);
         }
     }
     
+    private void clearRoomUsers() {
+        usersInRoom.clear();
+        speakers = new VoiceUser[0];
+        synchronized (this) {
+            subscribedSpeakers = null;
+            rejoinPending = false;
+        }
+    }
+    
+    /**
+     * Ask the server to forward audio only from speakers we can hear: nobody
+     * while deafened, and not users who are muted or out of proximity range.
+     * Only sent when the set changes; cheap enough to call on every change.
+     */
+    public synchronized void updateSubscription() {
+        if (!connected || currentRoom == null || voiceClient == null || rejoinPending) {
+            return;
+        }
+        
+        int[] wanted = new int[usersInRoom.size()];
+        int count = 0;
+        
+        if (!deafened) {
+            double subscribeRange = proximityRange + SUBSCRIBE_MARGIN;
+            for (VoiceUser user : usersInRoom.values()) {
+                int index = user.getSpeakerIndex();
+                if (index < 0) {
+                    // Server hands out no speaker indexes, so it cannot filter either
+                    return;
+                }
+                if (user.isMuted()) {
+                    continue;
+                }
+                if (proximityEnabled && SpatialAudio.distanceTo(user) >= subscribeRange) {
+                    continue;
+                }
+                if (count < wanted.length) {
+                    wanted[count++] = index;
+                }
+            }
+        }
+        
+        wanted = Arrays.copyOf(wanted, count);
+        Arrays.sort(wanted);
+        if (Arrays.equals(wanted, subscribedSpeakers)) {
+            return;
+        }
+        
+        subscribedSpeakers = wanted;
+        voiceClient.sendSubscribe(wanted);
+    }
+    
     /**
      * Called by VoiceClient when a user's mute state changes.
      */
@@ -369,6 +552,7 @@ public class VoiceChatManager {
         VoiceUser user = usersInRoom.get(odId);
         if (user != null) {
             user.setMuted(isMuted);
+            updateSubscription();
             notifyUserMuteChanged(user);
         }
     }
@@ -384,25 +568,19 @@ public class VoiceChatManager {
         }
     }
     
-    /**
-     * Called when user talking state changes.
-     */
-    private void onUserTalkingChanged(String odId, boolean talking) {
-        VoiceUser user = usersInRoom.get(odId);
-        if (user != null) {
-            user.setTalking(talking);
-            notifyUserTalkingChanged(user);
-        }
-    }
-    
     // ============================================================
     // Audio capture callback - called by AudioCapture
     // ============================================================
     
     /**
      * Called by AudioCapture when audio is captured from microphone.
+     * Runs on the capture thread; the frame is reused for the next capture.
+     * Voice activation has already been decided by the capture's detector.
+     *
+     * @param pcm One frame of samples with microphone volume applied
+     * @param timestamp Capture sample clock of the first sample in the frame
      */
-    public void onAudioCaptured(byte[] pcmData) {
+    public void onAudioCaptured(short[] pcm, long timestamp) {
         if (!connected || currentRoom == null || muted || deafened) {
             return;
         }
@@ -412,30 +590,15 @@ public class VoiceChatManager {
             return;
         }
         
-        // Check voice activation if not using push-to-talk
-        if (!usePushToTalk) {
-            float level = calculateAudioLevel(pcmData);
-            if (level < voiceActivationThreshold) {
-                return;
-            }
-        }
+        // Encode and send; DTX frames of a couple of bytes are silence and need not be sent
+        long stageStart = System.nanoTime();
+        int encodedLength = opusCodec.encode(pcm, 0, encodeBuffer, 0, encodeBuffer.length);
+        stageStart = audioCapture.getEncodeLatency().recordSince(stageStart);
         
-        // Encode and send
-        byte[] encoded = opusCodec.encode(pcmData);
-        if (encoded != null) {
-            voiceClient.sendAudio(encoded);
-        }
-    }
-    
-    // Helper methods
-    
-    private float calculateAudioLevel(byte[] pcmData) {
-        long sum = 0;
-        for (int i = 0; i < pcmData.length - 1; i += 2) {
-            short sample = (short) ((pcmData[i + 1] << 8) | (pcmData[i] & 0xFF));
-            sum += Math.abs(sample);
+        if (encodedLength > OpusCodec.DTX_PACKET_BYTES) {
+            voiceClient.sendAudio(encodeBuffer, encodedLength, timestamp);
+            audioCapture.getSendLatency().recordSince(stageStart);
         }
-        return (float) sum / (pcmData.length / 2) / 32768f;
     }
     
     // Listener management
@@ -522,6 +685,13 @@ public class VoiceChatManager {
         return connected;
     }
     
+    /**
+     * Whether the connection dropped and is being restored; still counts as connected
+     */
+    public boolean isReconnecting() {
+        return reconnecting;
+    }
+    
     public boolean isConnecting() {
         return connecting;
     }
@@ -551,6 +721,7 @@ public class VoiceChatManager {
         if (voiceClient != null && connected) {
             voiceClient.sendDeafenState(deafened);
         }
+        updateSubscription();
     }
     
     public boolean isUsePushToTalk() {
@@ -587,6 +758,14 @@ public class VoiceChatManager {
         return 0.0f;
     }
     
+    /**
+     * Whether the microphone is currently transmitting, by push-to-talk or
+     * voice activation
+     */
+    public boolean isVoiceDetected() {
+        return audioCapture != null && audioCapture.isCapturing() && audioCapture.isVoiceActive();
+    }
+    
     public float getMicrophoneVolume() {
         return microphoneVolume;
     }
@@ -611,6 +790,43 @@ public class VoiceChatManager {
         this.voiceActivationThreshold = Math.max(0, Math.min(1, threshold));
     }
     
+    public boolean isProximityEnabled() {
+        return proximityEnabled;
+    }
+    
+    public void setProximityEnabled(boolean proximityEnabled) {
+        this.proximityEnabled = proximityEnabled;
+        updateSubscription();
+    }
+    
+    public double getProximityRange() {
+        return proximityRange;
+    }
+    
+    /**
+     * Distance in blocks beyond which speakers are not heard in proximity mode
+     */
+    public void setProximityRange(double proximityRange) {
+        this.proximityRange = Math.max(8.0, Math.min(256.0, proximityRange));
+        updateSubscription();
+    }
+    
+    public AudioCapture getAudioCapture() {
+        return audioCapture;
+    }
+    
+    public AudioPlayback getAudioPlayback() {
+        return audioPlayback;
+    }
+    
+    public VoiceMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public OpusCodec getOpusCodec() {
+        return opusCodec;
+    }
+    
     public String getAuthToken() {
         return authToken;
     }
@@ -627,6 +843,22 @@ public class VoiceChatManager {
         this.verifiedDiscordName = verifiedDiscordName;
     }
     
+    public UUID getLocalPlayerId() {
+        return localPlayerId;
+    }
+    
+    public String getLocalPlayerName() {
+        return localPlayerName;
+    }
+    
+    /**
+     * Connect as this identity instead of the Minecraft player's
+     */
+    public void setLocalIdentity(UUID playerId, String playerName) {
+        this.localPlayerId = playerId;
+        this.localPlayerName = playerName;
+    }
+    
     public String getDisplayNickname() {
         return displayNickname;
     }
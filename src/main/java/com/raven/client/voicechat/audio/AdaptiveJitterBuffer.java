@@ -0,0 +1,344 @@
+package com.raven.client.voicechat.audio;
+
+/**
+ * Per-speaker jitter buffer ordered by packet sequence number.
+ *
+ * Holds encoded Opus packets in slots indexed by sequence number, so late
+ * packets are slotted back into order. The playout delay adapts to the
+ * inter-arrival jitter measured from the packet timestamps (RFC 3550 style
+ * estimator): quiet links play out after a single frame, bursty links grow
+ * the delay instead of crackling. Missing frames are recovered from the next
+ * packet's in-band FEC when possible, otherwise concealed by the decoder.
+ *
+ * Owned by the mixer thread: packets reach it through the speaker's
+ * {@link SpscPacketQueue}, so no locking is needed. Statistics are volatile
+ * so other threads can read them.
+ */
+public class AdaptiveJitterBuffer {
+
+    // Slots must be a power of two; 32 frames = 640ms of audio
+    private static final int CAPACITY = 32;
+    private static final int MASK = CAPACITY - 1;
+
+    // Target delay bounds, in frames
+    private static final int MIN_DELAY_FRAMES = 1;
+    private static final int MAX_DELAY_FRAMES = 12;
+
+    // Frames to conceal before treating the speaker as having stopped
+    private static final int MAX_CONCEALED_FRAMES = 5;
+
+    // Clean frames after which one frame of underrun padding is removed
+    private static final int BOOST_DECAY_FRAMES = 250;
+
+    private static final double SAMPLES_PER_NANO = AudioCapture.SAMPLE_RATE / 1_000_000_000.0;
+
+    private final OpusCodec.Decoder decoder;
+    private final int frameSize;
+
+    // Packet slots
+    private final byte[][] slotData = new byte[CAPACITY][OpusCodec.MAX_PACKET_BYTES];
+    private final int[] slotLength = new int[CAPACITY];
+    private final int[] slotSeq = new int[CAPACITY];
+    private final long[] slotTimestamp = new long[CAPACITY];
+    private final long[] slotArrival = new long[CAPACITY];
+    private final boolean[] slotFilled = new boolean[CAPACITY];
+    private int buffered = 0;
+
+    // Playout state
+    private boolean playing = false;
+    private boolean hasPlayed = false;
+    private int nextSeq;
+    private int lastDecodedSeq;
+    private int concealedInRow = 0;
+    private int aboveTargetFrames = 0;
+    private long lastPlayedTimestamp = -1;
+    private long lastPlayedArrival;
+
+    // Jitter estimation, in samples
+    private boolean hasArrival = false;
+    private double lastArrival;
+    private long lastTimestamp;
+    private double jitter = 0;
+    private int underrunBoost = 0;
+    private int cleanFrames = 0;
+
+    // Sequence numbers handed to packets without a header
+    private int unsequencedSeq = 0;
+
+    // Statistics
+    private volatile long packetsReceived;
+    private volatile long latePackets;
+    private volatile long droppedPackets;
+    private volatile long concealedFrames;
+    private volatile long fecRecoveredFrames;
+    private volatile long underruns;
+    private volatile int bufferedFrames;
+    private volatile double jitterMillis;
+
+    public AdaptiveJitterBuffer(OpusCodec.Decoder decoder, int frameSize) {
+        this.decoder = decoder;
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Queue a packet that arrived at arrivalNanos (System.nanoTime)
+     *
+     * @param seq 16-bit sequence number
+     * @param timestamp Sender sample clock of the first sample in the packet
+     */
+    public void insert(byte[] data, int offset, int length, int seq, long timestamp, long arrivalNanos) {
+        if (length <= 0 || length > OpusCodec.MAX_PACKET_BYTES) {
+            return;
+        }
+
+        packetsReceived++;
+        seq &= 0xFFFF;
+        updateJitter(timestamp, arrivalNanos);
+
+        if (hasPlayed && seqDiff(seq, nextSeq) < 0) {
+            // Its playout time has passed and it was concealed; the delay is too short
+            latePackets++;
+            if (!playing || seqDiff(seq, lastDecodedSeq) <= 0) {
+                return;
+            }
+            // Everything since the last real frame was concealed, so resume from
+            // this packet: the concealed frames become extra delay instead of
+            // every following packet arriving late as well
+            underruns++;
+            underrunBoost = Math.min(underrunBoost + 1, MAX_DELAY_FRAMES);
+            cleanFrames = 0;
+            nextSeq = seq;
+        }
+
+        if (hasPlayed && seqDiff(seq, nextSeq) >= CAPACITY) {
+            // Sender restarted or we lost a long run; resynchronise
+            clearSlots();
+            playing = false;
+            hasPlayed = false;
+        }
+
+        int slot = seq & MASK;
+        if (slotFilled[slot]) {
+            if (slotSeq[slot] == seq) {
+                return; // Duplicate
+            }
+            // Overwriting a packet that was never played
+            droppedPackets++;
+            buffered--;
+        }
+
+        System.arraycopy(data, offset, slotData[slot], 0, length);
+        slotLength[slot] = length;
+        slotSeq[slot] = seq;
+        slotTimestamp[slot] = timestamp;
+        slotArrival[slot] = arrivalNanos;
+        slotFilled[slot] = true;
+        buffered++;
+        bufferedFrames = buffered;
+    }
+
+    /**
+     * Queue a packet from a sender that does not stamp sequence numbers;
+     * arrival order and arrival time stand in for them
+     */
+    public void insertUnsequenced(byte[] data, int offset, int length, long arrivalNanos) {
+        long timestamp = (long) (arrivalNanos * SAMPLES_PER_NANO);
+        insert(data, offset, length, unsequencedSeq++, timestamp, arrivalNanos);
+    }
+
+    /**
+     * Produce the next frame of audio for playout
+     *
+     * @param out Receives frameSize samples
+     * @return Samples written, or 0 if this speaker has nothing to play
+     */
+    public int pop(short[] out) {
+        if (!playing) {
+            if (buffered == 0 || buffered < getTargetDelayFrames()) {
+                return 0;
+            }
+            playing = true;
+            nextSeq = hasPlayed ? findNextBufferedSeq(nextSeq) : findLowestBufferedSeq();
+            hasPlayed = true;
+            concealedInRow = 0;
+        }
+
+        // Trim latency that built up after a burst, one frame at a time
+        if (buffered > getTargetDelayFrames() + 1) {
+            if (++aboveTargetFrames >= 25 && takeSlot(nextSeq)) {
+                droppedPackets++;
+                nextSeq = (nextSeq + 1) & 0xFFFF;
+                aboveTargetFrames = 0;
+            }
+        } else {
+            aboveTargetFrames = 0;
+        }
+
+        int samples;
+        int slot = nextSeq & MASK;
+        lastPlayedTimestamp = -1;
+
+        if (slotFilled[slot] && slotSeq[slot] == nextSeq) {
+            samples = decoder.decode(slotData[slot], 0, slotLength[slot], out, 0);
+            lastPlayedTimestamp = slotTimestamp[slot];
+            lastPlayedArrival = slotArrival[slot];
+            takeSlot(nextSeq);
+            lastDecodedSeq = nextSeq;
+            concealedInRow = 0;
+            if (++cleanFrames >= BOOST_DECAY_FRAMES && underrunBoost > 0) {
+                underrunBoost--;
+                cleanFrames = 0;
+            }
+        } else if (buffered == 0 && concealedInRow >= MAX_CONCEALED_FRAMES) {
+            // Talk spurt is over; rebuffer on the next packet, which continues
+            // from the last real frame rather than the concealed ones
+            playing = false;
+            nextSeq = (lastDecodedSeq + 1) & 0xFFFF;
+            decoder.reset();
+            return 0;
+        } else {
+            int next = (nextSeq + 1) & MASK;
+            if (slotFilled[next] && slotSeq[next] == ((nextSeq + 1) & 0xFFFF)) {
+                samples = decoder.decodeFec(slotData[next], 0, slotLength[next], out, 0);
+                if (samples > 0) {
+                    fecRecoveredFrames++;
+                } else {
+                    samples = decoder.conceal(out, 0);
+                    concealedFrames++;
+                }
+            } else {
+                samples = decoder.conceal(out, 0);
+                concealedFrames++;
+            }
+            concealedInRow++;
+        }
+
+        nextSeq = (nextSeq + 1) & 0xFFFF;
+        bufferedFrames = buffered;
+        return Math.max(samples, 0);
+    }
+
+    /**
+     * Current playout delay target in frames, from measured jitter plus any
+     * padding added after underruns
+     */
+    public int getTargetDelayFrames() {
+        int fromJitter = (int) Math.ceil((frameSize + 3 * jitter) / frameSize);
+        return Math.max(MIN_DELAY_FRAMES, Math.min(MAX_DELAY_FRAMES, fromJitter + underrunBoost));
+    }
+
+    public void clear() {
+        clearSlots();
+        playing = false;
+        hasPlayed = false;
+        hasArrival = false;
+        decoder.reset();
+    }
+
+    private void updateJitter(long timestamp, long arrivalNanos) {
+        double arrival = arrivalNanos * SAMPLES_PER_NANO;
+        if (hasArrival) {
+            // Timestamps travel as 32 bits, so take the wrapped difference
+            int timestampDelta = (int) (timestamp - lastTimestamp);
+            double transitDelta = (arrival - lastArrival) - timestampDelta;
+            jitter += (Math.abs(transitDelta) - jitter) / 16.0;
+        }
+        lastArrival = arrival;
+        lastTimestamp = timestamp;
+        hasArrival = true;
+        jitterMillis = jitter / AudioCapture.SAMPLE_RATE * 1000.0;
+    }
+
+    private boolean takeSlot(int seq) {
+        int slot = seq & MASK;
+        if (slotFilled[slot] && slotSeq[slot] == seq) {
+            slotFilled[slot] = false;
+            buffered--;
+            return true;
+        }
+        return false;
+    }
+
+    private int findLowestBufferedSeq() {
+        int lowest = -1;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (slotFilled[i] && (lowest < 0 || seqDiff(slotSeq[i], lowest) < 0)) {
+                lowest = slotSeq[i];
+            }
+        }
+        return lowest;
+    }
+
+    private int findNextBufferedSeq(int from) {
+        for (int i = 0; i < CAPACITY; i++) {
+            int seq = (from + i) & 0xFFFF;
+            int slot = seq & MASK;
+            if (slotFilled[slot] && slotSeq[slot] == seq) {
+                return seq;
+            }
+        }
+        return findLowestBufferedSeq();
+    }
+
+    private void clearSlots() {
+        for (int i = 0; i < CAPACITY; i++) {
+            slotFilled[i] = false;
+        }
+        buffered = 0;
+    }
+
+    /**
+     * Signed distance between two 16-bit sequence numbers
+     */
+    private static int seqDiff(int a, int b) {
+        return (short) (a - b);
+    }
+
+    /**
+     * Sender timestamp of the frame the last {@link #pop} decoded, or -1 if
+     * that frame was recovered or concealed. Mixer thread only.
+     */
+    public long getLastPlayedTimestamp() {
+        return lastPlayedTimestamp;
+    }
+    
+    /**
+     * System.nanoTime at which the packet of the last decoded frame arrived.
+     * Only meaningful when {@link #getLastPlayedTimestamp} is not -1.
+     */
+    public long getLastPlayedArrivalNanos() {
+        return lastPlayedArrival;
+    }
+    
+    public int getBufferedFrames() {
+        return bufferedFrames;
+    }
+
+    public double getJitterMillis() {
+        return jitterMillis;
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived;
+    }
+
+    public long getLatePackets() {
+        return latePackets;
+    }
+
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    public long getConcealedFrames() {
+        return concealedFrames;
+    }
+
+    public long getFecRecoveredFrames() {
+        return fecRecoveredFrames;
+    }
+
+    public long getUnderruns() {
+        return underruns;
+    }
+}
@@ -29,11 +29,30 @@ public class AudioCapture {
     private AtomicBoolean capturing = new AtomicBoolean(false);
     private AtomicBoolean initialized = new AtomicBoolean(false);
     
-    // Voice activation detection
-    private float voiceActivityLevel = 0;
-    private boolean voiceActive = false;
-    private long lastVoiceTime = 0;
-    private static final long VOICE_HOLD_TIME = 300; // ms to hold after voice stops
+    // Voice activation detection, run on every frame so the noise floor and
+    // the mic meter stay current in push-to-talk mode too
+    private final VoiceActivityDetector voiceDetector = new VoiceActivityDetector(SAMPLE_RATE);
+    private boolean wasSending = false;
+    
+    // Sample clock of the current frame, advanced for every frame read so
+    // receivers can see silent gaps between talk spurts
+    private long captureTimestamp = 0;
+    
+    // Capture buffers, allocated once and reused for every frame
+    private final byte[] readBuffer = new byte[FRAME_BYTES];
+    private final short[] frameBuffer = new short[FRAME_SIZE];
+    
+    // The frame before the current one; the detector needs a couple of frames
+    // to open, so the first of them is sent late rather than clipped
+    private final short[] prerollBuffer = new short[FRAME_SIZE];
+    private long prerollTimestamp = -1;
+    
+    // Per-stage latency counters
+    private final LatencyCounter gainLatency = new LatencyCounter("gain");
+    private final LatencyCounter vadLatency = new LatencyCounter("vad");
+    private final LatencyCounter encodeLatency = new LatencyCounter("encode");
+    private final LatencyCounter sendLatency = new LatencyCounter("send");
+    private final LatencyCounter frameLatency = new LatencyCounter("capture->send");
     
     public AudioCapture(VoiceChatManager manager) {
         this.manager = manager;
@@ -84,6 +103,9 @@ public class AudioCapture {
         }
         
         capturing.set(true);
+        voiceDetector.reset();
+        wasSending = false;
+        prerollTimestamp = -1;
         microphone.start();
         
         captureThread = new Thread(this::captureLoop, "VoiceChat-AudioCapture");
@@ -131,57 +153,49 @@ public class AudioCapture {
     }
     
     /**
-     * Main capture loop
+     * Main capture loop. Runs the whole capture -> gain -> VAD -> encode -> send
+     * pipeline on this thread using buffers allocated once up front.
      */
     private void captureLoop() {
-        byte[] buffer = new byte[FRAME_BYTES];
-        long lastDebugTime = 0;
-        int framesSent = 0;
+        byte[] buffer = readBuffer;
+        short[] frame = frameBuffer;
         
         while (capturing.get()) {
             try {
                 int bytesRead = microphone.read(buffer, 0, buffer.length);
                 
-                if (bytesRead > 0) {
-                    // Apply microphone volume
-                    byte[] adjustedBuffer = applyVolume(buffer, manager.getMicrophoneVolume());
+                if (bytesRead == buffer.length) {
+                    captureTimestamp += FRAME_SIZE;
+                    long stageStart = System.nanoTime();
+                    long frameStart = stageStart;
                     
-                    // Calculate voice activity level
-                    voiceActivityLevel = calculateLevel(adjustedBuffer);
+                    // Apply microphone volume
+                    applyVolume(buffer, frame, manager.getMicrophoneVolume());
+                    stageStart = gainLatency.recordSince(stageStart);
                     
-                    // Check voice activation (if not using PTT)
-                    boolean shouldSend = false;
+                    boolean voiceDetected = voiceDetector.process(frame, FRAME_SIZE, manager.getVoiceActivationThreshold());
+                    boolean shouldSend;
                     
                     if (manager.isUsePushToTalk()) {
                         // PTT mode - send if key is pressed
                         shouldSend = manager.isPushToTalkActive();
                     } else {
                         // Voice activation mode
-                        if (voiceActivityLevel > manager.getMicrophoneVolume() * 0.02f) {
-                            voiceActive = true;
-                            lastVoiceTime = System.currentTimeMillis();
-                        } else if (voiceActive && System.currentTimeMillis() - lastVoiceTime > VOICE_HOLD_TIME) {
-                            voiceActive = false;
-                        }
-                        shouldSend = voiceActive;
+                        shouldSend = voiceDetected;
                     }
+                    vadLatency.recordSince(stageStart);
                     
                     if (shouldSend) {
-                        manager.onAudioCaptured(adjustedBuffer);
-                        framesSent++;
+                        if (!wasSending && !manager.isUsePushToTalk() && prerollTimestamp == captureTimestamp - FRAME_SIZE) {
+                            manager.onAudioCaptured(prerollBuffer, prerollTimestamp);
+                        }
+                        manager.onAudioCaptured(frame, captureTimestamp);
+                        frameLatency.recordSince(frameStart);
                     }
+                    wasSending = shouldSend;
                     
-                    // Debug output every 5 seconds
-                    long now = System.currentTimeMillis();
-                    if (now - lastDebugTime > 5000) {
-                        System.out.println("[VoiceChat] Audio capture stats: level=" + 
-                            String.format("%.4f", voiceActivityLevel) + 
-                            ", PTT=" + manager.isPushToTalkActive() + 
-                            ", usePTT=" + manager.isUsePushToTalk() +
-                            ", framesSent=" + framesSent);
-                        lastDebugTime = now;
-                        framesSent = 0;
-                    }
+                    System.arraycopy(frame, 0, prerollBuffer, 0, FRAME_SIZE);
+                    prerollTimestamp = captureTimestamp;
                 }
                 
             } catch (Exception e) {
@@ -193,61 +207,57 @@ public class AudioCapture {
     }
     
     /**
-     * Apply volume adjustment to audio buffer
+     * Convert a little endian PCM buffer to samples with the volume applied
      */
-    private byte[] applyVolume(byte[] buffer, float volume) {
-        if (volume == 1.0f) {
-            return buffer;
-        }
-        
-        byte[] result = new byte[buffer.length];
-        
-        for (int i = 0; i < buffer.length; i += 2) {
+    private void applyVolume(byte[] buffer, short[] frame, float volume) {
+        for (int i = 0, j = 0; i < frame.length; i++, j += 2) {
             // Convert bytes to 16-bit sample (little endian)
-            int sample = (buffer[i] & 0xFF) | (buffer[i + 1] << 8);
-            
-            // Apply volume
-            sample = (int) (sample * volume);
+            int sample = (buffer[j] & 0xFF) | (buffer[j + 1] << 8);
             
-            // Clamp to prevent clipping
-            sample = Math.max(-32768, Math.min(32767, sample));
+            if (volume != 1.0f) {
+                // Apply volume and clamp to prevent clipping
+                sample = (int) (sample * volume);
+                sample = Math.max(-32768, Math.min(32767, sample));
+            }
             
-            // Convert back to bytes
-            result[i] = (byte) (sample & 0xFF);
-            result[i + 1] = (byte) ((sample >> 8) & 0xFF);
+            frame[i] = (short) sample;
         }
-        
-        return result;
     }
     
     /**
-     * Calculate audio level (RMS)
+     * Per-stage latency counters, in pipeline order
      */
-    private float calculateLevel(byte[] buffer) {
-        long sum = 0;
-        int count = buffer.length / 2;
-        
-        for (int i = 0; i < buffer.length; i += 2) {
-            int sample = (buffer[i] & 0xFF) | (buffer[i + 1] << 8);
-            sum += (long) sample * sample;
-        }
-        
-        float rms = (float) Math.sqrt(sum / count);
-        return rms / 32768.0f; // Normalize to 0-1 range
+    public LatencyCounter[] getStageLatencies() {
+        return new LatencyCounter[] { gainLatency, vadLatency, encodeLatency, sendLatency, frameLatency };
+    }
+    
+    public LatencyCounter getEncodeLatency() {
+        return encodeLatency;
+    }
+    
+    public LatencyCounter getSendLatency() {
+        return sendLatency;
     }
     
     /**
      * Get current voice activity level (0-1)
      */
     public float getVoiceActivityLevel() {
-        return voiceActivityLevel;
+        return voiceDetector.getLevel();
     }
     
     /**
      * Check if voice is currently active
      */
     public boolean isVoiceActive() {
-        return voiceActive || (manager.isUsePushToTalk() && manager.isPushToTalkActive());
+        if (manager.isUsePushToTalk()) {
+            return manager.isPushToTalkActive();
+        }
+        return voiceDetector.isActive();
+    }
+    
+    public VoiceActivityDetector getVoiceDetector() {
+        return voiceDetector;
     }
     
     /**
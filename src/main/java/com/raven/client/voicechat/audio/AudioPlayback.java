@@ -1,14 +1,27 @@
 package com.raven.client.voicechat.audio;
 
 import com.raven.client.voicechat.VoiceChatManager;
+import com.raven.client.voicechat.model.VoiceUser;
 
 import javax.sound.sampled.*;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Handles audio playback for received voice data
+ * Handles audio playback for received voice data.
+ *
+ * Each speaker has a lock-free packet queue filled by the network thread and
+ * a jitter buffer drained by a single mixer thread. The mixer is paced by the
+ * fill level of the output line: it mixes a frame only when the line has less
+ * than {@link #TARGET_LINE_FRAMES} queued, so output latency stays bounded
+ * regardless of how many people are talking.
+ *
+ * Output is stereo so that proximity mode can pan speakers; without it every
+ * speaker is mixed centered at their own volume.
  */
 public class AudioPlayback {
     
@@ -18,39 +31,88 @@ public class AudioPlayback {
     private SourceDataLine speaker;
     private AtomicBoolean initialized = new AtomicBoolean(false);
     
-    // Per-user jitter buffers to smooth out network variations
-    private Map<String, JitterBuffer> userBuffers = new ConcurrentHashMap<>();
+    // Frames kept queued in the output line ahead of the hardware
+    private static final int TARGET_LINE_FRAMES = 2;
+    
+    // Decoded voice is mono; the mix is stereo
+    private static final int OUTPUT_CHANNELS = 2;
+    private static final int OUTPUT_FRAME_BYTES = AudioCapture.FRAME_SIZE * OUTPUT_CHANNELS * 2;
+    
+    // Packets a speaker can have in flight between network and mixer threads
+    private static final int SPEAKER_QUEUE_PACKETS = 16;
+    
+    // Mixed samples above this level are compressed instead of hard clipped
+    private static final int SOFT_CLIP_KNEE = 24576;
+    
+    // Longest the idle mixer sleeps before checking for new speakers
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    
+    // Per-user streams to smooth out network variations
+    private final Map<String, SpeakerStream> userStreams = new ConcurrentHashMap<>();
+    
+    // The same streams by speaker index, for users the server assigned one.
+    // Copy-on-write; only the network thread writes.
+    private volatile SpeakerStream[] indexedStreams = new SpeakerStream[0];
+    
+    // Snapshot of userStreams for the mixer, rebuilt when speakers come and go
+    private volatile SpeakerStream[] mixStreams = new SpeakerStream[0];
     
     // Playback thread
-    private Thread playbackThread;
+    private volatile Thread playbackThread;
     private AtomicBoolean playing = new AtomicBoolean(false);
     
+    // Time spent mixing each frame, decoding each speaker's frame, and from
+    // packet arrival to the frame reaching the speaker
+    private final LatencyCounter mixLatency = new LatencyCounter("mix");
+    private final LatencyCounter decodeLatency = new LatencyCounter("decode");
+    private final LatencyCounter playoutLatency = new LatencyCounter("receive->play");
+    
+    // Proximity positioning, used by the mixer thread only
+    private final SpatialAudio spatialAudio = new SpatialAudio();
+    
+    // Optional hook told about every decoded frame, for latency measurement
+    private volatile PlayoutObserver playoutObserver;
+    
     public AudioPlayback(VoiceChatManager manager) {
         this.manager = manager;
     }
     
     /**
-     * Initialize audio playback
+     * Initialize audio playback on the default output device
      */
     public boolean initialize() {
+        return initialize(null);
+    }
+    
+    /**
+     * Initialize audio playback
+     *
+     * @param outputLine Line to play into instead of the default device, e.g.
+     *                   a null line when running headless; may be null
+     */
+    public boolean initialize(SourceDataLine outputLine) {
         try {
             audioFormat = new AudioFormat(
                 AudioCapture.SAMPLE_RATE,
                 AudioCapture.SAMPLE_SIZE_BITS,
-                AudioCapture.CHANNELS,
+                OUTPUT_CHANNELS,
                 AudioCapture.SIGNED,
                 AudioCapture.BIG_ENDIAN
             );
             
-            DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
-            
-            if (!AudioSystem.isLineSupported(info)) {
-                System.err.println("[VoiceChat] Speaker not supported");
-                return false;
+            if (outputLine != null) {
+                speaker = outputLine;
+            } else {
+                DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
+                
+                if (!AudioSystem.isLineSupported(info)) {
+                    System.err.println("[VoiceChat] Speaker not supported");
+                    return false;
+                }
+                
+                speaker = (SourceDataLine) AudioSystem.getLine(info);
             }
-            
-            speaker = (SourceDataLine) AudioSystem.getLine(info);
-            speaker.open(audioFormat, AudioCapture.FRAME_BYTES * 8); // Buffer 8 frames
+            speaker.open(audioFormat, OUTPUT_FRAME_BYTES * 8); // Buffer 8 frames
             speaker.start();
             
             // Start playback thread
@@ -78,6 +140,11 @@ public class AudioPlayback {
     public void shutdown() {
         playing.set(false);
         
+        Thread thread = playbackThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        
         if (playbackThread != null) {
             try {
                 playbackThread.join(1000);
@@ -93,88 +160,211 @@ public class AudioPlayback {
             speaker = null;
         }
         
-        userBuffers.clear();
+        userStreams.clear();
+        indexedStreams = new SpeakerStream[0];
+        mixStreams = new SpeakerStream[0];
         initialized.set(false);
     }
     
     /**
-     * Queue audio data for playback from a specific user
+     * Queue an encoded audio packet for playback from a specific user.
+     * Called from the network receive thread only.
+     *
+     * @param sequence 16-bit packet sequence number, or -1 if the sender did not stamp one
+     * @param timestamp Sender sample clock of the packet
+     * @param volume Gain applied to this speaker while mixing
      */
-    public void playAudio(String userId, byte[] pcmData, float volume) {
+    public void queueAudio(VoiceUser user, byte[] data, int offset, int length, int sequence, long timestamp, float volume) {
         if (!initialized.get()) {
-            System.err.println("[VoiceChat] playAudio called but not initialized!");
             return;
         }
         
-        if (pcmData == null || pcmData.length == 0) {
-            System.err.println("[VoiceChat] playAudio received null/empty data");
+        if (data == null || length <= 0) {
             return;
         }
         
-        // Get or create jitter buffer for this user
-        JitterBuffer buffer = userBuffers.computeIfAbsent(userId, k -> {
-            System.out.println("[VoiceChat] Created jitter buffer for user: " + userId);
-            return new JitterBuffer();
-        });
+        // Get or create the stream for this user; indexed speakers skip the map
+        int index = user.getSpeakerIndex();
+        SpeakerStream[] byIndex = indexedStreams;
+        SpeakerStream stream = index >= 0 && index < byIndex.length ? byIndex[index] : null;
+        if (stream == null || stream.user != user) {
+            stream = getOrCreateStream(user);
+            if (stream == null) {
+                return;
+            }
+        }
         
-        // Apply volume and queue
-        byte[] adjustedData = applyVolume(pcmData, volume);
-        buffer.addFrame(adjustedData);
+        stream.gain = volume;
+        if (stream.queue.offer(data, offset, length, sequence, timestamp, System.nanoTime())) {
+            Thread mixer = playbackThread;
+            if (mixer != null) {
+                LockSupport.unpark(mixer);
+            }
+        }
+    }
+    
+    private SpeakerStream getOrCreateStream(VoiceUser user) {
+        SpeakerStream stream = userStreams.get(user.getUserId());
+        if (stream == null || stream.user != user) {
+            OpusCodec.Decoder decoder = manager.getOpusCodec().newDecoder();
+            if (decoder == null) {
+                return null;
+            }
+            stream = new SpeakerStream(user, decoder);
+            userStreams.put(user.getUserId(), stream);
+            rebuildMixStreams();
+            System.out.println("[VoiceChat] Created jitter buffer for user: " + user.getUserId());
+        }
+        
+        int index = user.getSpeakerIndex();
+        if (index >= 0) {
+            SpeakerStream[] byIndex = indexedStreams;
+            if (index >= byIndex.length) {
+                byIndex = Arrays.copyOf(byIndex, Math.max(index + 1, byIndex.length * 2));
+            } else {
+                byIndex = byIndex.clone();
+            }
+            byIndex[index] = stream;
+            indexedStreams = byIndex;
+        }
+        return stream;
     }
     
     /**
      * Stop playback for a specific user
      */
-    public void stopUser(String userId) {
-        userBuffers.remove(userId);
+    public void stopUser(VoiceUser user) {
+        int index = user.getSpeakerIndex();
+        SpeakerStream[] byIndex = indexedStreams;
+        if (index >= 0 && index < byIndex.length && byIndex[index] != null && byIndex[index].user == user) {
+            byIndex = byIndex.clone();
+            byIndex[index] = null;
+            indexedStreams = byIndex;
+        }
+        
+        if (userStreams.remove(user.getUserId()) != null) {
+            rebuildMixStreams();
+        }
+    }
+    
+    /**
+     * Get the jitter buffer of a user, for statistics
+     */
+    public AdaptiveJitterBuffer getJitterBuffer(String userId) {
+        SpeakerStream stream = userStreams.get(userId);
+        return stream != null ? stream.jitterBuffer : null;
+    }
+    
+    public LatencyCounter getMixLatency() {
+        return mixLatency;
+    }
+    
+    /**
+     * Per-stage latency counters, in pipeline order
+     */
+    public LatencyCounter[] getStageLatencies() {
+        return new LatencyCounter[] { decodeLatency, mixLatency, playoutLatency };
+    }
+    
+    public void setPlayoutObserver(PlayoutObserver observer) {
+        this.playoutObserver = observer;
+    }
+    
+    private void rebuildMixStreams() {
+        mixStreams = userStreams.values().toArray(new SpeakerStream[0]);
     }
     
     /**
      * Main playback loop - mixes audio from all users
      */
     private void playbackLoop() {
-        byte[] mixBuffer = new byte[AudioCapture.FRAME_BYTES];
-        long lastDebugTime = 0;
-        int framesPlayed = 0;
+        final int targetQueuedBytes = OUTPUT_FRAME_BYTES * TARGET_LINE_FRAMES;
+        final long nanosPerByte = TimeUnit.SECONDS.toNanos(1) / ((long) AudioCapture.SAMPLE_RATE * OUTPUT_CHANNELS * 2);
+        
+        int[] mixBuffer = new int[AudioCapture.FRAME_SIZE * OUTPUT_CHANNELS];
+        short[] decodeBuffer = new short[AudioCapture.FRAME_SIZE];
+        byte[] output = new byte[OUTPUT_FRAME_BYTES];
         
         while (playing.get()) {
             try {
-                // Clear mix buffer
-                java.util.Arrays.fill(mixBuffer, (byte) 0);
+                // Only mix once the line has room below the target level; the
+                // hardware clock then drives the jitter buffers in real time
+                int queued = speaker.getBufferSize() - speaker.available();
+                if (queued >= targetQueuedBytes) {
+                    LockSupport.parkNanos((queued - targetQueuedBytes + OUTPUT_FRAME_BYTES / 2) * nanosPerByte);
+                    continue;
+                }
                 
-                boolean hasAudio = false;
+                long mixStart = System.nanoTime();
+                Arrays.fill(mixBuffer, 0);
+                int active = 0;
                 
                 // Mix audio from all users
-                for (JitterBuffer buffer : userBuffers.values()) {
-                    byte[] frame = buffer.getFrame();
-                    if (frame != null) {
-                        mixAudio(mixBuffer, frame);
-                        hasAudio = true;
+                SpeakerStream[] streams = mixStreams;
+                PlayoutObserver observer = playoutObserver;
+                boolean proximity = manager.isProximityEnabled();
+                if (proximity) {
+                    spatialAudio.update(manager.getProximityRange());
+                }
+                
+                for (SpeakerStream stream : streams) {
+                    float left = stream.gain;
+                    float right = stream.gain;
+                    
+                    if (proximity) {
+                        if (!spatialAudio.place(stream.user)) {
+                            // Out of range: throw the packets away undecoded
+                            if (!stream.culled) {
+                                stream.culled = true;
+                                stream.jitterBuffer.clear();
+                            }
+                            stream.queue.clear();
+                            continue;
+                        }
+                        left *= spatialAudio.getLeftGain();
+                        right *= spatialAudio.getRightGain();
+                    }
+                    stream.culled = false;
+                    
+                    stream.queue.drainTo(stream.jitterBuffer);
+                    
+                    long decodeStart = System.nanoTime();
+                    int samples = stream.jitterBuffer.pop(decodeBuffer);
+                    if (samples > 0) {
+                        decodeLatency.recordSince(decodeStart);
+                        mixInto(mixBuffer, decodeBuffer, samples, left, right);
+                        active++;
+                        
+                        long timestamp = stream.jitterBuffer.getLastPlayedTimestamp();
+                        if (timestamp >= 0) {
+                            // The frame is heard once the audio already queued in the line has played
+                            long playoutNanos = mixStart + queued * nanosPerByte;
+                            playoutLatency.record(playoutNanos - stream.jitterBuffer.getLastPlayedArrivalNanos());
+                            if (observer != null) {
+                                observer.onFramePlayed(stream.user, timestamp, playoutNanos);
+                            }
+                        }
                     }
                 }
                 
-                // Write to speaker if we have audio
-                if (hasAudio) {
+                if (active > 0) {
+                    softClip(mixBuffer, output);
+                    mixLatency.recordSince(mixStart);
+                    
                     // Make sure speaker is running
                     if (!speaker.isRunning()) {
                         speaker.start();
                     }
                     
-                    int written = speaker.write(mixBuffer, 0, mixBuffer.length);
-                    framesPlayed++;
-                    
-                    // Debug every 5 seconds
-                    long now = System.currentTimeMillis();
-                    if (now - lastDebugTime > 5000) {
-                        System.out.println("[VoiceChat] Audio playback: " + framesPlayed + " frames, written=" + written + 
-                            ", available=" + speaker.available() + ", active=" + speaker.isActive() + 
-                            ", running=" + speaker.isRunning());
-                        lastDebugTime = now;
-                        framesPlayed = 0;
-                    }
+                    // Never blocks: the line had room for at least one frame
+                    speaker.write(output, 0, output.length);
+                } else if (queued == 0) {
+                    // Nobody is talking and the line has drained; sleep until a
+                    // packet arrives rather than polling
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
                 } else {
-                    // Sleep briefly if no audio to prevent busy waiting
-                    Thread.sleep(10);
+                    // Let the tail of the last frame play out
+                    LockSupport.parkNanos(queued * nanosPerByte);
                 }
                 
             } catch (Exception e) {
@@ -187,53 +377,48 @@ public class AudioPlayback {
     }
     
     /**
-     * Mix source audio into destination buffer
+     * Add a speaker's mono frame into the interleaved stereo accumulator with
+     * the per-channel gains applied
      */
-    private void mixAudio(byte[] dest, byte[] source) {
-        for (int i = 0; i < dest.length && i < source.length; i += 2) {
-            // Convert to 16-bit signed samples (little-endian)
-            short sample1 = (short) ((dest[i] & 0xFF) | ((dest[i + 1] & 0xFF) << 8));
-            short sample2 = (short) ((source[i] & 0xFF) | ((source[i + 1] & 0xFF) << 8));
-            
-            // Mix samples (use int to avoid overflow)
-            int mixed = sample1 + sample2;
-            
-            // Clamp to 16-bit range
-            if (mixed > 32767) {
-                mixed = 32767;
-            } else if (mixed < -32768) {
-                mixed = -32768;
+    private static void mixInto(int[] mix, short[] samples, int count, float leftGain, float rightGain) {
+        int n = Math.min(count, mix.length / OUTPUT_CHANNELS);
+        if (leftGain == 1.0f && rightGain == 1.0f) {
+            for (int i = 0, j = 0; i < n; i++, j += 2) {
+                mix[j] += samples[i];
+                mix[j + 1] += samples[i];
+            }
+        } else {
+            // 16.16 fixed point keeps the inner loop in integer math
+            int fixedLeft = (int) (leftGain * 65536.0f);
+            int fixedRight = (int) (rightGain * 65536.0f);
+            for (int i = 0, j = 0; i < n; i++, j += 2) {
+                long sample = samples[i];
+                mix[j] += (int) ((sample * fixedLeft) >> 16);
+                mix[j + 1] += (int) ((sample * fixedRight) >> 16);
             }
-            
-            // Convert back to bytes (little-endian)
-            dest[i] = (byte) (mixed & 0xFF);
-            dest[i + 1] = (byte) ((mixed >> 8) & 0xFF);
         }
     }
     
     /**
-     * Apply volume adjustment to audio buffer
+     * Convert the accumulator to 16-bit little endian PCM. Levels above the
+     * knee are compressed smoothly towards full scale instead of clipping.
      */
-    private byte[] applyVolume(byte[] buffer, float volume) {
-        if (volume == 1.0f) {
-            return buffer;
-        }
-        
-        byte[] result = new byte[buffer.length];
+    private static void softClip(int[] mix, byte[] dest) {
+        final int headroom = 32767 - SOFT_CLIP_KNEE;
         
-        for (int i = 0; i < buffer.length; i += 2) {
-            // Read 16-bit signed sample (little-endian)
-            short sample = (short) ((buffer[i] & 0xFF) | ((buffer[i + 1] & 0xFF) << 8));
-            // Apply volume
-            int adjusted = (int) (sample * volume);
-            // Clamp to 16-bit range
-            adjusted = Math.max(-32768, Math.min(32767, adjusted));
-            // Write back (little-endian)
-            result[i] = (byte) (adjusted & 0xFF);
-            result[i + 1] = (byte) ((adjusted >> 8) & 0xFF);
+        for (int i = 0, j = 0; i < mix.length; i++, j += 2) {
+            int sample = mix[i];
+            int magnitude = Math.abs(sample);
+            
+            if (magnitude > SOFT_CLIP_KNEE) {
+                long over = magnitude - SOFT_CLIP_KNEE;
+                int compressed = SOFT_CLIP_KNEE + (int) (over * headroom / (over + headroom));
+                sample = sample < 0 ? -compressed : compressed;
+            }
+            
+            dest[j] = (byte) sample;
+            dest[j + 1] = (byte) (sample >> 8);
         }
-        
-        return result;
     }
     
     public boolean isInitialized() {
@@ -241,52 +426,31 @@ public class AudioPlayback {
     }
     
     /**
-     * Simple jitter buffer to smooth out network variations
+     * Notified on the mixer thread for every frame decoded from a real packet
      */
-    private static class JitterBuffer {
-        private static final int BUFFER_SIZE = 5; // Number of frames to buffer
-        private byte[][] frames = new byte[BUFFER_SIZE][];
-        private int writeIndex = 0;
-        private int readIndex = 0;
-        private int frameCount = 0;
-        private long lastFrameTime = 0;
-        private static final long FRAME_TIMEOUT = 100; // ms before considering user stopped
+    public interface PlayoutObserver {
+        /**
+         * @param timestamp Sender sample clock of the frame
+         * @param playoutNanos Estimated System.nanoTime at which the frame reaches the speaker
+         */
+        void onFramePlayed(VoiceUser user, long timestamp, long playoutNanos);
+    }
+    
+    /**
+     * Playback state of one remote speaker
+     */
+    private static class SpeakerStream {
+        final VoiceUser user;
+        final SpscPacketQueue queue = new SpscPacketQueue(SPEAKER_QUEUE_PACKETS);
+        final AdaptiveJitterBuffer jitterBuffer;
+        volatile float gain = 1.0f;
         
-        public synchronized void addFrame(byte[] frame) {
-            frames[writeIndex] = frame;
-            writeIndex = (writeIndex + 1) % BUFFER_SIZE;
-            
-            if (frameCount < BUFFER_SIZE) {
-                frameCount++;
-            } else {
-                // Buffer full, advance read index
-                readIndex = (readIndex + 1) % BUFFER_SIZE;
-            }
-            
-            lastFrameTime = System.currentTimeMillis();
-        }
+        // Out of proximity range; mixer thread only
+        boolean culled = false;
         
-        public synchronized byte[] getFrame() {
-            // Check for timeout
-            if (System.currentTimeMillis() - lastFrameTime > FRAME_TIMEOUT) {
-                frameCount = 0;
-                return null;
-            }
-            
-            // Wait for buffer to fill before starting playback
-            if (frameCount < 2) {
-                return null;
-            }
-            
-            if (frameCount > 0) {
-                byte[] frame = frames[readIndex];
-                frames[readIndex] = null;
-                readIndex = (readIndex + 1) % BUFFER_SIZE;
-                frameCount--;
-                return frame;
-            }
-            
-            return null;
+        SpeakerStream(VoiceUser user, OpusCodec.Decoder decoder) {
+            this.user = user;
+            this.jitterBuffer = new AdaptiveJitterBuffer(decoder, AudioCapture.FRAME_SIZE);
         }
     }
 }
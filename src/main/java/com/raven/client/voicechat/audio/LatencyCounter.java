@@ -0,0 +1,141 @@
+package com.raven.client.voicechat.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency counter for one stage of the voice pipeline.
+ * Recording is allocation free so it can run on the audio threads every frame.
+ *
+ * Besides the count, mean and max it keeps a log-linear histogram: each power
+ * of two is split into 16 linear buckets, so percentiles are accurate to
+ * about 6% from nanoseconds up to a minute without storing the samples.
+ */
+public class LatencyCounter {
+
+    // Linear buckets per power of two
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Samples above ~68s land in the last bucket
+    private static final int MAX_MAGNITUDE = 36;
+    private static final long MAX_TRACKABLE_NANOS = (1L << MAX_MAGNITUDE) - 1;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public LatencyCounter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record one sample
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        count.increment();
+        totalNanos.add(nanos);
+        buckets.incrementAndGet(bucketIndex(Math.min(nanos, MAX_TRACKABLE_NANOS)));
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Record the time elapsed since startNanos and return the current time,
+     * so consecutive stages can be chained
+     */
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        record(now - startNanos);
+        return now;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getAverageMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / 1000.0;
+    }
+
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    /**
+     * Value below which the given share of samples fall, from the histogram
+     *
+     * @param percentile 0-100
+     */
+    public double getPercentileMicros(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), maxNanos.get()) / 1000.0;
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    private static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: n=%d avg=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", name, getCount(),
+            getAverageMicros(), getPercentileMicros(50), getPercentileMicros(99), getMaxMicros());
+    }
+}
@@ -1,53 +1,70 @@
 package com.raven.client.voicechat.audio;
 
+import io.github.jaredmdobson.concentus.OpusApplication;
+import io.github.jaredmdobson.concentus.OpusDecoder;
+import io.github.jaredmdobson.concentus.OpusEncoder;
+import io.github.jaredmdobson.concentus.OpusException;
+import io.github.jaredmdobson.concentus.OpusSignal;
+
 /**
  * Opus codec wrapper for encoding/decoding voice audio.
- * 
- * Note: This is a stub implementation. For actual Opus encoding/decoding,
- * you'll need to either:
- * 1. Use a pure Java implementation like Concentus (https://github.com/lostromb/concentern)
- * 2. Use JNI bindings to native Opus library
- * 
- * For now, this passes through raw PCM data with basic compression simulation.
- * Replace with actual Opus implementation for production use.
+ *
+ * Backed by Concentus, a pure Java port of libopus, so no natives have to be
+ * bundled per platform. Callers pass in their own sample and output buffers
+ * so the 20ms capture path does not create garbage.
+ *
+ * Opus decoders are stateful (prediction, FEC, concealment), so every remote
+ * speaker gets its own {@link Decoder}, owned by that speaker's jitter buffer.
  */
 public class OpusCodec {
-    
+
+    // Largest packet a single Opus frame can produce
+    public static final int MAX_PACKET_BYTES = 1275;
+
+    // Packets this small are DTX comfort-noise frames and carry no speech
+    public static final int DTX_PACKET_BYTES = 2;
+
     private boolean initialized = false;
-    
+
     // Opus settings
-    private int sampleRate = 48000;
-    private int channels = 1;
-    private int bitrate = 64000; // 64 kbps - good quality for voice
-    private int frameSize = 960; // 20ms at 48kHz
-    
-    // For actual Opus implementation, you would have:
-    // private long encoderPtr;
-    // private long decoderPtr;
-    
+    private int sampleRate = (int) AudioCapture.SAMPLE_RATE;
+    private int channels = AudioCapture.CHANNELS;
+    private int bitrate = 24000; // 24 kbps - plenty for wideband voice
+    private int frameSize = AudioCapture.FRAME_SIZE; // 20ms at 48kHz
+    private int complexity = 5;
+    private int expectedPacketLoss = 10; // percent, tunes in-band FEC redundancy
+    private boolean fecEnabled = true;
+    private boolean dtxEnabled = true;
+
+    private OpusEncoder encoder;
+
     public OpusCodec() {
     }
-    
+
     /**
      * Initialize the Opus codec
      */
     public boolean initialize() {
         try {
-            // TODO: Initialize actual Opus encoder/decoder here
-            // For native Opus:
-            // encoderPtr = opusEncoderCreate(sampleRate, channels, OPUS_APPLICATION_VOIP);
-            // decoderPtr = opusDecoderCreate(sampleRate, channels);
-            
+            encoder = new OpusEncoder(sampleRate, channels, OpusApplication.OPUS_APPLICATION_VOIP);
+            encoder.setSignalType(OpusSignal.OPUS_SIGNAL_VOICE);
+            encoder.setComplexity(complexity);
+            encoder.setBitrate(bitrate);
+            encoder.setUseInbandFEC(fecEnabled);
+            encoder.setPacketLossPercent(fecEnabled ? expectedPacketLoss : 0);
+            encoder.setUseDTX(dtxEnabled);
+
             initialized = true;
-            System.out.println("[VoiceChat] Opus codec initialized (stub mode)");
+            System.out.println("[VoiceChat] Opus codec initialized (" + (bitrate / 1000) + " kbps, FEC=" +
+                fecEnabled + ", DTX=" + dtxEnabled + ")");
             return true;
-            
+
         } catch (Exception e) {
             System.err.println("[VoiceChat] Failed to initialize Opus codec: " + e.getMessage());
             return false;
         }
     }
-    
+
     /**
      * Shutdown the codec
      */
@@ -55,134 +72,131 @@ public class OpusCodec {
         if (!initialized) {
             return;
         }
-        
-        // TODO: Destroy actual Opus encoder/decoder here
-        // opusEncoderDestroy(encoderPtr);
-        // opusDecoderDestroy(decoderPtr);
-        
+
+        encoder = null;
         initialized = false;
     }
-    
-    /**
-     * Encode PCM audio data to Opus
-     * 
-     * @param pcmData Raw PCM audio (16-bit, mono, 48kHz)
-     * @return Encoded Opus data
-     */
-    public byte[] encode(byte[] pcmData) {
-        if (!initialized || pcmData == null) {
-            return null;
-        }
-        
-        // TODO: Replace with actual Opus encoding
-        // byte[] encoded = new byte[maxEncodedSize];
-        // int encodedLength = opusEncode(encoderPtr, pcmData, frameSize, encoded, maxEncodedSize);
-        // return Arrays.copyOf(encoded, encodedLength);
-        
-        // Stub implementation: simple compression simulation
-        // This just passes through the data with a header
-        // In production, replace with actual Opus encoding
-        
-        return compressStub(pcmData);
-    }
-    
+
     /**
-     * Decode Opus data to PCM audio
-     * 
-     * @param opusData Encoded Opus data
-     * @return Decoded PCM audio (16-bit, mono, 48kHz)
+     * Encode one frame of PCM samples to Opus into a caller-supplied buffer.
+     *
+     * @return Encoded length in bytes, or -1 on failure
      */
-    public byte[] decode(byte[] opusData) {
-        if (!initialized || opusData == null) {
-            return null;
+    public int encode(short[] pcm, int pcmOffset, byte[] out, int outOffset, int maxBytes) {
+        if (!initialized || pcm == null) {
+            return -1;
         }
-        
-        // TODO: Replace with actual Opus decoding
-        // byte[] pcm = new byte[frameSize * 2]; // 16-bit = 2 bytes per sample
-        // int decodedSamples = opusDecode(decoderPtr, opusData, opusData.length, pcm, frameSize);
-        // return pcm;
-        
-        // Stub implementation
-        return decompressStub(opusData);
-    }
-    
-    /**
-     * Stub compression - in production replace with Opus
-     * This provides ~4:1 compression by taking every 4th sample
-     */
-    private byte[] compressStub(byte[] pcmData) {
-        // Simple downsampling compression (not actual Opus!)
-        // Take every 4th sample to reduce size
-        int compressedLength = pcmData.length / 4;
-        byte[] compressed = new byte[compressedLength + 4];
-        
-        // Header: original length
-        compressed[0] = (byte) ((pcmData.length >> 24) & 0xFF);
-        compressed[1] = (byte) ((pcmData.length >> 16) & 0xFF);
-        compressed[2] = (byte) ((pcmData.length >> 8) & 0xFF);
-        compressed[3] = (byte) (pcmData.length & 0xFF);
-        
-        // Compressed data (every 4th byte)
-        for (int i = 0; i < compressedLength; i++) {
-            compressed[i + 4] = pcmData[i * 4];
+
+        try {
+            return encoder.encode(pcm, pcmOffset, frameSize, out, outOffset, Math.min(maxBytes, MAX_PACKET_BYTES));
+        } catch (OpusException e) {
+            System.err.println("[VoiceChat] Opus encode failed: " + e.getMessage());
+            return -1;
         }
-        
-        return compressed;
     }
-    
+
     /**
-     * Stub decompression
+     * Create a standalone decoder for one speaker
      */
-    private byte[] decompressStub(byte[] compressed) {
-        if (compressed.length < 4) {
-            return null;
-        }
-        
-        // Read original length from header
-        int originalLength = ((compressed[0] & 0xFF) << 24) |
-                            ((compressed[1] & 0xFF) << 16) |
-                            ((compressed[2] & 0xFF) << 8) |
-                            (compressed[3] & 0xFF);
-        
-        // Sanity check
-        if (originalLength <= 0 || originalLength > 100000) {
+    public Decoder newDecoder() {
+        try {
+            return new Decoder(new OpusDecoder(sampleRate, channels), frameSize);
+        } catch (OpusException e) {
+            System.err.println("[VoiceChat] Failed to create Opus decoder: " + e.getMessage());
             return null;
         }
-        
-        byte[] decompressed = new byte[originalLength];
-        
-        // Interpolate to restore approximate original
-        int compressedLength = compressed.length - 4;
-        for (int i = 0; i < compressedLength && i * 4 < originalLength; i++) {
-            byte sample = compressed[i + 4];
-            // Fill 4 bytes with interpolated values
-            for (int j = 0; j < 4 && i * 4 + j < originalLength; j++) {
-                decompressed[i * 4 + j] = sample;
-            }
-        }
-        
-        return decompressed;
     }
-    
+
     /**
      * Set the bitrate for encoding
      */
     public void setBitrate(int bitrate) {
-        this.bitrate = bitrate;
-        // TODO: opusEncoderCtl(encoderPtr, OPUS_SET_BITRATE, bitrate);
+        this.bitrate = Math.max(6000, Math.min(510000, bitrate));
+        if (encoder != null) {
+            encoder.setBitrate(this.bitrate);
+        }
     }
-    
+
     /**
      * Get the current bitrate
      */
     public int getBitrate() {
         return bitrate;
     }
-    
+
+    /**
+     * Enable discontinuous transmission (tiny packets during silence)
+     */
+    public void setDtxEnabled(boolean enabled) {
+        this.dtxEnabled = enabled;
+        if (encoder != null) {
+            encoder.setUseDTX(enabled);
+        }
+    }
+
     /**
      * Check if codec is initialized
      */
     public boolean isInitialized() {
         return initialized;
     }
+
+    /**
+     * Decoder state for a single remote speaker. Not thread safe; each
+     * instance must only be used by one thread at a time.
+     */
+    public static class Decoder {
+
+        private final OpusDecoder decoder;
+        private final int frameSize;
+
+        private Decoder(OpusDecoder decoder, int frameSize) {
+            this.decoder = decoder;
+            this.frameSize = frameSize;
+        }
+
+        /**
+         * Decode a packet into the caller's sample buffer
+         *
+         * @return Samples decoded per channel, or -1 on a corrupt packet
+         */
+        public int decode(byte[] data, int offset, int length, short[] out, int outOffset) {
+            try {
+                return decoder.decode(data, offset, length, out, outOffset, frameSize, false);
+            } catch (OpusException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Recover the frame before this packet from its in-band FEC data
+         *
+         * @return Samples recovered, or -1 if the packet carries no FEC
+         */
+        public int decodeFec(byte[] data, int offset, int length, short[] out, int outOffset) {
+            try {
+                return decoder.decode(data, offset, length, out, outOffset, frameSize, true);
+            } catch (OpusException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Synthesize a frame for a lost packet (packet loss concealment)
+         */
+        public int conceal(short[] out, int outOffset) {
+            try {
+                return decoder.decode(null, 0, 0, out, outOffset, frameSize, false);
+            } catch (OpusException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Forget prediction state, e.g. after a long silence
+         */
+        public void reset() {
+            decoder.resetState();
+        }
+    }
 }
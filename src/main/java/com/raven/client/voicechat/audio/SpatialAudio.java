@@ -0,0 +1,124 @@
+package com.raven.client.voicechat.audio;
+
+import com.raven.client.utils.DungeonPlayerTracker;
+import com.raven.client.voicechat.model.VoiceUser;
+
+/**
+ * Proximity voice: distance attenuation and stereo panning of each speaker
+ * relative to the local player, from the positions DungeonPlayerTracker
+ * publishes every tick.
+ *
+ * Used by the mixer thread only. {@link #update} takes one snapshot per mix
+ * frame and {@link #place} positions each speaker against it; speakers out
+ * of range are reported so the mixer can skip decoding them. Speakers whose
+ * position is unknown (not in the world, or outside dungeons where no
+ * positions are tracked) play centered at full volume.
+ */
+public class SpatialAudio {
+
+    // Speakers this close play at full volume
+    private static final double FULL_VOLUME_DISTANCE = 4.0;
+
+    // How far a speaker directly to one side is pulled out of the other ear
+    private static final float PAN_DEPTH = 0.7f;
+
+    private DungeonPlayerTracker.PositionSnapshot snapshot;
+    private double range;
+
+    // Result of the last place() call
+    private float leftGain = 1.0f;
+    private float rightGain = 1.0f;
+
+    // Listener orientation for the current frame
+    private double rightX;
+    private double rightZ;
+
+    /**
+     * Take the position snapshot for this mix frame
+     *
+     * @param range Distance at which speakers are cut off entirely
+     */
+    public void update(double range) {
+        this.snapshot = DungeonPlayerTracker.getSnapshot();
+        this.range = Math.max(range, FULL_VOLUME_DISTANCE + 1);
+
+        // Minecraft yaw 0 faces +Z; the listener's right hand then points to -X
+        double yaw = Math.toRadians(snapshot.selfYaw);
+        this.rightX = -Math.cos(yaw);
+        this.rightZ = -Math.sin(yaw);
+    }
+
+    /**
+     * Work out the gains for one speaker
+     *
+     * @return false if the speaker is out of range and should not be heard
+     */
+    public boolean place(VoiceUser user) {
+        leftGain = 1.0f;
+        rightGain = 1.0f;
+
+        DungeonPlayerTracker.PlayerPosition self = snapshot.self;
+        DungeonPlayerTracker.PlayerPosition position = findPosition(snapshot, user);
+        if (self == null || position == null) {
+            return true;
+        }
+
+        double dx = position.x - self.x;
+        double dy = position.y - self.y;
+        double dz = position.z - self.z;
+        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (distance >= range) {
+            return false;
+        }
+
+        // Quadratic roll-off from full volume down to silence at the cutoff
+        float attenuation = 1.0f;
+        if (distance > FULL_VOLUME_DISTANCE) {
+            double fade = (range - distance) / (range - FULL_VOLUME_DISTANCE);
+            attenuation = (float) (fade * fade);
+        }
+
+        // Pan by the horizontal direction; -1 is fully left, 1 fully right
+        float pan = 0;
+        double horizontal = Math.sqrt(dx * dx + dz * dz);
+        if (horizontal > 0.5) {
+            pan = (float) ((dx * rightX + dz * rightZ) / horizontal);
+        }
+
+        leftGain = attenuation * (1.0f - Math.max(0, pan) * PAN_DEPTH);
+        rightGain = attenuation * (1.0f - Math.max(0, -pan) * PAN_DEPTH);
+        return true;
+    }
+
+    /**
+     * Distance from the local player to a speaker in the latest snapshot
+     *
+     * @return Distance in blocks, or -1 if either position is unknown
+     */
+    public static double distanceTo(VoiceUser user) {
+        DungeonPlayerTracker.PositionSnapshot snapshot = DungeonPlayerTracker.getSnapshot();
+        DungeonPlayerTracker.PlayerPosition self = snapshot.self;
+        DungeonPlayerTracker.PlayerPosition position = findPosition(snapshot, user);
+        if (self == null || position == null) {
+            return -1;
+        }
+
+        double dx = position.x - self.x;
+        double dy = position.y - self.y;
+        double dz = position.z - self.z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static DungeonPlayerTracker.PlayerPosition findPosition(DungeonPlayerTracker.PositionSnapshot snapshot, VoiceUser user) {
+        String name = user.getMinecraftName() != null ? user.getMinecraftName() : user.getDisplayName();
+        return name != null ? snapshot.players.get(name) : null;
+    }
+
+    public float getLeftGain() {
+        return leftGain;
+    }
+
+    public float getRightGain() {
+        return rightGain;
+    }
+}
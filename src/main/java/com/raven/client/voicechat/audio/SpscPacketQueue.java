@@ -0,0 +1,112 @@
+package com.raven.client.voicechat.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer queue of encoded audio packets.
+ *
+ * The network receive thread is the only producer and the mixer thread the
+ * only consumer, so ordering is carried by the two sequence counters alone.
+ * Packet bytes are copied into slots allocated up front; nothing is
+ * allocated per packet.
+ */
+public class SpscPacketQueue {
+
+    private final int capacity;
+    private final int mask;
+
+    private final byte[][] data;
+    private final int[] length;
+    private final int[] sequence;
+    private final long[] timestamp;
+    private final long[] arrival;
+
+    // Next slot to read, advanced by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, advanced by the producer only
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile long overflows;
+
+    /**
+     * @param capacity Number of packets held, rounded up to a power of two
+     */
+    public SpscPacketQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.data = new byte[size][OpusCodec.MAX_PACKET_BYTES];
+        this.length = new int[size];
+        this.sequence = new int[size];
+        this.timestamp = new long[size];
+        this.arrival = new long[size];
+    }
+
+    /**
+     * Producer side: copy a packet in
+     *
+     * @return false if the queue was full and the packet was dropped
+     */
+    public boolean offer(byte[] src, int offset, int len, int seq, long ts, long arrivalNanos) {
+        if (len <= 0 || len > OpusCodec.MAX_PACKET_BYTES) {
+            return false;
+        }
+
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+            overflows++;
+            return false;
+        }
+
+        int slot = (int) (t & mask);
+        System.arraycopy(src, offset, data[slot], 0, len);
+        length[slot] = len;
+        sequence[slot] = seq;
+        timestamp[slot] = ts;
+        arrival[slot] = arrivalNanos;
+
+        // Publish the slot; the ordered write makes the copy visible first
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side: move every queued packet into the jitter buffer
+     *
+     * @return Packets moved
+     */
+    public int drainTo(AdaptiveJitterBuffer buffer) {
+        long h = head.get();
+        long t = tail.get();
+        int moved = 0;
+
+        while (h < t) {
+            int slot = (int) (h & mask);
+            if (sequence[slot] < 0) {
+                buffer.insertUnsequenced(data[slot], 0, length[slot], arrival[slot]);
+            } else {
+                buffer.insert(data[slot], 0, length[slot], sequence[slot], timestamp[slot], arrival[slot]);
+            }
+            h++;
+            moved++;
+        }
+
+        head.lazySet(h);
+        return moved;
+    }
+
+    /**
+     * Consumer side: discard every queued packet
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public long getOverflows() {
+        return overflows;
+    }
+}
@@ -0,0 +1,169 @@
+package com.raven.client.voicechat.audio;
+
+/**
+ * Decides frame by frame whether the microphone is picking up speech.
+ *
+ * A frame counts as speech when its level clears both the user's activation
+ * threshold and the tracked background noise floor by a margin, and enough
+ * of its energy sits in the voice band rather than in low rumble or hiss.
+ * A couple of frames are needed to trigger, which rejects single clicks and
+ * bumps, and the detector holds on for a while after speech stops so word
+ * endings and short pauses are not cut.
+ *
+ * Used by the capture thread only; nothing is allocated per frame. The
+ * published state is volatile so the GUI can read it.
+ */
+public class VoiceActivityDetector {
+
+    // Voice band edges for the energy split, in Hz
+    private static final double BAND_LOW_HZ = 250.0;
+    private static final double BAND_HIGH_HZ = 4000.0;
+
+    // Share of the frame energy that must fall inside the voice band
+    private static final float MIN_BAND_RATIO = 0.3f;
+
+    // How far above the noise floor speech must be, as an energy ratio (~8dB)
+    private static final float NOISE_MARGIN = 6.0f;
+
+    // Noise floor smoothing per frame: quick to fall, slow to rise, and
+    // slower still while talking so speech does not lift the floor
+    private static final float FLOOR_FALL = 0.25f;
+    private static final float FLOOR_RISE = 0.01f;
+    private static final float FLOOR_RISE_SPEECH = 0.0005f;
+    private static final float MIN_FLOOR = 1e-8f;
+
+    // Consecutive speech frames needed to open, and frames held after (300ms)
+    private static final int ATTACK_FRAMES = 2;
+    private static final int HANGOVER_FRAMES = 15;
+
+    // One-pole filter coefficients for the band split
+    private final float highPassCoeff;
+    private final float lowPassCoeff;
+
+    // Filter state, carried across frames
+    private float highPassIn = 0;
+    private float highPassOut = 0;
+    private float lowPassOut = 0;
+
+    // Decision state
+    private float noiseFloor = -1;
+    private int speechFrames = 0;
+    private int hangover = 0;
+
+    // Published state
+    private volatile boolean active = false;
+    private volatile float level = 0;
+    private volatile float bandRatio = 0;
+
+    public VoiceActivityDetector(float sampleRate) {
+        double dt = 1.0 / sampleRate;
+        double highPassRc = 1.0 / (2 * Math.PI * BAND_LOW_HZ);
+        double lowPassRc = 1.0 / (2 * Math.PI * BAND_HIGH_HZ);
+        this.highPassCoeff = (float) (highPassRc / (highPassRc + dt));
+        this.lowPassCoeff = (float) (dt / (lowPassRc + dt));
+    }
+
+    /**
+     * Analyse one frame
+     *
+     * @param threshold Minimum RMS level (0-1) that may count as speech
+     * @return Whether voice is active after this frame
+     */
+    public boolean process(short[] frame, int count, float threshold) {
+        float hpIn = highPassIn;
+        float hpOut = highPassOut;
+        float lpOut = lowPassOut;
+        double totalEnergy = 0;
+        double bandEnergy = 0;
+
+        for (int i = 0; i < count; i++) {
+            float sample = frame[i] / 32768.0f;
+            totalEnergy += sample * sample;
+
+            hpOut = highPassCoeff * (hpOut + sample - hpIn);
+            hpIn = sample;
+            lpOut += lowPassCoeff * (hpOut - lpOut);
+            bandEnergy += lpOut * lpOut;
+        }
+
+        highPassIn = hpIn;
+        highPassOut = hpOut;
+        lowPassOut = lpOut;
+
+        float energy = count > 0 ? (float) (totalEnergy / count) : 0;
+        float voiceEnergy = count > 0 ? (float) (bandEnergy / count) : 0;
+        float ratio = totalEnergy > 0 ? (float) (bandEnergy / totalEnergy) : 0;
+        level = (float) Math.sqrt(energy);
+        bandRatio = ratio;
+
+        if (noiseFloor < 0) {
+            noiseFloor = Math.max(voiceEnergy, MIN_FLOOR);
+        }
+
+        boolean speech = energy > threshold * threshold
+            && voiceEnergy > noiseFloor * NOISE_MARGIN
+            && ratio >= MIN_BAND_RATIO;
+
+        // Track the background level in the voice band, so steady rumble
+        // outside it does not mask speech
+        if (voiceEnergy < noiseFloor) {
+            noiseFloor += (voiceEnergy - noiseFloor) * FLOOR_FALL;
+        } else {
+            noiseFloor += (voiceEnergy - noiseFloor) * (speech ? FLOOR_RISE_SPEECH : FLOOR_RISE);
+        }
+        noiseFloor = Math.max(noiseFloor, MIN_FLOOR);
+
+        if (speech) {
+            speechFrames++;
+            if (speechFrames >= ATTACK_FRAMES) {
+                hangover = HANGOVER_FRAMES;
+            }
+        } else {
+            speechFrames = 0;
+            if (hangover > 0) {
+                hangover--;
+            }
+        }
+
+        active = hangover > 0;
+        return active;
+    }
+
+    /**
+     * Forget the noise floor and close the gate, e.g. when the microphone restarts
+     */
+    public void reset() {
+        highPassIn = 0;
+        highPassOut = 0;
+        lowPassOut = 0;
+        noiseFloor = -1;
+        speechFrames = 0;
+        hangover = 0;
+        active = false;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * RMS level of the last frame (0-1)
+     */
+    public float getLevel() {
+        return level;
+    }
+
+    /**
+     * Estimated background noise in the voice band as an RMS level (0-1)
+     */
+    public float getNoiseFloor() {
+        return (float) Math.sqrt(Math.max(noiseFloor, 0));
+    }
+
+    /**
+     * Share of the last frame's energy inside the voice band
+     */
+    public float getBandRatio() {
+        return bandRatio;
+    }
+}
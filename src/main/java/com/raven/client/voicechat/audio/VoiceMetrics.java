@@ -0,0 +1,115 @@
+package com.raven.client.voicechat.audio;
+
+import com.raven.client.voicechat.VoiceChatManager;
+import com.raven.client.voicechat.model.VoiceUser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read side of the voice pipeline instrumentation, shared by /vc stats and
+ * the stats page of the voice chat GUI.
+ *
+ * The counters themselves live with the stages that record them (latency
+ * counters in AudioCapture and AudioPlayback, loss counters in each
+ * speaker's jitter buffer) and are lock-free, so building a report never
+ * stalls the audio threads. Latency histograms cover the time since the
+ * last {@link #reset}; loss counters cover the time since the speaker joined.
+ */
+public class VoiceMetrics {
+
+    private final VoiceChatManager manager;
+
+    // Start of the window the latency counters cover
+    private volatile long sinceNanos = System.nanoTime();
+
+    public VoiceMetrics(VoiceChatManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Build the report, one line per entry
+     */
+    public List<String> getReport() {
+        List<String> lines = new ArrayList<>();
+        double windowSeconds = (System.nanoTime() - sinceNanos) / 1_000_000_000.0;
+        lines.add(String.format("Window: %.0fs", windowSeconds));
+
+        AudioCapture capture = manager.getAudioCapture();
+        if (capture != null) {
+            for (LatencyCounter counter : capture.getStageLatencies()) {
+                lines.add(formatLatency(counter));
+            }
+        }
+
+        AudioPlayback playback = manager.getAudioPlayback();
+        if (playback == null) {
+            return lines;
+        }
+        for (LatencyCounter counter : playback.getStageLatencies()) {
+            lines.add(formatLatency(counter));
+        }
+
+        // Mixing time as a share of one core over the window
+        double mixerLoad = windowSeconds > 0
+            ? playback.getMixLatency().getTotalNanos() / (windowSeconds * 1_000_000_000.0) * 100.0
+            : 0;
+        lines.add(String.format("Mixer CPU: %.2f%% of a core", mixerLoad));
+
+        long received = 0;
+        long late = 0;
+        long dropped = 0;
+        long concealed = 0;
+        long recovered = 0;
+        long underruns = 0;
+        List<String> speakerLines = new ArrayList<>();
+
+        for (VoiceUser user : manager.getUsersInRoom().values()) {
+            AdaptiveJitterBuffer buffer = playback.getJitterBuffer(user.getUserId());
+            if (buffer == null) {
+                continue;
+            }
+            received += buffer.getPacketsReceived();
+            late += buffer.getLatePackets();
+            dropped += buffer.getDroppedPackets();
+            concealed += buffer.getConcealedFrames();
+            recovered += buffer.getFecRecoveredFrames();
+            underruns += buffer.getUnderruns();
+
+            speakerLines.add(String.format("  %s: depth %d/%d jitter %.1fms late %d lost %d fec %d underruns %d",
+                user.getDisplayName(), buffer.getBufferedFrames(), buffer.getTargetDelayFrames(),
+                buffer.getJitterMillis(), buffer.getLatePackets(), buffer.getConcealedFrames(),
+                buffer.getFecRecoveredFrames(), buffer.getUnderruns()));
+        }
+
+        lines.add(String.format("Packets: %d received, %d late, %d dropped", received, late, dropped));
+        lines.add(String.format("Frames: %d concealed, %d FEC recovered, %d underruns", concealed, recovered, underruns));
+        lines.addAll(speakerLines);
+        return lines;
+    }
+
+    /**
+     * Clear the latency histograms and start a new window
+     */
+    public void reset() {
+        AudioCapture capture = manager.getAudioCapture();
+        if (capture != null) {
+            for (LatencyCounter counter : capture.getStageLatencies()) {
+                counter.reset();
+            }
+        }
+        AudioPlayback playback = manager.getAudioPlayback();
+        if (playback != null) {
+            for (LatencyCounter counter : playback.getStageLatencies()) {
+                counter.reset();
+            }
+        }
+        sinceNanos = System.nanoTime();
+    }
+
+    private static String formatLatency(LatencyCounter counter) {
+        return String.format("%s: p50 %.2fms p99 %.2fms max %.2fms (%d)", counter.getName(),
+            counter.getPercentileMicros(50) / 1000.0, counter.getPercentileMicros(99) / 1000.0,
+            counter.getMaxMicros() / 1000.0, counter.getCount());
+    }
+}
@@ -1,13 +1,17 @@
 package com.raven.client.voicechat.commands;
 
 import com.raven.client.gui.GuiOpener;
+import com.raven.client.voicechat.VoiceChatManager;
+import com.raven.client.voicechat.audio.VoiceMetrics;
 import com.raven.client.voicechat.gui.GuiVoiceChat;
 import net.minecraft.command.CommandBase;
 import net.minecraft.command.ICommandSender;
+import net.minecraft.util.ChatComponentText;
+import net.minecraft.util.EnumChatFormatting;
 
 /**
  * Command to open the voice chat GUI
- * Usage: /vc or /voicechat
+ * Usage: /vc or /voicechat, /vc stats [reset] for pipeline metrics
  */
 public class VoiceChatCommand extends CommandBase {
 
@@ -18,14 +22,33 @@ public class VoiceChatCommand extends CommandBase {
 
     @Override
     public String getCommandUsage(ICommandSender sender) {
-        return "/vc - Opens the voice chat GUI";
+        return "/vc [stats [reset]] - Opens the voice chat GUI or shows voice statistics";
     }
 
     @Override
     public void processCommand(ICommandSender sender, String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+            VoiceMetrics metrics = VoiceChatManager.getInstance().getMetrics();
+            if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                metrics.reset();
+                sendMessage(sender, EnumChatFormatting.GREEN + "Voice statistics reset");
+                return;
+            }
+
+            sendMessage(sender, EnumChatFormatting.AQUA + "Voice pipeline statistics:");
+            for (String line : metrics.getReport()) {
+                sender.addChatMessage(new ChatComponentText(EnumChatFormatting.GRAY + line));
+            }
+            return;
+        }
+
         GuiOpener.openGuiNextTick(new GuiVoiceChat());
     }
 
+    private void sendMessage(ICommandSender sender, String message) {
+        sender.addChatMessage(new ChatComponentText(EnumChatFormatting.DARK_PURPLE + "[VoiceChat] " + EnumChatFormatting.RESET + message));
+    }
+
     @Override
     public boolean canCommandSenderUseCommand(ICommandSender sender) {
         return true;
@@ -1,6 +1,7 @@
 package com.raven.client.voicechat.gui;
 
 import com.raven.client.gui.components.RenderUtils;
+import com.raven.client.gui.components.ScrollingList;
 import com.raven.client.voicechat.VoiceChatManager;
 import com.raven.client.voicechat.model.VoiceRoom;
 import com.raven.client.voicechat.model.VoiceUser;
@@ -8,6 +9,7 @@ import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.client.gui.GuiTextField;
 import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -25,7 +27,12 @@ public class GuiVoiceChat extends GuiScreen {
     private VoiceChatManager voiceManager;
     
     // Current view mode
-    private String viewMode = "main"; // "main", "rooms", "settings", "create_room"
+    private String viewMode = "main"; // "main", "rooms", "settings", "create_room", "stats"
+    
+    // Stats view: the report is formatted a few times a second, not every frame
+    private static final long STATS_REFRESH_MS = 250;
+    private List<String> statsLines = new ArrayList<>();
+    private long statsBuiltAt = 0;
     
     // GUI components
     private GuiTextField roomNameField;
@@ -33,7 +40,28 @@ public class GuiVoiceChat extends GuiScreen {
     
     // Room list
     private List<RoomListEntry> availableRooms = new ArrayList<>();
-    private int roomListScroll = 0;
+    // Layout is the user count line
+    private final ScrollingList<RoomListEntry, String> roomList = new ScrollingList<>(35,
+        new ScrollingList.Renderer<RoomListEntry, String>() {
+            @Override
+            public String layout(RoomListEntry room, int width) {
+                return room.userCount + "/" + room.maxUsers + " users";
+            }
+            
+            @Override
+            public void draw(RoomListEntry room, String users, int x, int y, int width, boolean hover, int mouseX, int mouseY) {
+                int bgColor = hover ? 0xFF3a3a4a : 0xFF2a2a3a;
+                RenderUtils.drawRect(x, y, x + width, y + 30, bgColor);
+                
+                net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+                fontRendererObj.drawString(room.name, x + 5, y + 5, 0xFFFFFF);
+                fontRendererObj.drawString(users, x + 5, y + 17, 0x888888);
+                
+                if (room.isPartyRoom) {
+                    fontRendererObj.drawString("[Party]", x + width - 50, y + 10, 0x88FF88);
+                }
+            }
+        });
     
     // Status messages
     private String statusMessage = "";
@@ -93,6 +121,13 @@ public class GuiVoiceChat extends GuiScreen {
         this.buttonList.add(new GuiButton(41, PANEL_X + 120, PANEL_Y + 250, 100, 20, 
             voiceManager.isUsePushToTalk() ? "PTT: ON" : "PTT: OFF"));
         this.buttonList.add(new GuiButton(42, PANEL_X + 230, PANEL_Y + 250, 100, 20, "Back"));
+        this.buttonList.add(new GuiButton(43, PANEL_X + 340, PANEL_Y + 250, 100, 20, 
+            voiceManager.isProximityEnabled() ? "Proximity: ON" : "Proximity: OFF"));
+        this.buttonList.add(new GuiButton(44, PANEL_X + 340, PANEL_Y + 220, 100, 20, "Statistics"));
+        
+        // Statistics buttons
+        this.buttonList.add(new GuiButton(50, PANEL_X + 10, PANEL_Y + 250, 100, 20, "Reset"));
+        this.buttonList.add(new GuiButton(51, PANEL_X + 120, PANEL_Y + 250, 100, 20, "Back"));
         
         updateButtonVisibility();
     }
@@ -112,7 +147,10 @@ public class GuiVoiceChat extends GuiScreen {
                     visible = btn.id >= 30 && btn.id <= 31;
                     break;
                 case "settings":
-                    visible = btn.id >= 40 && btn.id <= 42;
+                    visible = btn.id >= 40 && btn.id <= 44;
+                    break;
+                case "stats":
+                    visible = btn.id >= 50 && btn.id <= 51;
                     break;
             }
             
@@ -129,6 +167,8 @@ public class GuiVoiceChat extends GuiScreen {
                 btn.displayString = voiceManager.isDeafened() ? "Undeafen" : "Deafen";
             } else if (btn.id == 41) {
                 btn.displayString = voiceManager.isUsePushToTalk() ? "PTT: ON" : "PTT: OFF";
+            } else if (btn.id == 43) {
+                btn.displayString = voiceManager.isProximityEnabled() ? "Proximity: ON" : "Proximity: OFF";
             }
         }
     }
@@ -151,8 +191,8 @@ public class GuiVoiceChat extends GuiScreen {
         this.fontRendererObj.drawString("Voice Chat", PANEL_X + 15, PANEL_Y + 15, 0xFFFFFF);
         
         // Connection status indicator
-        int statusColor = voiceManager.isConnected() ? 0xFF55FF55 : 0xFFFF5555;
-        String statusText = voiceManager.isConnected() ? "Connected" : "Disconnected";
+        int statusColor = voiceManager.isReconnecting() ? 0xFFFFFF55 : voiceManager.isConnected() ? 0xFF55FF55 : 0xFFFF5555;
+        String statusText = voiceManager.isReconnecting() ? "Reconnecting..." : voiceManager.isConnected() ? "Connected" : "Disconnected";
         int statusWidth = this.fontRendererObj.getStringWidth(statusText);
         RenderUtils.drawRect(PANEL_X + panelWidth - statusWidth - 30, PANEL_Y + 10, 
             PANEL_X + panelWidth - 10, PANEL_Y + 30, 0xFF2a2a3a);
@@ -172,6 +212,9 @@ public class GuiVoiceChat extends GuiScreen {
             case "settings":
                 drawSettingsView(mouseX, mouseY, panelWidth, panelHeight);
                 break;
+            case "stats":
+                drawStatsView(mouseX, mouseY, panelWidth, panelHeight);
+                break;
         }
         
         // Draw status message
@@ -259,7 +302,7 @@ public class GuiVoiceChat extends GuiScreen {
             int meterColor;
             if (voiceManager.isMuted()) {
                 meterColor = 0xFF555555;
-            } else if (voiceManager.isPushToTalkActive() || (!voiceManager.isUsePushToTalk() && level > 0.02f)) {
+            } else if (voiceManager.isPushToTalkActive() || (!voiceManager.isUsePushToTalk() && voiceManager.isVoiceDetected())) {
                 meterColor = 0xFF55FF55; // Bright green when transmitting
             } else {
                 meterColor = 0xFF55AA55; // Normal green
@@ -288,26 +331,10 @@ public class GuiVoiceChat extends GuiScreen {
             this.fontRendererObj.drawString("Create a new room or join via Party Finder", 
                 PANEL_X + 15, contentY + 65, 0x666666);
         } else {
-            for (int i = roomListScroll; i < Math.min(roomListScroll + 6, availableRooms.size()); i++) {
-                RoomListEntry room = availableRooms.get(i);
-                
-                boolean hover = mouseX >= PANEL_X + 15 && mouseX < PANEL_X + panelWidth - 30 &&
-                               mouseY >= contentY && mouseY < contentY + 30;
-                
-                int bgColor = hover ? 0xFF3a3a4a : 0xFF2a2a3a;
-                RenderUtils.drawRect(PANEL_X + 15, contentY, PANEL_X + panelWidth - 30, contentY + 30, bgColor);
-                
-                net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
-                this.fontRendererObj.drawString(room.name, PANEL_X + 20, contentY + 5, 0xFFFFFF);
-                this.fontRendererObj.drawString(room.userCount + "/" + room.maxUsers + " users", 
-                    PANEL_X + 20, contentY + 17, 0x888888);
-                
-                if (room.isPartyRoom) {
-                    this.fontRendererObj.drawString("[Party]", PANEL_X + panelWidth - 80, contentY + 10, 0x88FF88);
-                }
-                
-                contentY += 35;
-            }
+            // Six rows tall, as before the list scrolled
+            roomList.setBounds(PANEL_X + 15, contentY, panelWidth - 45, 6 * 35 - 5);
+            roomList.setRows(availableRooms);
+            roomList.draw(mouseX, mouseY);
         }
     }
     
@@ -358,6 +385,32 @@ public class GuiVoiceChat extends GuiScreen {
         contentY += 20;
         this.fontRendererObj.drawString("Output Volume: " + (int)(voiceManager.getOutputVolume() * 100) + "%", 
             PANEL_X + 15, contentY, 0xAAAAAA);
+        
+        contentY += 20;
+        this.fontRendererObj.drawString("Proximity Range: " + (int) voiceManager.getProximityRange() + " blocks (dungeons)", 
+            PANEL_X + 15, contentY, 0xAAAAAA);
+    }
+    
+    private void drawStatsView(int mouseX, int mouseY, int panelWidth, int panelHeight) {
+        int contentY = PANEL_Y + 60;
+        
+        net.minecraft.client.renderer.GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+        this.fontRendererObj.drawString("Voice Pipeline Statistics", PANEL_X + 15, contentY, 0xFFFFFF);
+        
+        long now = System.currentTimeMillis();
+        if (now - statsBuiltAt >= STATS_REFRESH_MS) {
+            statsLines = voiceManager.getMetrics().getReport();
+            statsBuiltAt = now;
+        }
+        
+        contentY += 20;
+        for (String line : statsLines) {
+            if (contentY > PANEL_Y + 240) {
+                break;
+            }
+            this.fontRendererObj.drawString(line, PANEL_X + 15, contentY, 0xAAAAAA);
+            contentY += 10;
+        }
     }
     
     @Override
@@ -431,6 +484,22 @@ public class GuiVoiceChat extends GuiScreen {
             case 42: // Back
                 viewMode = "main";
                 break;
+                
+            case 43: // Toggle proximity voice
+                voiceManager.setProximityEnabled(!voiceManager.isProximityEnabled());
+                break;
+            case 44: // Statistics
+                viewMode = "stats";
+                break;
+                
+            // Statistics
+            case 50: // Reset
+                voiceManager.getMetrics().reset();
+                setStatus("Statistics reset");
+                break;
+            case 51: // Back
+                viewMode = "settings";
+                break;
         }
         
         updateButtonVisibility();
@@ -474,22 +543,28 @@ public class GuiVoiceChat extends GuiScreen {
             authTokenField.mouseClicked(mouseX, mouseY, mouseButton);
         } else if (viewMode.equals("rooms")) {
             // Handle room list clicks
-            int contentY = PANEL_Y + 80;
-            for (int i = roomListScroll; i < Math.min(roomListScroll + 6, availableRooms.size()); i++) {
-                if (mouseX >= PANEL_X + 15 && mouseX < PANEL_X + this.width - 130 &&
-                    mouseY >= contentY && mouseY < contentY + 30) {
-                    
-                    RoomListEntry room = availableRooms.get(i);
-                    voiceManager.joinRoom(room.id);
-                    viewMode = "main";
-                    setStatus("Joining room: " + room.name);
-                    break;
-                }
-                contentY += 35;
+            int index = roomList.rowAt(mouseX, mouseY);
+            if (index >= 0 && mouseY < roomList.rowTop(index) + 30) {
+                RoomListEntry room = roomList.getRow(index);
+                voiceManager.joinRoom(room.id);
+                viewMode = "main";
+                setStatus("Joining room: " + room.name);
             }
         }
     }
     
+    @Override
+    public void handleMouseInput() throws IOException {
+        super.handleMouseInput();
+        
+        int scroll = Mouse.getEventDWheel();
+        if (scroll != 0 && viewMode.equals("rooms")) {
+            int mouseX = Mouse.getEventX() * this.width / this.mc.displayWidth;
+            int mouseY = this.height - Mouse.getEventY() * this.height / this.mc.displayHeight - 1;
+            roomList.handleWheel(mouseX, mouseY, scroll);
+        }
+    }
+    
     @Override
     public void handleKeyboardInput() throws IOException {
         super.handleKeyboardInput();
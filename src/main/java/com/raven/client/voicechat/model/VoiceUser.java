@@ -8,12 +8,16 @@ public class VoiceUser {
     private final String userId; // Discord user ID or server-assigned ID
     private String displayName;
     private String discordName;
+    private String minecraftName;
     
     private boolean muted;
     private boolean deafened;
     private boolean talking;
     private float volume;
     
+    // Per-room index the server stamps on this user's audio packets, -1 if unknown
+    private int speakerIndex = -1;
+    
     public VoiceUser(String userId, String displayName, String discordName) {
         this.userId = userId;
         this.displayName = displayName != null ? displayName : "Unknown";
@@ -36,6 +40,14 @@ public class VoiceUser {
         this.discordName = discordName;
     }
     
+    public String getMinecraftName() {
+        return minecraftName;
+    }
+    
+    public void setMinecraftName(String minecraftName) {
+        this.minecraftName = minecraftName;
+    }
+    
     public String getDisplayName() {
         return displayName;
     }
@@ -76,6 +88,14 @@ public class VoiceUser {
         this.volume = volume;
     }
     
+    public int getSpeakerIndex() {
+        return speakerIndex;
+    }
+    
+    public void setSpeakerIndex(int speakerIndex) {
+        this.speakerIndex = speakerIndex;
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof VoiceUser) {
@@ -0,0 +1,224 @@
+package com.raven.client.voicechat.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary framing for voice server control messages.
+ *
+ * Every frame is [length(varint)] [opcode(1)] [payload], where length counts
+ * the opcode and payload. Frequent messages (heartbeats, mute/deafen state,
+ * user left) have fixed binary layouts; everything else travels as an
+ * {@link #OP_JSON} frame whose payload is the usual JSON envelope, so new
+ * message types keep working without a protocol bump.
+ *
+ * Strings are [length(u16)] [UTF-8 bytes], booleans a single byte, speaker
+ * lists [count(u16)] [speaker_index(u16)]...
+ *
+ * Servers that support session resume append [event_seq(u32)] to room
+ * state frames, and a heartbeat may carry [ack(u32)], the last event the
+ * client applied.
+ */
+public final class ControlProtocol {
+
+    // Protocol names offered in the JSON hello
+    public static final String PROTOCOL_BINARY = "binary-v1";
+    public static final String PROTOCOL_JSON = "json";
+
+    // Client -> server
+    public static final byte OP_HEARTBEAT = 0x01;
+    public static final byte OP_MUTE_STATE = 0x02;
+    public static final byte OP_DEAFEN_STATE = 0x03;
+    public static final byte OP_JOIN_ROOM = 0x04;
+    public static final byte OP_LEAVE_ROOM = 0x05;
+    public static final byte OP_LIST_ROOMS = 0x06;
+    public static final byte OP_DISCONNECT = 0x07;
+    public static final byte OP_SUBSCRIBE = 0x08;
+
+    // Server -> client
+    public static final byte OP_HEARTBEAT_ACK = 0x41;
+    public static final byte OP_USER_MUTE_STATE = 0x42;
+    public static final byte OP_USER_DEAFEN_STATE = 0x43;
+    public static final byte OP_USER_LEFT = 0x44;
+    public static final byte OP_LEFT_ROOM = 0x45;
+
+    // Either direction: JSON envelope {"type": ..., "data": ...}
+    public static final byte OP_JSON = 0x7F;
+
+    // Largest frame either side will accept
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    private ControlProtocol() {
+    }
+
+    /**
+     * Encode a control message as a binary frame, using the compact layout
+     * when the type has one
+     *
+     * @param envelope The JSON form of the message, used for other types
+     */
+    public static ByteBuffer encode(String type, JsonObject data, String envelope) {
+        switch (type) {
+            case "heartbeat":
+                if (data.has("ack")) {
+                    return frame(OP_HEARTBEAT, 4).putInt((int) data.get("ack").getAsLong()).build();
+                }
+                return frame(OP_HEARTBEAT, 0).build();
+            case "leave_room":
+                return frame(OP_LEAVE_ROOM, 0).build();
+            case "list_rooms":
+                return frame(OP_LIST_ROOMS, 0).build();
+            case "disconnect":
+                return frame(OP_DISCONNECT, 0).build();
+            case "mute_state":
+                if (data.has("muted")) {
+                    return frame(OP_MUTE_STATE, 1).putBoolean(data.get("muted").getAsBoolean()).build();
+                }
+                break;
+            case "deafen_state":
+                if (data.has("deafened")) {
+                    return frame(OP_DEAFEN_STATE, 1).putBoolean(data.get("deafened").getAsBoolean()).build();
+                }
+                break;
+            case "subscribe":
+                if (data.has("speakers")) {
+                    JsonArray speakers = data.getAsJsonArray("speakers");
+                    FrameWriter frame = frame(OP_SUBSCRIBE, 2 + 2 * speakers.size()).putShort(speakers.size());
+                    for (JsonElement speaker : speakers) {
+                        frame.putShort(speaker.getAsInt());
+                    }
+                    return frame.build();
+                }
+                break;
+            case "join_room":
+                if (data.has("room_id")) {
+                    byte[] roomId = utf8(data.get("room_id").getAsString());
+                    return frame(OP_JOIN_ROOM, 2 + roomId.length).putString(roomId).build();
+                }
+                break;
+        }
+
+        byte[] json = utf8(envelope);
+        return frame(OP_JSON, json.length).put(json).build();
+    }
+
+    /**
+     * Try to read the length prefix of the next frame
+     *
+     * @return Body length, or -1 if the prefix is not complete yet. The
+     *         buffer position is left after the prefix only on success.
+     * @throws ProtocolException If the prefix runs past five bytes
+     */
+    public static int readLength(ByteBuffer in) throws ProtocolException {
+        int start = in.position();
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!in.hasRemaining()) {
+                in.position(start);
+                return -1;
+            }
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Malformed control frame length");
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    public static boolean readBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+
+    /**
+     * Read the event number trailing a room state frame
+     *
+     * @return The number, or -1 if the server did not append one
+     */
+    public static long readEventSeq(ByteBuffer in) {
+        return in.remaining() >= 4 ? in.getInt() & 0xFFFFFFFFL : -1;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static FrameWriter frame(byte opcode, int payloadLength) {
+        return new FrameWriter(opcode, payloadLength);
+    }
+
+    /**
+     * Builds one frame into an exactly sized buffer
+     */
+    private static final class FrameWriter {
+        private final ByteBuffer buffer;
+
+        FrameWriter(byte opcode, int payloadLength) {
+            int bodyLength = 1 + payloadLength;
+            buffer = ByteBuffer.allocate(varIntSize(bodyLength) + bodyLength);
+            int value = bodyLength;
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+            buffer.put(opcode);
+        }
+
+        FrameWriter put(byte[] bytes) {
+            buffer.put(bytes);
+            return this;
+        }
+
+        FrameWriter putShort(int value) {
+            buffer.putShort((short) value);
+            return this;
+        }
+
+        FrameWriter putInt(int value) {
+            buffer.putInt(value);
+            return this;
+        }
+
+        FrameWriter putBoolean(boolean value) {
+            buffer.put((byte) (value ? 1 : 0));
+            return this;
+        }
+
+        FrameWriter putString(byte[] utf8) {
+            buffer.putShort((short) utf8.length);
+            buffer.put(utf8);
+            return this;
+        }
+
+        ByteBuffer build() {
+            buffer.flip();
+            return buffer;
+        }
+
+        private static int varIntSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                size++;
+            }
+            return size;
+        }
+    }
+}
@@ -4,57 +4,134 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.raven.client.voicechat.VoiceChatManager;
+import com.raven.client.voicechat.audio.OpusCodec;
 import com.raven.client.voicechat.model.VoiceRoom;
 import com.raven.client.voicechat.model.VoiceUser;
 import net.minecraft.client.Minecraft;
 
-import java.io.*;
+import java.io.IOException;
 import java.net.*;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Handles network communication with the voice server.
- * Uses WebSocket for control messages and UDP for audio.
+ *
+ * A single network thread multiplexes the TCP control channel and the UDP
+ * audio channel on one selector, and also drives heartbeats, so a connected
+ * client costs one thread. Control messages use the compact binary framing
+ * in {@link ControlProtocol} when the server agrees to it in the initial
+ * hello, and newline-delimited JSON otherwise.
+ *
+ * If the control connection drops after authenticating, the UDP channel and
+ * the room state are kept while the client reconnects with exponential
+ * backoff. Servers that hand out a resume token then continue the session
+ * and replay only the room events numbered after the last one we applied;
+ * otherwise the client authenticates afresh and rejoins its room.
  */
 public class VoiceClient {
     
     private final VoiceChatManager manager;
     private final Gson gson = new Gson();
     
-    // WebSocket connection (simulated with TCP socket for simplicity)
-    private Socket controlSocket;
-    private BufferedReader controlIn;
-    private PrintWriter controlOut;
+    // Only used on the network thread
+    private final JsonParser jsonParser = new JsonParser();
     
-    // UDP connection for audio
-    private DatagramSocket audioSocket;
+    // Control channel (TCP)
+    private volatile SocketChannel controlChannel;
+    private ByteBuffer controlReadBuffer;
+    private final Queue<ByteBuffer> controlWriteQueue = new ConcurrentLinkedQueue<>();
+    
+    // Audio channel (UDP), connected to the server's audio port
+    private volatile DatagramChannel audioChannel;
     private InetAddress serverAddress;
     private int serverUdpPort;
     
     // Threading
-    private ExecutorService executor;
-    private ScheduledExecutorService heartbeatScheduler;
-    private ScheduledFuture<?> heartbeatTask;
+    private volatile Selector selector;
+    private Thread networkThread;
     private AtomicBoolean running = new AtomicBoolean(false);
     
     // Heartbeat interval (20 seconds)
     private static final int HEARTBEAT_INTERVAL = 20000;
     
+    // Connection and protocol negotiation timeouts
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int NEGOTIATION_TIMEOUT = 2000;
+    
+    // The control connection is presumed dead after this long without hearing from the server
+    private static final int CONTROL_SILENCE_TIMEOUT = HEARTBEAT_INTERVAL * 2 + 5000;
+    
+    // Reconnect backoff after the control connection drops, and how long to
+    // keep trying before tearing the session down
+    private static final int RECONNECT_INITIAL_DELAY = 500;
+    private static final int RECONNECT_MAX_DELAY = 15000;
+    private static final int RECONNECT_WINDOW = 60000;
+    
+    private static final int INITIAL_CONTROL_BUFFER = 16 * 1024;
+    
+    // Control protocol state, owned by the network thread
+    private volatile boolean binaryProtocol = false;
+    private boolean negotiating = false;
+    private long negotiationDeadline;
+    private String authToken;
+    private long lastControlReceive;
+    
+    // Reconnect state, owned by the network thread
+    private boolean authenticated = false;
+    private volatile boolean reconnecting = false;
+    private long interruptedAt;
+    private int reconnectAttempts;
+    private String resumeToken;
+    
+    // Number of the last room state event applied, acknowledged with every
+    // heartbeat and sent when resuming
+    private long lastEventSeq = 0;
+    
     // Session
     private String sessionId;
+    private volatile byte[] sessionIdBytes;
     private UUID localUserId;
     
     // Packet types
     private static final byte PACKET_AUDIO = 0x01;
     private static final byte PACKET_TALKING_START = 0x02;
     private static final byte PACKET_TALKING_STOP = 0x03;
+    private static final byte PACKET_AUDIO_SEQUENCED = 0x04;
+    private static final byte PACKET_AUDIO_COMPACT = 0x05;
+    private static final byte PACKET_KEEPALIVE = 0x06;
+    
+    private static final int SESSION_ID_LENGTH = 36;
+    private static final int LEGACY_AUDIO_HEADER_LENGTH = 1 + SESSION_ID_LENGTH;
+    // [type(1)] [session_id(36)] [sequence(2)] [timestamp(4)]
+    private static final int AUDIO_HEADER_LENGTH = LEGACY_AUDIO_HEADER_LENGTH + 2 + 4;
+    // [type(1)] [speaker_index(2)] [sequence(2)] [timestamp(4)]
+    private static final int COMPACT_AUDIO_HEADER_LENGTH = 1 + 2 + 2 + 4;
+    
+    // Our speaker index in the current room, assigned by the server on join; -1 until then
+    private volatile int localSpeakerIndex = -1;
+    
+    // Sequence number of the next outgoing audio packet
+    private int audioSequence = 0;
+    
+    // Outgoing audio packet, reused for every frame
+    private final byte[] sendBuffer = new byte[AUDIO_HEADER_LENGTH + OpusCodec.MAX_PACKET_BYTES];
+    private final ByteBuffer sendByteBuffer = ByteBuffer.wrap(sendBuffer);
+    
+    // Incoming audio packet, reused for every datagram
+    private final byte[] receiveBuffer = new byte[AUDIO_HEADER_LENGTH + OpusCodec.MAX_PACKET_BYTES];
+    private final ByteBuffer receiveByteBuffer = ByteBuffer.wrap(receiveBuffer);
     
     public VoiceClient(VoiceChatManager manager) {
         this.manager = manager;
@@ -68,87 +145,409 @@ public class VoiceClient {
             disconnect();
         }
         
-        executor = Executors.newFixedThreadPool(3);
+        // Get local player UUID
+        if (manager.getLocalPlayerId() != null) {
+            localUserId = manager.getLocalPlayerId();
+        } else if (Minecraft.getMinecraft().thePlayer != null) {
+            localUserId = Minecraft.getMinecraft().thePlayer.getUniqueID();
+        } else {
+            localUserId = UUID.randomUUID();
+        }
         
-        executor.submit(() -> {
+        this.authToken = authToken;
+        binaryProtocol = false;
+        authenticated = false;
+        reconnecting = false;
+        resumeToken = null;
+        lastEventSeq = 0;
+        
+        running.set(true);
+        controlWriteQueue.clear();
+        
+        networkThread = new Thread(() -> networkLoop(host, wsPort, udpPort), "VoiceChat-Network");
+        networkThread.setDaemon(true);
+        networkThread.start();
+    }
+    
+    /**
+     * Disconnect from the voice server
+     */
+    public void disconnect() {
+        boolean wasRunning = running.getAndSet(false);
+        
+        // Say goodbye; the network thread flushes it before closing
+        if (wasRunning && controlChannel != null) {
+            sendControl("disconnect", new JsonObject());
+        }
+        
+        Selector sel = selector;
+        if (sel != null) {
+            sel.wakeup();
+        }
+        
+        Thread thread = networkThread;
+        if (thread != null && thread != Thread.currentThread()) {
             try {
-                // Get local player UUID
-                if (Minecraft.getMinecraft().thePlayer != null) {
-                    localUserId = Minecraft.getMinecraft().thePlayer.getUniqueID();
-                } else {
-                    localUserId = UUID.randomUUID();
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+        networkThread = null;
+        
+        setSessionId(null);
+        localSpeakerIndex = -1;
+        binaryProtocol = false;
+        authenticated = false;
+        reconnecting = false;
+        resumeToken = null;
+        
+        manager.onConnectionStateChanged(false);
+    }
+    
+    /**
+     * Network thread: connect, then serve both channels until disconnected.
+     * The control connection is reopened whenever it drops; the audio
+     * channel lives for the whole session.
+     */
+    private void networkLoop(String host, int tcpPort, int udpPort) {
+        Selector sel = null;
+        SocketChannel control = null;
+        DatagramChannel audio = null;
+        
+        try {
+            serverAddress = InetAddress.getByName(host);
+            serverUdpPort = udpPort;
+            
+            sel = Selector.open();
+            selector = sel;
+            controlReadBuffer = ByteBuffer.allocate(INITIAL_CONTROL_BUFFER);
+            
+            // Connect UDP channel
+            audio = DatagramChannel.open();
+            audio.configureBlocking(false);
+            audio.connect(new InetSocketAddress(serverAddress, serverUdpPort));
+            audio.register(sel, SelectionKey.OP_READ);
+            audioChannel = audio;
+            
+            long reconnectAt = 0;
+            long connectDeadline = Long.MAX_VALUE;
+            long nextHeartbeat = Long.MAX_VALUE;
+            
+            while (running.get()) {
+                long now = System.currentTimeMillis();
+                if (control == null && now >= reconnectAt) {
+                    control = openControl(sel, tcpPort);
+                    connectDeadline = now + CONNECT_TIMEOUT;
                 }
                 
-                // Connect control socket (TCP)
-                serverAddress = InetAddress.getByName(host);
-                controlSocket = new Socket(serverAddress, wsPort);
-                controlSocket.setSoTimeout(0); // No timeout - we use heartbeats
-                controlSocket.setKeepAlive(true);
-                controlIn = new BufferedReader(new InputStreamReader(controlSocket.getInputStream()));
-                controlOut = new PrintWriter(controlSocket.getOutputStream(), true);
-                
-                // Connect UDP socket
-                audioSocket = new DatagramSocket();
-                audioSocket.setSoTimeout(100); // Short timeout for non-blocking receives
-                serverUdpPort = udpPort;
-                
-                running.set(true);
-                
-                // Send authentication
-                sendAuth(authToken);
+                long wakeAt = Math.min(nextHeartbeat, negotiating ? negotiationDeadline : Long.MAX_VALUE);
+                if (control == null) {
+                    wakeAt = Math.min(wakeAt, reconnectAt);
+                } else if (controlChannel == null) {
+                    wakeAt = Math.min(wakeAt, connectDeadline);
+                }
+                sel.select(Math.max(1, Math.min(wakeAt - now, HEARTBEAT_INTERVAL)));
                 
-                // Start receive threads
-                executor.submit(this::controlReceiveLoop);
-                executor.submit(this::audioReceiveLoop);
+                String lostReason = null;
+                Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    
+                    if (key.channel() == audio) {
+                        readAudio(audio);
+                        continue;
+                    }
+                    
+                    try {
+                        if (key.isConnectable() && control.finishConnect()) {
+                            key.interestOps(SelectionKey.OP_READ);
+                            controlChannel = control;
+                            lastControlReceive = System.currentTimeMillis();
+                            nextHeartbeat = lastControlReceive + HEARTBEAT_INTERVAL;
+                            startNegotiation();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            if (!readControl(control)) {
+                                lostReason = "closed by server";
+                            }
+                            lastControlReceive = System.currentTimeMillis();
+                        }
+                    } catch (IOException e) {
+                        lostReason = e.getMessage();
+                    }
+                }
                 
-                // Start heartbeat
-                startHeartbeat();
+                now = System.currentTimeMillis();
+                if (lostReason == null && control != null) {
+                    if (controlChannel == null && now >= connectDeadline) {
+                        lostReason = "connection timed out";
+                    } else if (controlChannel != null && now - lastControlReceive > CONTROL_SILENCE_TIMEOUT) {
+                        lostReason = "server stopped responding";
+                    }
+                }
+                if (lostReason == null && negotiating && now >= negotiationDeadline) {
+                    // Server did not answer the hello; it only speaks JSON
+                    finishNegotiation(false);
+                }
+                if (now >= nextHeartbeat) {
+                    if (controlChannel != null) {
+                        sendHeartbeat();
+                    }
+                    // Keep the audio path open even while the control channel is down
+                    sendKeepalive();
+                    nextHeartbeat = now + HEARTBEAT_INTERVAL;
+                }
                 
-                manager.onConnectionStateChanged(true);
+                if (lostReason == null && control != null) {
+                    try {
+                        flushControl(control, sel);
+                    } catch (IOException e) {
+                        lostReason = e.getMessage();
+                    }
+                }
                 
-            } catch (Exception e) {
+                if (lostReason != null && running.get()) {
+                    closeQuietly(control);
+                    control = null;
+                    long delay = onControlLost(lostReason);
+                    if (delay < 0) {
+                        disconnect();
+                        break;
+                    }
+                    reconnectAt = System.currentTimeMillis() + delay;
+                }
+            }
+            
+            // Best effort flush of the goodbye message
+            if (controlChannel != null) {
+                flushControl(control, sel);
+            }
+            
+        } catch (Exception e) {
+            if (running.get()) {
                 System.err.println("[VoiceChat] Failed to connect: " + e.getMessage());
                 e.printStackTrace();
                 disconnect();
             }
-        });
+        } finally {
+            controlChannel = null;
+            audioChannel = null;
+            selector = null;
+            closeQuietly(control);
+            closeQuietly(audio);
+            closeQuietly(sel);
+            controlWriteQueue.clear();
+        }
     }
     
     /**
-     * Disconnect from the voice server
+     * Start connecting the control channel (TCP)
      */
-    public void disconnect() {
-        running.set(false);
+    private SocketChannel openControl(Selector sel, int tcpPort) throws IOException {
+        SocketChannel control = SocketChannel.open();
+        control.configureBlocking(false);
+        control.socket().setKeepAlive(true);
+        control.socket().setTcpNoDelay(true);
+        control.connect(new InetSocketAddress(serverAddress, tcpPort));
+        control.register(sel, SelectionKey.OP_CONNECT);
+        controlReadBuffer.clear();
+        return control;
+    }
+    
+    /**
+     * Forget the dropped control connection and decide when to retry
+     *
+     * @return Milliseconds until the next attempt, or -1 to give up
+     */
+    private long onControlLost(String reason) {
+        controlChannel = null;
+        negotiating = false;
+        // The next connection negotiates again, starting in JSON
+        binaryProtocol = false;
+        controlWriteQueue.clear();
         
-        // Stop heartbeat
-        stopHeartbeat();
+        if (!authenticated) {
+            // Never had a session, so there is nothing to get back to
+            System.err.println("[VoiceChat] Failed to connect: " + reason);
+            return -1;
+        }
         
-        try {
-            if (controlSocket != null && !controlSocket.isClosed()) {
-                sendControl("disconnect", new JsonObject());
-                controlSocket.close();
+        long now = System.currentTimeMillis();
+        if (!reconnecting) {
+            reconnecting = true;
+            interruptedAt = now;
+            reconnectAttempts = 0;
+            System.err.println("[VoiceChat] Control connection lost (" + reason + "), reconnecting");
+            manager.onConnectionInterrupted();
+        } else if (now - interruptedAt > RECONNECT_WINDOW) {
+            System.err.println("[VoiceChat] Could not reconnect, giving up: " + reason);
+            return -1;
+        }
+        
+        long delay = Math.min(RECONNECT_MAX_DELAY, (long) RECONNECT_INITIAL_DELAY << Math.min(reconnectAttempts, 5));
+        reconnectAttempts++;
+        // Spread clients out so a restarting server is not hit by all of them at once
+        return delay + ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+    }
+    
+    /**
+     * Offer the binary protocol before authenticating
+     */
+    private void startNegotiation() {
+        // Anything queued while the connection was down is stale; state is
+        // re-sent once the session is back
+        controlWriteQueue.clear();
+        // Every connection starts out in JSON until the server accepts binary
+        binaryProtocol = false;
+        negotiating = true;
+        negotiationDeadline = System.currentTimeMillis() + NEGOTIATION_TIMEOUT;
+        
+        JsonObject data = new JsonObject();
+        com.google.gson.JsonArray protocols = new com.google.gson.JsonArray();
+        protocols.add(new com.google.gson.JsonPrimitive(ControlProtocol.PROTOCOL_BINARY));
+        protocols.add(new com.google.gson.JsonPrimitive(ControlProtocol.PROTOCOL_JSON));
+        data.add("protocols", protocols);
+        queueControl("hello", data);
+    }
+    
+    /**
+     * Settle the control protocol and start the session
+     */
+    private void finishNegotiation(boolean binary) {
+        if (!negotiating) {
+            return;
+        }
+        negotiating = false;
+        binaryProtocol = binary;
+        System.out.println("[VoiceChat] Control protocol: " + (binary ? ControlProtocol.PROTOCOL_BINARY : ControlProtocol.PROTOCOL_JSON));
+        
+        if (reconnecting && resumeToken != null) {
+            sendResume();
+        } else {
+            // Send authentication
+            sendAuth(authToken);
+            if (!reconnecting) {
+                manager.onConnectionStateChanged(true);
+            }
+        }
+    }
+    
+    /**
+     * Read whatever the control channel has and dispatch complete messages
+     *
+     * @return false if the server closed the connection
+     */
+    private boolean readControl(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = controlReadBuffer;
+        int read;
+        while ((read = channel.read(buffer)) > 0) {
+            if (!buffer.hasRemaining()) {
+                if (buffer.capacity() >= ControlProtocol.MAX_FRAME_LENGTH) {
+                    throw new IOException("Control message too large");
+                }
+                // Grow for an unusually large message
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                controlReadBuffer = buffer = larger;
             }
-        } catch (Exception e) {
-            // Ignore
         }
         
+        buffer.flip();
         try {
-            if (audioSocket != null && !audioSocket.isClosed()) {
-                audioSocket.close();
+            while (buffer.hasRemaining() && running.get()) {
+                if (binaryProtocol) {
+                    int start = buffer.position();
+                    int length = ControlProtocol.readLength(buffer);
+                    if (length < 0 || buffer.remaining() < length) {
+                        buffer.position(start);
+                        break;
+                    }
+                    if (length < 1 || length > ControlProtocol.MAX_FRAME_LENGTH) {
+                        throw new IOException("Bad control frame length " + length);
+                    }
+                    int end = buffer.position() + length;
+                    int limit = buffer.limit();
+                    buffer.limit(end);
+                    try {
+                        handleBinaryFrame(buffer);
+                    } catch (BufferUnderflowException e) {
+                        // Payload shorter than its opcode needs; drop the connection and resume
+                        throw new ProtocolException("Truncated control frame");
+                    } finally {
+                        buffer.limit(limit);
+                    }
+                    buffer.position(end);
+                } else {
+                    int newline = indexOf(buffer, (byte) '\n');
+                    if (newline < 0) {
+                        break;
+                    }
+                    String line = new String(buffer.array(), buffer.position(), newline - buffer.position(), StandardCharsets.UTF_8);
+                    buffer.position(newline + 1);
+                    if (!line.trim().isEmpty()) {
+                        handleControlMessage(line);
+                    }
+                }
             }
-        } catch (Exception e) {
-            // Ignore
+        } finally {
+            buffer.compact();
         }
         
-        if (executor != null) {
-            executor.shutdownNow();
+        return read >= 0;
+    }
+    
+    /**
+     * Write queued control messages without blocking; whatever does not fit
+     * waits for the channel to become writable
+     */
+    private void flushControl(SocketChannel channel, Selector sel) throws IOException {
+        if (controlChannel == null) {
+            return;
         }
         
-        controlSocket = null;
-        audioSocket = null;
-        sessionId = null;
+        ByteBuffer next;
+        while ((next = controlWriteQueue.peek()) != null) {
+            channel.write(next);
+            if (next.hasRemaining()) {
+                break;
+            }
+            controlWriteQueue.poll();
+        }
         
-        manager.onConnectionStateChanged(false);
+        SelectionKey key = channel.keyFor(sel);
+        if (key != null && key.isValid()) {
+            int ops = controlWriteQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+    }
+    
+    private static int indexOf(ByteBuffer buffer, byte value) {
+        byte[] array = buffer.array();
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
     }
     
     /**
@@ -159,7 +558,8 @@ public class VoiceClient {
         data.addProperty("token", authToken);
         data.addProperty("uuid", localUserId.toString());
         
-        String mcName = Minecraft.getMinecraft().thePlayer != null ? 
+        String mcName = manager.getLocalPlayerName() != null ? manager.getLocalPlayerName() :
+                        Minecraft.getMinecraft().thePlayer != null ? 
                         Minecraft.getMinecraft().thePlayer.getName() : "Unknown";
         data.addProperty("minecraft_name", mcName);
         
@@ -167,56 +567,68 @@ public class VoiceClient {
             data.addProperty("nickname", manager.getDisplayNickname());
         }
         
-        sendControl("auth", data);
+        queueControl("auth", data);
     }
     
     /**
-     * Send a control message to the server
+     * Ask the server to continue our session on this connection and replay
+     * the room events we missed
      */
-    private void sendControl(String type, JsonObject data) {
-        if (controlOut == null) {
-            return;
-        }
-        
-        try {
-            JsonObject message = new JsonObject();
-            message.addProperty("type", type);
-            message.add("data", data);
-            
-            controlOut.println(gson.toJson(message));
-        } catch (Exception e) {
-            System.err.println("[VoiceChat] Failed to send control message: " + e.getMessage());
+    private void sendResume() {
+        JsonObject data = new JsonObject();
+        data.addProperty("token", resumeToken);
+        data.addProperty("last_event_seq", lastEventSeq);
+        queueControl("resume", data);
+    }
+    
+    /**
+     * Heartbeat, acknowledging the room events applied so far so the server
+     * can trim what it keeps for a resume
+     */
+    private void sendHeartbeat() {
+        JsonObject data = new JsonObject();
+        if (lastEventSeq > 0) {
+            data.addProperty("ack", lastEventSeq);
         }
+        queueControl("heartbeat", data);
     }
     
     /**
-     * Start heartbeat to keep connection alive
+     * Queue a control message for the network thread to send. Dropped while
+     * reconnecting; the manager brings the server up to date afterwards.
      */
-    private void startHeartbeat() {
-        if (heartbeatScheduler == null) {
-            heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+    private void sendControl(String type, JsonObject data) {
+        if (reconnecting) {
+            return;
         }
-        
-        heartbeatTask = heartbeatScheduler.scheduleAtFixedRate(() -> {
-            if (running.get() && controlOut != null) {
-                sendControl("heartbeat", new JsonObject());
-            }
-        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
-        
-        System.out.println("[VoiceChat] Heartbeat started (every " + (HEARTBEAT_INTERVAL / 1000) + "s)");
+        queueControl(type, data);
     }
     
     /**
-     * Stop heartbeat
+     * Queue a control message regardless of the session state
      */
-    private void stopHeartbeat() {
-        if (heartbeatTask != null) {
-            heartbeatTask.cancel(false);
-            heartbeatTask = null;
+    private void queueControl(String type, JsonObject data) {
+        if (selector == null) {
+            return;
         }
-        if (heartbeatScheduler != null) {
-            heartbeatScheduler.shutdownNow();
-            heartbeatScheduler = null;
+        
+        try {
+            JsonObject message = new JsonObject();
+            message.addProperty("type", type);
+            message.add("data", data);
+            String json = gson.toJson(message);
+            
+            ByteBuffer frame = binaryProtocol
+                ? ControlProtocol.encode(type, data, json)
+                : ByteBuffer.wrap((json + "\n").getBytes(StandardCharsets.UTF_8));
+            controlWriteQueue.offer(frame);
+            
+            Selector sel = selector;
+            if (sel != null && Thread.currentThread() != networkThread) {
+                sel.wakeup();
+            }
+        } catch (Exception e) {
+            System.err.println("[VoiceChat] Failed to send control message: " + e.getMessage());
         }
     }
     
@@ -272,23 +684,63 @@ public class VoiceClient {
     }
     
     /**
-     * Send encoded audio data
+     * Tell the server which speakers to forward audio from; everyone else's
+     * packets are not sent to us at all
      */
-    public void sendAudio(byte[] opusData) {
-        if (audioSocket == null || sessionId == null) {
+    public void sendSubscribe(int[] speakerIndexes) {
+        com.google.gson.JsonArray speakers = new com.google.gson.JsonArray();
+        for (int index : speakerIndexes) {
+            speakers.add(new com.google.gson.JsonPrimitive(index));
+        }
+        JsonObject data = new JsonObject();
+        data.add("speakers", speakers);
+        sendControl("subscribe", data);
+    }
+    
+    /**
+     * Send the first length bytes of an encoded audio buffer.
+     * Only called from the capture thread, which owns the send buffer.
+     *
+     * @param timestamp Capture sample clock of the frame
+     */
+    public void sendAudio(byte[] opusData, int length, long timestamp) {
+        byte[] sessionBytes = sessionIdBytes;
+        DatagramChannel channel = audioChannel;
+        if (channel == null || sessionBytes == null || length > OpusCodec.MAX_PACKET_BYTES) {
             return;
         }
         
         try {
-            // Packet format: [type(1)] [session_id(36)] [audio_data(n)]
-            ByteBuffer buffer = ByteBuffer.allocate(1 + 36 + opusData.length);
-            buffer.put(PACKET_AUDIO);
-            buffer.put(sessionId.getBytes());
-            buffer.put(opusData);
+            byte[] packet = sendBuffer;
+            int seq = audioSequence;
+            audioSequence = (seq + 1) & 0xFFFF;
+            
+            int pos;
+            int speakerIndex = localSpeakerIndex;
+            if (speakerIndex >= 0) {
+                // Packet format: [type(1)] [speaker_index(2)] [sequence(2)] [timestamp(4)] [audio_data(n)]
+                packet[0] = PACKET_AUDIO_COMPACT;
+                packet[1] = (byte) (speakerIndex >> 8);
+                packet[2] = (byte) speakerIndex;
+                pos = 3;
+            } else {
+                // Not in a room with an index yet (or an older server):
+                // [type(1)] [session_id(36)] [sequence(2)] [timestamp(4)] [audio_data(n)]
+                packet[0] = PACKET_AUDIO_SEQUENCED;
+                System.arraycopy(sessionBytes, 0, packet, 1, SESSION_ID_LENGTH);
+                pos = LEGACY_AUDIO_HEADER_LENGTH;
+            }
+            packet[pos++] = (byte) (seq >> 8);
+            packet[pos++] = (byte) seq;
+            packet[pos++] = (byte) (timestamp >> 24);
+            packet[pos++] = (byte) (timestamp >> 16);
+            packet[pos++] = (byte) (timestamp >> 8);
+            packet[pos++] = (byte) timestamp;
+            System.arraycopy(opusData, 0, packet, pos, length);
             
-            byte[] packet = buffer.array();
-            DatagramPacket datagram = new DatagramPacket(packet, packet.length, serverAddress, serverUdpPort);
-            audioSocket.send(datagram);
+            sendByteBuffer.clear();
+            sendByteBuffer.limit(pos + length);
+            channel.write(sendByteBuffer);
             
         } catch (Exception e) {
             System.err.println("[VoiceChat] Failed to send audio: " + e.getMessage());
@@ -296,30 +748,85 @@ public class VoiceClient {
     }
     
     /**
-     * Control message receive loop
+     * Tell the server where to reach our audio port. A muted listener sends no
+     * audio, so without this the server (and any NAT on the way) would never
+     * learn the address; sent after auth and with every heartbeat.
      */
-    private void controlReceiveLoop() {
-        while (running.get()) {
-            try {
-                String line = controlIn.readLine();
-                if (line == null) {
-                    // Connection closed
-                    if (running.get()) {
-                        System.err.println("[VoiceChat] Control connection closed by server");
-                        disconnect();
+    private void sendKeepalive() {
+        byte[] sessionBytes = sessionIdBytes;
+        DatagramChannel channel = audioChannel;
+        if (channel == null || sessionBytes == null) {
+            return;
+        }
+        
+        try {
+            // Packet format: [type(1)] [session_id(36)]
+            ByteBuffer packet = ByteBuffer.allocate(LEGACY_AUDIO_HEADER_LENGTH);
+            packet.put(PACKET_KEEPALIVE).put(sessionBytes);
+            packet.flip();
+            channel.write(packet);
+        } catch (PortUnreachableException e) {
+            // Audio port not up yet; the next heartbeat retries
+        } catch (IOException e) {
+            System.err.println("[VoiceChat] Failed to send keepalive: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Handle a binary control frame; the buffer is limited to the frame body
+     *
+     * @throws BufferUnderflowException If the body is shorter than its opcode needs
+     */
+    private void handleBinaryFrame(ByteBuffer frame) {
+        try {
+            byte opcode = frame.get();
+            
+            switch (opcode) {
+                case ControlProtocol.OP_HEARTBEAT_ACK:
+                    // Heartbeat acknowledged, connection is alive
+                    break;
+                    
+                case ControlProtocol.OP_USER_MUTE_STATE:
+                    String muteUserId = ControlProtocol.readString(frame);
+                    boolean muted = ControlProtocol.readBoolean(frame);
+                    if (acceptEvent(ControlProtocol.readEventSeq(frame))) {
+                        manager.onUserMuteChanged(muteUserId, muted);
                     }
                     break;
-                }
-                
-                handleControlMessage(line);
-                
-            } catch (SocketTimeoutException e) {
-                // Normal timeout, continue
-            } catch (Exception e) {
-                if (running.get()) {
-                    System.err.println("[VoiceChat] Control receive error: " + e.getMessage());
-                }
+                    
+                case ControlProtocol.OP_USER_DEAFEN_STATE:
+                    String deafenUserId = ControlProtocol.readString(frame);
+                    boolean deafened = ControlProtocol.readBoolean(frame);
+                    if (acceptEvent(ControlProtocol.readEventSeq(frame))) {
+                        manager.onUserDeafenChanged(deafenUserId, deafened);
+                    }
+                    break;
+                    
+                case ControlProtocol.OP_USER_LEFT:
+                    String leftUserId = ControlProtocol.readString(frame);
+                    if (acceptEvent(ControlProtocol.readEventSeq(frame))) {
+                        manager.onUserLeftById(leftUserId);
+                    }
+                    break;
+                    
+                case ControlProtocol.OP_LEFT_ROOM:
+                    if (acceptEvent(ControlProtocol.readEventSeq(frame))) {
+                        localSpeakerIndex = -1;
+                        manager.onRoomLeft();
+                    }
+                    break;
+                    
+                case ControlProtocol.OP_JSON:
+                    handleControlMessage(new String(frame.array(), frame.position(), frame.remaining(), StandardCharsets.UTF_8));
+                    break;
+                    
+                default:
+                    System.out.println("[VoiceChat] Unknown control opcode: " + opcode);
             }
+        } catch (BufferUnderflowException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("[VoiceChat] Failed to handle control frame: " + e.getMessage());
         }
     }
     
@@ -328,14 +835,38 @@ public class VoiceClient {
      */
     private void handleControlMessage(String json) {
         try {
-            JsonObject message = new JsonParser().parse(json).getAsJsonObject();
+            handleControlMessage(jsonParser.parse(json).getAsJsonObject());
+        } catch (Exception e) {
+            System.err.println("[VoiceChat] Failed to handle control message: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private void handleControlMessage(JsonObject message) {
+        try {
             String type = message.get("type").getAsString();
             
+            if (negotiating) {
+                // First answer to our hello decides the protocol; servers that
+                // do not know the hello reply with something else and stay on JSON
+                boolean binary = "hello".equals(type) && message.has("protocol") &&
+                    ControlProtocol.PROTOCOL_BINARY.equals(message.get("protocol").getAsString());
+                finishNegotiation(binary);
+                if ("hello".equals(type)) {
+                    return;
+                }
+            }
+            
+            // Room state events carry a number; skip ones a resume replayed twice
+            if (message.has("eventSeq") && !acceptEvent(message.get("eventSeq").getAsLong())) {
+                return;
+            }
+            
             switch (type) {
                 case "connected":
                     // Initial connection established, session ID received
                     if (message.has("sessionId")) {
-                        sessionId = message.get("sessionId").getAsString();
+                        setSessionId(message.get("sessionId").getAsString());
                         System.out.println("[VoiceChat] Session established: " + sessionId);
                     }
                     break;
@@ -344,13 +875,24 @@ public class VoiceClient {
                     boolean authSuccess = message.has("success") && message.get("success").getAsBoolean();
                     if (authSuccess) {
                         if (message.has("sessionId")) {
-                            sessionId = message.get("sessionId").getAsString();
+                            setSessionId(message.get("sessionId").getAsString());
+                            sendKeepalive();
                         }
                         if (message.has("discordName")) {
                             manager.setVerifiedDiscordName(message.get("discordName").getAsString());
                         }
+                        resumeToken = message.has("resumeToken") ? message.get("resumeToken").getAsString() : null;
+                        lastEventSeq = 0;
+                        authenticated = true;
                         System.out.println("[VoiceChat] Authenticated successfully as " + 
                             (message.has("discordName") ? message.get("discordName").getAsString() : "unknown"));
+                        
+                        if (reconnecting) {
+                            // Fresh session after a drop: our old speaker index is gone
+                            reconnecting = false;
+                            localSpeakerIndex = -1;
+                            manager.onConnectionRestored(false, null);
+                        }
                     } else {
                         String error = message.has("error") ? message.get("error").getAsString() : "Unknown error";
                         System.err.println("[VoiceChat] Authentication failed: " + error);
@@ -358,6 +900,39 @@ public class VoiceClient {
                     }
                     break;
                     
+                case "resume_response":
+                    if (message.has("success") && message.get("success").getAsBoolean()) {
+                        if (message.has("sessionId")) {
+                            setSessionId(message.get("sessionId").getAsString());
+                        }
+                        if (message.has("resumeToken")) {
+                            resumeToken = message.get("resumeToken").getAsString();
+                        }
+                        reconnecting = false;
+                        sendKeepalive();
+                        
+                        // Catch up on what happened in the room while we were away
+                        int replayed = 0;
+                        if (message.has("events") && message.get("events").isJsonArray()) {
+                            for (com.google.gson.JsonElement event : message.getAsJsonArray("events")) {
+                                handleControlMessage(event.getAsJsonObject());
+                                replayed++;
+                            }
+                        }
+                        System.out.println("[VoiceChat] Session resumed after " + reconnectAttempts + 
+                            " attempt(s), replayed " + replayed + " event(s)");
+                        
+                        String serverRoomId = message.has("roomId") && !message.get("roomId").isJsonNull() ? 
+                            message.get("roomId").getAsString() : null;
+                        manager.onConnectionRestored(true, serverRoomId);
+                    } else {
+                        // Server no longer has the session; start a new one
+                        System.out.println("[VoiceChat] Session could not be resumed, authenticating again");
+                        resumeToken = null;
+                        sendAuth(authToken);
+                    }
+                    break;
+                    
                 case "create_room_response":
                     if (message.has("success") && message.get("success").getAsBoolean()) {
                         String roomId = message.has("roomId") ? message.get("roomId").getAsString() : null;
@@ -372,6 +947,9 @@ public class VoiceClient {
                 case "join_room_response":
                     if (message.has("success") && message.get("success").getAsBoolean()) {
                         JsonObject roomData = message.has("room") ? message.getAsJsonObject("room") : null;
+                        // Our own index for compact audio packets; absent on older servers
+                        localSpeakerIndex = readSpeakerIndex(message);
+                        
                         if (roomData != null) {
                             VoiceRoom room = new VoiceRoom(
                                 roomData.get("id").getAsString(),
@@ -406,6 +984,7 @@ public class VoiceClient {
                     break;
                     
                 case "left_room":
+                    localSpeakerIndex = -1;
                     manager.onRoomLeft();
                     System.out.println("[VoiceChat] Left room");
                     break;
@@ -483,6 +1062,23 @@ public class VoiceClient {
         }
     }
     
+    /**
+     * Note a numbered room state event
+     *
+     * @param eventSeq Event number, or -1 if the server does not number events
+     * @return false if the event was already applied before a resume
+     */
+    private boolean acceptEvent(long eventSeq) {
+        if (eventSeq < 0) {
+            return true;
+        }
+        if (eventSeq <= lastEventSeq) {
+            return false;
+        }
+        lastEventSeq = eventSeq;
+        return true;
+    }
+    
     /**
      * Parse a VoiceUser from JSON
      */
@@ -508,6 +1104,10 @@ public class VoiceClient {
             if (data.has("deafened")) {
                 user.setDeafened(data.get("deafened").getAsBoolean());
             }
+            if (data.has("minecraftName") && !data.get("minecraftName").isJsonNull()) {
+                user.setMinecraftName(data.get("minecraftName").getAsString());
+            }
+            user.setSpeakerIndex(readSpeakerIndex(data));
             
             return user;
         } catch (Exception e) {
@@ -517,58 +1117,124 @@ public class VoiceClient {
     }
     
     /**
-     * Audio receive loop
+     * Drain every datagram waiting on the audio channel
      */
-    private void audioReceiveLoop() {
-        byte[] buffer = new byte[1024];
-        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-        
+    private void readAudio(DatagramChannel channel) {
         while (running.get()) {
             try {
-                audioSocket.receive(packet);
-                
-                byte[] data = new byte[packet.getLength()];
-                System.arraycopy(packet.getData(), 0, data, 0, packet.getLength());
+                receiveByteBuffer.clear();
+                if (channel.read(receiveByteBuffer) <= 0) {
+                    return;
+                }
                 
-                handleAudioPacket(data);
+                // The jitter buffer copies what it keeps, so the receive buffer is reused
+                handleAudioPacket(receiveBuffer, receiveByteBuffer.position());
                 
-            } catch (SocketTimeoutException e) {
-                // Normal timeout, continue
+            } catch (PortUnreachableException e) {
+                // Server audio port not up yet; nothing to read
+                return;
             } catch (Exception e) {
                 if (running.get()) {
                     System.err.println("[VoiceChat] Audio receive error: " + e.getMessage());
                 }
+                return;
             }
         }
     }
     
+    /**
+     * Read a 16-bit speaker index, or -1 if the server did not send one
+     */
+    private static int readSpeakerIndex(JsonObject data) {
+        if (!data.has("speakerIndex") || data.get("speakerIndex").isJsonNull()) {
+            return -1;
+        }
+        int index = data.get("speakerIndex").getAsInt();
+        return index >= 0 && index <= 0xFFFF ? index : -1;
+    }
+    
     /**
      * Handle incoming audio packet
      */
-    private void handleAudioPacket(byte[] data) {
-        if (data.length < 37) { // Minimum: type(1) + senderId(36)
+    private void handleAudioPacket(byte[] data, int length) {
+        if (length < 1) {
             return;
         }
         
         byte packetType = data[0];
         
-        if (packetType == PACKET_AUDIO) {
+        if (packetType == PACKET_AUDIO_COMPACT) {
+            if (length <= COMPACT_AUDIO_HEADER_LENGTH) {
+                return;
+            }
+            
+            int speakerIndex = ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+            int seq = ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
+            long timestamp = ((data[5] & 0xFFL) << 24) | ((data[6] & 0xFF) << 16) |
+                             ((data[7] & 0xFF) << 8) | (data[8] & 0xFF);
+            
+            manager.onAudioReceived(speakerIndex, data, COMPACT_AUDIO_HEADER_LENGTH, length - COMPACT_AUDIO_HEADER_LENGTH, seq, timestamp);
+            return;
+        }
+        
+        if (length < LEGACY_AUDIO_HEADER_LENGTH) { // Minimum: type(1) + senderId(36)
+            return;
+        }
+        
+        if (packetType == PACKET_AUDIO_SEQUENCED) {
+            if (length < AUDIO_HEADER_LENGTH) {
+                return;
+            }
+            
             // Extract sender ID (Discord ID from server)
-            String senderId = new String(data, 1, 36).trim();
+            String senderId = new String(data, 1, SESSION_ID_LENGTH, StandardCharsets.UTF_8).trim();
+            
+            int pos = LEGACY_AUDIO_HEADER_LENGTH;
+            int seq = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+            long timestamp = ((data[pos + 2] & 0xFFL) << 24) | ((data[pos + 3] & 0xFF) << 16) |
+                             ((data[pos + 4] & 0xFF) << 8) | (data[pos + 5] & 0xFF);
             
-            // Extract audio data
-            byte[] audioData = new byte[data.length - 37];
-            System.arraycopy(data, 37, audioData, 0, audioData.length);
+            manager.onAudioReceived(senderId, data, AUDIO_HEADER_LENGTH, length - AUDIO_HEADER_LENGTH, seq, timestamp);
             
-            manager.onAudioReceived(senderId, audioData);
+        } else if (packetType == PACKET_AUDIO) {
+            // Older clients send no sequence header
+            String senderId = new String(data, 1, SESSION_ID_LENGTH, StandardCharsets.UTF_8).trim();
+            manager.onAudioReceived(senderId, data, LEGACY_AUDIO_HEADER_LENGTH, length - LEGACY_AUDIO_HEADER_LENGTH, -1, 0);
         }
     }
     
     public boolean isConnected() {
-        return running.get() && controlSocket != null && !controlSocket.isClosed();
+        SocketChannel channel = controlChannel;
+        return running.get() && channel != null && channel.isOpen();
+    }
+    
+    /**
+     * Whether the control connection dropped and is being re-established
+     */
+    public boolean isReconnecting() {
+        return reconnecting;
     }
     
     public String getSessionId() {
         return sessionId;
     }
+    
+    /**
+     * Set the session ID and cache its fixed-width packet form
+     */
+    private void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+        
+        if (sessionId == null) {
+            sessionIdBytes = null;
+            return;
+        }
+        
+        // Space padded to the fixed header width; the receiver trims it
+        byte[] bytes = new byte[SESSION_ID_LENGTH];
+        java.util.Arrays.fill(bytes, (byte) ' ');
+        byte[] raw = sessionId.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(raw, 0, bytes, 0, Math.min(raw.length, SESSION_ID_LENGTH));
+        sessionIdBytes = bytes;
+    }
 }